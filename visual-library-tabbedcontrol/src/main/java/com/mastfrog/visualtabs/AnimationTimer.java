@@ -20,6 +20,7 @@ package com.mastfrog.visualtabs;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.Timer;
 
 /**
@@ -28,9 +29,14 @@ import javax.swing.Timer;
  */
 final class AnimationTimer implements ActionListener {
 
+    private static final AtomicInteger LIVE = new AtomicInteger();
+
     private final int ticks;
     private final boolean reversable;
-    private final Timer timer;
+    private final int delay;
+    // Created on start and discarded on stop, so the many timers belonging
+    // to idle tabs hold no Swing timer and its listener list
+    private Timer timer;
     private boolean started;
     private int currentTick;
     private int direction = 1;
@@ -41,21 +47,37 @@ final class AnimationTimer implements ActionListener {
         this.ticks = ticks;
         this.reversable = reversable;
         this.oneShot = oneShot;
-        timer = new Timer(1000 / fps, this);
-        timer.setRepeats(true);
-        timer.setCoalesce(true);
+        this.delay = 1000 / fps;
         this.onTick = onTick;
     }
 
+    /**
+     * The number of animation timers currently running, across all tab
+     * controls.
+     *
+     * @return A count
+     */
+    static int liveCount() {
+        return LIVE.get();
+    }
+
     public int ticks() {
         return ticks;
     }
 
+    boolean isRunning() {
+        return started;
+    }
+
     public void start() {
         if (!started) {
             direction = 1;
             currentTick = 0;
             started = true;
+            LIVE.incrementAndGet();
+            timer = new Timer(delay, this);
+            timer.setRepeats(true);
+            timer.setCoalesce(true);
             timer.start();
         }
     }
@@ -63,12 +85,18 @@ final class AnimationTimer implements ActionListener {
     public void stop() {
         if (started) {
             timer.stop();
+            timer = null;
             started = false;
+            LIVE.decrementAndGet();
         }
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
+        if (!started) {
+            // A tick queued before we were stopped
+            return;
+        }
         int tick = tick();
         onTick.tick(tick, ticks);
     }
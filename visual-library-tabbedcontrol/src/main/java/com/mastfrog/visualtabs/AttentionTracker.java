@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * Tracks which tabs have requested attention.  Every tracker with flagged
+ * tabs, across all tab controls, is driven by one shared animation clock,
+ * which only runs while some tab somewhere is flagged; on each tick a
+ * tracker asks its scene to repaint the flagged tabs which are on screen
+ * and summarize the rest, so the cost of a tick is proportional to the
+ * number of flagged tabs, and no tab owns a timer.
+ *
+ * @author Tim Boudreau
+ */
+final class AttentionTracker {
+
+    private static final int PULSE_TICKS = 16;
+    private static final int PULSE_FPS = 20;
+    // Only touched on the event thread
+    private static final Set<AttentionTracker> ACTIVE = new LinkedHashSet<>();
+    private static final AnimationTimer CLOCK
+            = new AnimationTimer(PULSE_TICKS, true, PULSE_FPS, false, AttentionTracker::clockTick);
+    private static float pulse;
+
+    private final Runnable onTick;
+    private final TrackedTabs flagged;
+
+    AttentionTracker(TabDataModel model, Runnable onTick) {
+        this.flagged = new TrackedTabs(model);
+        this.onTick = onTick;
+    }
+
+    private static void clockTick(int tick, int of) {
+        pulse = tick / (float) of;
+        for (AttentionTracker t : new ArrayList<>(ACTIVE)) {
+            t.onTick.run();
+        }
+    }
+
+    /**
+     * The current intensity of the shared pulse.
+     *
+     * @return A value from 0 to 1
+     */
+    static float pulse() {
+        return pulse;
+    }
+
+    /**
+     * Whether the shared clock is running, which it should be exactly
+     * while some tracker has a flagged tab.
+     *
+     * @return True if it is running
+     */
+    static boolean isClockRunning() {
+        return CLOCK.isRunning();
+    }
+
+    boolean isFlagged(TabData data) {
+        return flagged.contains(data);
+    }
+
+    boolean isEmpty() {
+        return flagged.isEmpty();
+    }
+
+    int size() {
+        return flagged.size();
+    }
+
+    /**
+     * Flag or unflag a tab.
+     *
+     * @param data The tab
+     * @param index Its index in the model
+     * @param flag Whether it wants attention
+     * @return True if anything changed
+     */
+    boolean set(TabData data, int index, boolean flag) {
+        if (!flagged.set(data, index, flag)) {
+            return false;
+        }
+        if (flag) {
+            if (ACTIVE.add(this) && ACTIVE.size() == 1) {
+                CLOCK.start();
+            }
+        } else if (flagged.isEmpty()) {
+            stop();
+        }
+        return true;
+    }
+
+    void clear() {
+        flagged.clear();
+        stop();
+    }
+
+    /**
+     * Drop all flags and leave the shared clock, which would otherwise
+     * keep this tracker, and the scene its tick callback belongs to,
+     * reachable.
+     */
+    void detach() {
+        flagged.detach();
+        stop();
+    }
+
+    private void stop() {
+        if (ACTIVE.remove(this) && ACTIVE.isEmpty()) {
+            CLOCK.stop();
+        }
+    }
+
+    /**
+     * Get the flagged tabs, dropping any which are no longer in the model,
+     * with their indices brought up to date.
+     *
+     * @return The entries
+     */
+    List<TrackedTabs.Entry> entries() {
+        List<TrackedTabs.Entry> result = flagged.entries();
+        if (result.isEmpty()) {
+            stop();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SingleSelectionModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * A batch of changes to the tabs, applied as one model change by
+ * commit(); obtained from TabScene.beginBulkEdit().
+ *
+ * @author Tim Boudreau
+ */
+public final class BulkEdit {
+
+    private static final Logger LOG = Logger.getLogger(BulkEdit.class.getName());
+    private final TabScene scene;
+    private final TabDataModel model;
+    private final SingleSelectionModel selection;
+    private final TabWidgetMapper mapper;
+    private final List<Op> ops = new ArrayList<>();
+    private TabData select;
+    private boolean done;
+    boolean deferredWork;
+    boolean selectionChanged;
+
+    BulkEdit(TabScene scene, TabDataModel model, SingleSelectionModel selection,
+            TabWidgetMapper mapper) {
+        this.scene = scene;
+        this.model = model;
+        this.selection = selection;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Close a tab.
+     *
+     * @param data The tab
+     * @return this
+     */
+    public BulkEdit close(TabData data) {
+        checkOpen();
+        Op last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+        if (last instanceof CloseOp) {
+            // Consecutive closes are applied in a single pass
+            ((CloseOp) last).closing.add(data);
+        } else {
+            ops.add(new CloseOp(data));
+        }
+        return this;
+    }
+
+    /**
+     * Close every tab but the passed one.
+     *
+     * @param data The tab to keep open
+     * @return this
+     */
+    public BulkEdit closeAllBut(TabData data) {
+        checkOpen();
+        ops.add(all -> {
+            all.clear();
+            all.add(data);
+        });
+        return this;
+    }
+
+    /**
+     * Move a tab; the index is in terms of the tabs as they are before
+     * the tab is removed from its old position, as with a drop.
+     *
+     * @param data The tab
+     * @param index The new index
+     * @return this
+     */
+    public BulkEdit move(TabData data, int index) {
+        checkOpen();
+        ops.add(new MoveOp(data, index));
+        return this;
+    }
+
+    /**
+     * Insert a tab.
+     *
+     * @param index The index, which will be clamped to the number of
+     * tabs
+     * @param data The tab
+     * @return this
+     */
+    public BulkEdit insert(int index, TabData data) {
+        checkOpen();
+        ops.add(all -> all.add(Math.max(0, Math.min(all.size(), index)), data));
+        return this;
+    }
+
+    /**
+     * Select a tab once the edit has been applied; if not called, and the
+     * selected tab is closed, the last tab is selected.
+     *
+     * @param data The tab
+     * @return this
+     */
+    public BulkEdit select(TabData data) {
+        checkOpen();
+        select = data;
+        return this;
+    }
+
+    /**
+     * Apply all changes.
+     */
+    public void commit() {
+        checkOpen();
+        done = true;
+        long start = System.nanoTime();
+        int selIdx = selection.getSelectedIndex();
+        TabData selected = selIdx >= 0 && selIdx < model.size()
+                ? model.getTab(selIdx) : null;
+        boolean changed = false;
+        boolean relocated = false;
+        try {
+            try {
+                if (ops.size() == 1 && ops.get(0) instanceof MoveOp
+                        && ((MoveOp) ops.get(0)).applyInPlace()) {
+                    changed = true;
+                    relocated = ((MoveOp) ops.get(0)).relocated;
+                } else {
+                    List<TabData> all = new ArrayList<>(model.getTabs());
+                    for (Op op : ops) {
+                        op.apply(all);
+                    }
+                    changed = !sameTabs(all);
+                    if (changed) {
+                        model.setTabs(all.toArray(new TabData[all.size()]));
+                    }
+                }
+            } finally {
+                mapper.resume();
+            }
+            TabData toSelect = select;
+            if (toSelect == null && selected != null) {
+                if (model.indexOf(selected) >= 0) {
+                    // Keep the selected tab selected if it moved
+                    toSelect = selected;
+                } else if (model.size() > 0) {
+                    toSelect = model.getTab(model.size() - 1);
+                } else {
+                    selection.clearSelection();
+                }
+            }
+            if (toSelect != null) {
+                int ix = model.indexOf(toSelect);
+                if (ix >= 0 && ix != selection.getSelectedIndex()) {
+                    selection.setSelectedIndex(ix);
+                }
+            }
+        } finally {
+            scene.bulkEditClosed();
+        }
+        scene.bulkEditCommitted(this, changed, relocated);
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Bulk edit of {0} ops over {1} tabs in {2}ms",
+                    new Object[]{ops.size(), model.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+        }
+    }
+
+    /**
+     * Abandon this edit without changing anything.
+     */
+    public void cancel() {
+        checkOpen();
+        done = true;
+        scene.bulkEditClosed();
+        mapper.resume();
+    }
+
+    private void checkOpen() {
+        if (done) {
+            throw new IllegalStateException("Bulk edit already committed or cancelled");
+        }
+    }
+
+    private boolean sameTabs(List<TabData> all) {
+        int size = model.size();
+        if (all.size() != size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (all.get(i) != model.getTab(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    interface Op {
+
+        void apply(List<TabData> all);
+    }
+
+    final class MoveOp implements Op {
+
+        private final TabData data;
+        private final int index;
+        boolean relocated;
+
+        MoveOp(TabData data, int index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        @Override
+        public void apply(List<TabData> all) {
+            int orig = TabScene.indexOf(all, data);
+            if (orig < 0 || orig == index) {
+                return;
+            }
+            all.remove(orig);
+            all.add(target(orig, all.size()), data);
+        }
+
+        private int target(int orig, int max) {
+            int target = index > orig ? index - 1 : index;
+            return Math.max(0, Math.min(max, target));
+        }
+
+        /**
+         * Move the widget and the tab without resyncing every widget, when
+         * it is the only operation in an edit; if the strip has been laid
+         * out in a single row, the widgets between the old and new indices
+         * are also moved to their new positions without laying out the
+         * rest of the strip again.
+         *
+         * @return true if the move was performed
+         */
+        boolean applyInPlace() {
+            int orig = model.indexOf(data);
+            if (orig < 0) {
+                return false;
+            }
+            int target = target(orig, model.size() - 1);
+            if (orig == target || !mapper.move(orig, target)) {
+                return false;
+            }
+            relocated = scene.relocateMoved(orig, target);
+            return true;
+        }
+    }
+
+    static final class CloseOp implements Op {
+
+        final Set<TabData> closing = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        CloseOp(TabData first) {
+            closing.add(first);
+        }
+
+        @Override
+        public void apply(List<TabData> all) {
+            all.removeIf(closing::contains);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.Timer;
+
+/**
+ * Coalesces storms of change notifications (such as the selection flurries
+ * the window system produces on startup or when switching project groups)
+ * so that the target runs at most once per frame while changes are arriving
+ * faster than that, but runs immediately for an isolated change such as a
+ * user clicking a tab.  The target is expected to read whatever the
+ * <i>current</i> state is when it runs, so dropping intermediate
+ * notifications loses nothing.
+ *
+ * @author Tim Boudreau
+ */
+final class CoalescingScheduler implements ActionListener {
+
+    private static final Logger LOG = Logger.getLogger(CoalescingScheduler.class.getName());
+    static final int FRAME_MILLIS = 16;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(FRAME_MILLIS);
+    // Weight given to the newest interval in the moving average
+    private static final double SMOOTHING = 0.2;
+    private final Runnable target;
+    private final Timer timer;
+    private long lastEvent;
+    private long lastApplied;
+    private double averageInterval = -1;
+    private int applied;
+    private int coalesced;
+
+    CoalescingScheduler(Runnable target) {
+        this.target = target;
+        timer = new Timer(FRAME_MILLIS, this);
+        timer.setRepeats(false);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Note that a change has happened; the target will be run either
+     * synchronously, or on the next frame boundary if it has already run
+     * within the current frame.
+     */
+    void changed() {
+        if (!EventQueue.isDispatchThread()) {
+            EventQueue.invokeLater(this::changed);
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastEvent != 0) {
+            long interval = now - lastEvent;
+            averageInterval = averageInterval < 0 ? interval
+                    : (averageInterval * (1D - SMOOTHING)) + (interval * SMOOTHING);
+        }
+        lastEvent = now;
+        if (timer.isRunning()) {
+            // The pending run will pick up this change
+            coalesced++;
+            return;
+        }
+        long sinceApplied = now - lastApplied;
+        if (lastApplied == 0 || sinceApplied >= FRAME_NANOS) {
+            LOG.log(Level.FINEST, "Run change immediately");
+            apply(now);
+        } else {
+            int delay = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(FRAME_NANOS - sinceApplied));
+            LOG.log(Level.FINER, "Change storm at {0} changes/sec, defer {1}ms",
+                    new Object[]{(int) changesPerSecond(), delay});
+            timer.setInitialDelay(delay);
+            timer.start();
+        }
+    }
+
+    private void apply(long now) {
+        lastApplied = now;
+        applied++;
+        target.run();
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        apply(System.nanoTime());
+    }
+
+    void cancel() {
+        timer.stop();
+    }
+
+    /**
+     * The number of times the target was actually run.
+     *
+     * @return A count
+     */
+    int appliedCount() {
+        return applied;
+    }
+
+    /**
+     * The number of change notifications which were folded into a run
+     * of the target triggered by an earlier one.
+     *
+     * @return A count
+     */
+    int coalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * The recent rate of change notifications, decaying toward zero when
+     * no changes have arrived for a while.
+     *
+     * @return The rate
+     */
+    double changesPerSecond() {
+        if (averageInterval < 0) {
+            return 0;
+        }
+        double interval = Math.max(averageInterval, System.nanoTime() - lastEvent);
+        return interval <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / interval;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Caches the images of tabs handed to the window system when it starts a
+ * drag, so that dragging the same tab again neither allocates nor
+ * repaints anything unless the tab has changed since.  Images are
+ * regions of a few pooled buffers sized to the largest tab seen, which
+ * are recycled as entries fall out of the cache.
+ *
+ * @author Tim Boudreau
+ */
+final class DragImageCache {
+
+    private static final int MAX_ENTRIES = 6;
+    private final Deque<BufferedImage> pool = new ArrayDeque<>(MAX_ENTRIES);
+    private int poolWidth;
+    private int poolHeight;
+    private int hits;
+    private int lookups;
+    private final Map<TabWidget, CachedImage> entries = new LinkedHashMap<TabWidget, CachedImage>(MAX_ENTRIES * 2, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TabWidget, CachedImage> eldest) {
+            if (size() > MAX_ENTRIES) {
+                release(eldest.getValue().backing);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Get an image of a tab, painting it only if there is no cached image
+     * of it at the same size and paint generation.
+     *
+     * @param widget The tab
+     * @param width The width
+     * @param height The height
+     * @param painter Paints the tab into a graphics context
+     * @return An image
+     */
+    BufferedImage image(TabWidget widget, int width, int height, Consumer<Graphics2D> painter) {
+        lookups++;
+        int generation = widget.paintGeneration();
+        CachedImage entry = entries.get(widget);
+        if (entry != null && entry.generation == generation
+                && entry.image.getWidth() == width && entry.image.getHeight() == height) {
+            hits++;
+            return entry.image;
+        }
+        BufferedImage backing;
+        if (entry != null && entry.backing.getWidth() >= width && entry.backing.getHeight() >= height) {
+            backing = entry.backing;
+        } else {
+            if (entry != null) {
+                release(entry.backing);
+            }
+            backing = acquire(width, height);
+        }
+        Graphics2D g = backing.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(AlphaComposite.SrcOver);
+            g.clipRect(0, 0, width, height);
+            painter.accept(g);
+        } finally {
+            g.dispose();
+        }
+        BufferedImage image = backing.getWidth() == width && backing.getHeight() == height
+                ? backing : backing.getSubimage(0, 0, width, height);
+        entries.put(widget, new CachedImage(generation, image, backing));
+        return image;
+    }
+
+    void remove(TabWidget widget) {
+        CachedImage entry = entries.remove(widget);
+        if (entry != null) {
+            release(entry.backing);
+        }
+    }
+
+    private BufferedImage acquire(int width, int height) {
+        if (width > poolWidth || height > poolHeight) {
+            // Pooled buffers are all the same size, that of the
+            // largest tab seen so far; smaller ones are discarded
+            poolWidth = Math.max(width, poolWidth);
+            poolHeight = Math.max(height, poolHeight);
+            pool.clear();
+        }
+        BufferedImage result = pool.poll();
+        return result != null ? result
+                : new BufferedImage(poolWidth, poolHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private void release(BufferedImage backing) {
+        if (backing.getWidth() == poolWidth && backing.getHeight() == poolHeight
+                && pool.size() < MAX_ENTRIES) {
+            pool.push(backing);
+        }
+    }
+
+    int hits() {
+        return hits;
+    }
+
+    int lookups() {
+        return lookups;
+    }
+
+    private static final class CachedImage {
+
+        private final int generation;
+        private final BufferedImage image;
+        private final BufferedImage backing;
+
+        CachedImage(int generation, BufferedImage image, BufferedImage backing) {
+            this.generation = generation;
+            this.image = image;
+            this.backing = backing;
+        }
+    }
+}
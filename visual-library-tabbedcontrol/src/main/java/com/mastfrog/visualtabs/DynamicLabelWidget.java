@@ -23,8 +23,12 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Paint;
 import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
 import java.util.function.Supplier;
 import org.netbeans.api.visual.widget.LabelWidget;
 import org.netbeans.api.visual.widget.Scene;
@@ -59,6 +63,8 @@ final class DynamicLabelWidget extends LabelWidget {
 
     int lastCenter = 12;
     int fontHeight = 18;
+    // The width the full label needs
+    private int naturalWidth = Integer.MAX_VALUE;
 
     protected Rectangle calculateClientArea() {
         String label = getLabel();
@@ -70,15 +76,24 @@ final class DynamicLabelWidget extends LabelWidget {
 
         Font f = getFont();
         gr.setFont(f);
-        FontMetrics fm = gr.getFontMetrics();
-        fontHeight = fm.getHeight();
-        int maxAscent = fm.getMaxAscent();
+        // Measurements are shared by all tab controls
+        SharedRenderCache cache = appearance.renderCache();
+        FontRenderContext frc = gr.getFontRenderContext();
+        int[] metrics = cache.fontMetrics(f, frc, () -> {
+            FontMetrics fm = gr.getFontMetrics();
+            return new int[]{fm.getHeight(), fm.getMaxAscent()};
+        });
+        fontHeight = metrics[0];
+        int maxAscent = metrics[1];
         lastCenter = maxAscent / 2;
 
-        double w = HtmlRenderer.renderHTML(label, gr, 0, maxAscent,
-                Integer.MAX_VALUE, fontHeight, f, Color.BLACK, HtmlRenderer.STYLE_CLIP, false);
-        int width = (int) Math.ceil(w) + 4;
+        int width = cache.textWidth(label, f, frc, () -> {
+            double w = HtmlRenderer.renderHTML(label, gr, 0, maxAscent,
+                    Integer.MAX_VALUE, fontHeight, f, Color.BLACK, HtmlRenderer.STYLE_CLIP, false);
+            return (int) Math.ceil(w) + 4;
+        });
 
+        naturalWidth = width;
         rectangle = new Rectangle(0, 0, width, fontHeight);
         switch (getOrientation()) {
             case NORMAL:
@@ -133,7 +148,14 @@ final class DynamicLabelWidget extends LabelWidget {
      */
     @Override
     protected void paintWidget() {
-        doPaintWidget(getGraphics());
+        PaintHeatmap heatmap = PaintHeatmap.of(getScene());
+        if (heatmap == null || getParentWidget() == null) {
+            doPaintWidget(getGraphics());
+        } else {
+            long start = System.nanoTime();
+            doPaintWidget(getGraphics());
+            heatmap.painted(getParentWidget(), PaintHeatmap.Part.LABEL, System.nanoTime() - start);
+        }
     }
 
     void doPaintWidget(Graphics2D gr) {
@@ -244,6 +266,14 @@ final class DynamicLabelWidget extends LabelWidget {
         boolean paintAsDisabled = isPaintAsDisabled();
         Font f = getFont();
         FontMetrics fm = g.getFontMetrics(f);
+        int style = HtmlRenderer.STYLE_CLIP;
+        if (w < naturalWidth - 4 && appearance.isCompressTabs()) {
+            if (isHtml(label)) {
+                style = HtmlRenderer.STYLE_TRUNCATE;
+            } else {
+                label = truncated(g, label, f, fm, w);
+            }
+        }
 
         int height = fm.getHeight();
         int baseline = fm.getMaxAscent();
@@ -253,16 +283,112 @@ final class DynamicLabelWidget extends LabelWidget {
 
         if (paintAsDisabled && background instanceof Color) {
             Color color = (Color) background;
-            HtmlRenderer.renderHTML(label, g, x, top + 1, w, height, f, color.brighter(), 0, true);
-            HtmlRenderer.renderHTML(label, g, x, top, w, height, f, color.darker(), 0, true);
+            HtmlRenderer.renderHTML(label, g, x, top + 1, w, height, f, color.brighter(), style, true);
+            HtmlRenderer.renderHTML(label, g, x, top, w, height, f, color.darker(), style, true);
         } else {
             Color color = (Color) appearance.tabForeground(getState());
-            HtmlRenderer.renderHTML(label, g, x, top, w, height, f, color, 0, true);
+            if (appearance.renderingProfile().cachesText() && getOrientation() == Orientation.NORMAL
+                    && getParentWidget() instanceof TabWidget) {
+                drawCachedString(g, label, x, top - baseline, w, height, baseline, f, color, style);
+            } else {
+                HtmlRenderer.renderHTML(label, g, x, top, w, height, f, color, style, true);
+            }
+        }
+    }
+
+    private static final int TRUNCATION_BUCKET = 8;
+    private static final String ELLIPSIS = "\u2026";
+
+    private static boolean isHtml(String label) {
+        return label.regionMatches(true, 0, "<html", 0, 5);
+    }
+
+    /**
+     * Middle-truncate the label to fit, rounding the width down to a
+     * bucket so that the cached result is reused as the window is resized
+     * a few pixels at a time.
+     */
+    private String truncated(Graphics2D g, String label, Font f, FontMetrics fm, int w) {
+        int bucket = Math.max(TRUNCATION_BUCKET, (w / TRUNCATION_BUCKET) * TRUNCATION_BUCKET);
+        return appearance.renderCache().truncated(label, f, g.getFontRenderContext(), bucket,
+                () -> middleTruncate(label, fm, bucket - 4));
+    }
+
+    static String middleTruncate(String text, FontMetrics fm, int width) {
+        if (fm.stringWidth(text) <= width) {
+            return text;
+        }
+        int lo = 0;
+        int hi = text.length() - 1;
+        int best = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (fm.stringWidth(elide(text, mid)) <= width) {
+                best = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
         }
+        return elide(text, best);
+    }
+
+    private static String elide(String text, int keep) {
+        int head = (keep + 1) / 2;
+        int tail = keep / 2;
+        return text.substring(0, head) + ELLIPSIS + text.substring(text.length() - tail);
+    }
+
+    private BufferedImage textImage;
+    private String textImageLabel;
+    private Font textImageFont;
+    private Color textImageForeground;
+    private Color textImageBackground;
+
+    /**
+     * Draws the text from an opaque image over the tab's flat background
+     * color, re-rendering it only when the text, font, colors or size
+     * change.  On a remote X11 display such an image ends up cached as a
+     * pixmap in the server, so repainting a tab sends a copy request
+     * rather than rasterized glyphs.
+     */
+    private void drawCachedString(Graphics2D g, String label, int x, int y, int w, int height,
+            int baseline, Font f, Color color, int style) {
+        if (w <= 0 || height <= 0) {
+            return;
+        }
+        TabWidget tab = (TabWidget) getParentWidget();
+        Color bg = appearance.flatBackground(getState(), tab.kind());
+        BufferedImage img = textImage;
+        if (img == null || img.getWidth() != w || img.getHeight() != height
+                || !label.equals(textImageLabel) || !f.equals(textImageFont)
+                || !color.equals(textImageForeground) || !bg.equals(textImageBackground)) {
+            GraphicsConfiguration config = g.getDeviceConfiguration();
+            img = config == null ? new BufferedImage(w, height, BufferedImage.TYPE_INT_RGB)
+                    : config.createCompatibleImage(w, height, Transparency.OPAQUE);
+            Graphics2D ig = img.createGraphics();
+            try {
+                ig.setRenderingHints(g.getRenderingHints());
+                ig.setColor(bg);
+                ig.fillRect(0, 0, w, height);
+                HtmlRenderer.renderHTML(label, ig, 0, baseline, w, height, f, color, style, true);
+            } finally {
+                ig.dispose();
+            }
+            textImage = img;
+            textImageLabel = label;
+            textImageFont = f;
+            textImageForeground = color;
+            textImageBackground = bg;
+        }
+        g.drawImage(img, x, y, null);
     }
 
     boolean syncText() {
-        String txt = data.get().getText();
+        return syncText(data.get().getText());
+    }
+
+    boolean syncText(String txt) {
         if (!txt.equals(getLabel())) {
             setLabel(txt);
             revalidate(false);
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * Watches for the tab control holding the event thread too long, so field
+ * reports of IDE freezes can attribute them to the tab strip, or rule it
+ * out.  Syncs, selection changes, layout, painting and pan animation
+ * steps are bracketed with enter() and exit(); a daemon thread polls the
+ * outermost bracket, and when one has been open longer than the threshold,
+ * samples the event thread's stack and appends it, with the nested
+ * operations, the tab count and the event being handled, to a log file
+ * which is rolled over at {@link #MAX_LOG_BYTES}.
+ * <p>
+ * Enabled by setting the system property <code>visualtabs.stallMillis</code>
+ * to a threshold in milliseconds; the log is
+ * <code>var/log/visualtabs-stalls.log</code> in the NetBeans user
+ * directory, or in the temp directory outside NetBeans, unless
+ * <code>visualtabs.stallLog</code> names a file.  When not enabled,
+ * enter() returns null and exit() returns immediately.
+ *
+ * @author Tim Boudreau
+ */
+final class EdtWatchdog {
+
+    static final String THRESHOLD_PROPERTY = "visualtabs.stallMillis";
+    static final String LOG_PROPERTY = "visualtabs.stallLog";
+    static final long MAX_LOG_BYTES = 512 * 1024;
+    private static final int MAX_STACK_DEPTH = 80;
+    private static final Logger LOG = Logger.getLogger(EdtWatchdog.class.getName());
+    private static final long THRESHOLD_NANOS
+            = TimeUnit.MILLISECONDS.toNanos(Long.getLong(THRESHOLD_PROPERTY, 0));
+    static final boolean ENABLED = THRESHOLD_NANOS > 0;
+    // Innermost open bracket; only changed on the event thread
+    private static volatile Bracket current;
+    private static final ConcurrentLinkedQueue<String> PENDING = new ConcurrentLinkedQueue<>();
+    private static Thread watcher;
+    private static Path logFile;
+
+    private EdtWatchdog() {
+        throw new AssertionError();
+    }
+
+    static final class Bracket {
+
+        final String operation;
+        final TabDataModel model;
+        final Object detail;
+        final Bracket parent;
+        final long start = System.nanoTime();
+        final Thread thread = Thread.currentThread();
+        // Guarded by this, so the line saying a stall finished always
+        // follows its report
+        private boolean reported;
+        volatile boolean finished;
+
+        Bracket(String operation, TabDataModel model, Object detail, Bracket parent) {
+            this.operation = operation;
+            this.model = model;
+            this.detail = detail;
+            this.parent = parent;
+        }
+
+        Bracket root() {
+            Bracket result = this;
+            while (result.parent != null) {
+                result = result.parent;
+            }
+            return result;
+        }
+
+        void describe(StringBuilder into) {
+            if (parent != null) {
+                parent.describe(into);
+            }
+            into.append("  ").append(operation);
+            if (model != null) {
+                // The size may be stale, but reading it cannot block
+                into.append(" tabs=").append(model.size());
+            }
+            if (detail != null) {
+                into.append(' ').append(detail instanceof int[]
+                        ? Arrays.toString((int[]) detail) : String.valueOf(detail));
+            }
+            into.append('\n');
+        }
+    }
+
+    /**
+     * Begin a watched operation.
+     *
+     * @param operation What is being done
+     * @param model The tabs it is being done to, or null
+     * @param detail The event or argument being processed, or null;
+     * converted to a string on the watchdog thread only if the operation
+     * stalls
+     * @return A bracket to pass to exit(), or null if not enabled or not
+     * on the event thread
+     */
+    static Bracket enter(String operation, TabDataModel model, Object detail) {
+        if (!ENABLED || !EventQueue.isDispatchThread()) {
+            return null;
+        }
+        Bracket result = new Bracket(operation, model, detail, current);
+        current = result;
+        if (watcher == null) {
+            startWatcher();
+        }
+        return result;
+    }
+
+    /**
+     * End a watched operation, and any left open inside it.
+     *
+     * @param bracket The result of enter(), or null
+     */
+    static void exit(Bracket bracket) {
+        if (bracket == null) {
+            return;
+        }
+        bracket.finished = true;
+        current = bracket.parent;
+        if (bracket.parent == null) {
+            long elapsed = System.nanoTime() - bracket.start;
+            if (elapsed >= THRESHOLD_NANOS) {
+                synchronized (bracket) {
+                    if (bracket.reported) {
+                        PENDING.add(finished(elapsed));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String finished(long elapsed) {
+        return "  finished after " + millis(elapsed) + "ms\n";
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static void startWatcher() {
+        watcher = new Thread(EdtWatchdog::watch, "visualtabs-stall-watchdog");
+        watcher.setDaemon(true);
+        watcher.setPriority(Thread.MAX_PRIORITY);
+        watcher.start();
+    }
+
+    private static void watch() {
+        long poll = Math.max(TimeUnit.MILLISECONDS.toNanos(5), THRESHOLD_NANOS / 4);
+        Bracket lastReported = null;
+        for (;;) {
+            LockSupport.parkNanos(poll);
+            Bracket b = current;
+            if (b != null) {
+                Bracket root = b.root();
+                long elapsed = System.nanoTime() - root.start;
+                if (elapsed >= THRESHOLD_NANOS && root != lastReported) {
+                    lastReported = root;
+                    String report = report(b, root, elapsed);
+                    synchronized (root) {
+                        root.reported = true;
+                        PENDING.add(report);
+                    }
+                }
+            }
+            if (!PENDING.isEmpty()) {
+                StringBuilder sb = new StringBuilder();
+                for (String s; (s = PENDING.poll()) != null;) {
+                    sb.append(s);
+                }
+                write(sb.toString());
+            }
+        }
+    }
+
+    private static String report(Bracket innermost, Bracket root, long elapsed) {
+        StackTraceElement[] stack = root.thread.getStackTrace();
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append(LocalDateTime.now()).append(" tab control has held the event thread ")
+                .append(millis(elapsed)).append("ms (threshold ")
+                .append(millis(THRESHOLD_NANOS)).append("ms) in\n");
+        try {
+            innermost.describe(sb);
+        } catch (RuntimeException ex) {
+            // The model changed while being described
+            sb.append("  (").append(ex).append(")\n");
+        }
+        if (root.finished) {
+            sb.append("  finished before its stack could be sampled\n");
+            return sb.toString();
+        }
+        int depth = Math.min(stack.length, MAX_STACK_DEPTH);
+        for (int i = 0; i < depth; i++) {
+            sb.append("    at ").append(stack[i]).append('\n');
+        }
+        if (depth < stack.length) {
+            sb.append("    ... ").append(stack.length - depth).append(" more\n");
+        }
+        return sb.toString();
+    }
+
+    private static Path logFile() {
+        if (logFile == null) {
+            String path = System.getProperty(LOG_PROPERTY);
+            if (path == null) {
+                String userdir = System.getProperty("netbeans.user");
+                File dir = userdir == null
+                        ? new File(System.getProperty("java.io.tmpdir"))
+                        : new File(new File(userdir, "var"), "log");
+                path = new File(dir, "visualtabs-stalls.log").getPath();
+            }
+            logFile = new File(path).toPath();
+            LOG.log(Level.INFO, "Logging tab control stalls to {0}", logFile);
+        }
+        return logFile;
+    }
+
+    private static void write(String text) {
+        Path file = logFile();
+        try {
+            if (Files.exists(file) && Files.size(file) > MAX_LOG_BYTES) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".1"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Could not write " + file, ex);
+        }
+    }
+}
@@ -19,8 +19,11 @@
 package com.mastfrog.visualtabs;
 
 import com.mastfrog.colors.RectangularGlow;
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import org.netbeans.api.visual.widget.Scene;
 import org.netbeans.api.visual.widget.Widget;
 
@@ -42,13 +45,46 @@ class GlowWidget extends Widget {
 
     @Override
     protected void paintWidget() {
+        PaintHeatmap heatmap = PaintHeatmap.of(getScene());
+        if (heatmap == null) {
+            paintGlow();
+        } else {
+            long start = System.nanoTime();
+            paintGlow();
+            heatmap.painted(this, PaintHeatmap.Part.GLOW, System.nanoTime() - start);
+        }
+    }
+
+    private void paintGlow() {
         Graphics2D g = getGraphics();
         Rectangle r = getBounds();
         if (r == null || r.width == 0 || r.height == 0 || !isVisible()) {
             return;
         }
-        RectangularGlow glow = appearance.glow();
-        glow.fill(g, r);
+        if (appearance.renderingProfile().opaqueEffects()) {
+            // A solid frame where the glow would fade out, so nothing
+            // needs compositing
+            int w = Math.max(1, appearance.glowWidth() / 4);
+            g.setColor(TabsAppearance.alpha(255, appearance.glowDark()));
+            int inset = appearance.glowWidth() - w;
+            g.fillRect(r.x + inset, r.y + inset, r.width - inset * 2, w);
+            g.fillRect(r.x + inset, r.y + r.height - inset - w, r.width - inset * 2, w);
+            g.fillRect(r.x + inset, r.y + inset, w, r.height - inset * 2);
+            g.fillRect(r.x + r.width - inset - w, r.y + inset, w, r.height - inset * 2);
+            return;
+        }
+        // The glow raster depends only on colors and size, so it is shared
+        // by every tab control showing a selected tab of the same size
+        Color dark = appearance.glowDark();
+        Color light = appearance.glowLight();
+        int gw = appearance.glowWidth();
+        int w = r.width;
+        int h = r.height;
+        BufferedImage img = appearance.renderCache().glow(Arrays.asList(dark, light, gw, w, h), w, h, ig -> {
+            RectangularGlow glow = appearance.glow();
+            glow.fill(ig, new Rectangle(0, 0, w, h));
+        });
+        g.drawImage(img, r.x, r.y, null);
     }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import org.netbeans.api.visual.widget.Widget;
+
+/**
+ * Finds the tab under a point with a binary search of the cached tab
+ * edges, rather than asking every tab widget whether it is hit, and
+ * answers in constant time while the pointer stays within the tab it was
+ * last over.  Bounds are cached in the coordinate space of the tabs
+ * container, which does not change when the tray is panned.
+ *
+ * @author Tim Boudreau
+ */
+final class HoverResolver implements PanTray.TabLocator {
+
+    private final Widget container;
+    private final TabEdges edges;
+    private final TabWidgetMapper mapper;
+    private final boolean vertical;
+    private final Rectangle lastBounds = new Rectangle();
+    private TabWidget last;
+    private int lastGeneration = -1;
+    private int hits;
+    private int searches;
+
+    HoverResolver(Widget container, TabEdges edges, TabWidgetMapper mapper, boolean vertical) {
+        this.container = container;
+        this.edges = edges;
+        this.mapper = mapper;
+        this.vertical = vertical;
+    }
+
+    /**
+     * Get the widget at a position in the edge cache, which, if the
+     * mapper only has widgets for a window of the tabs, is the position
+     * within that window.
+     */
+    private TabWidget materialized(int index) {
+        return index < 0 || edges.size() != mapper.widgetCount()
+                ? null : mapper.widgets().get(index);
+    }
+
+    /**
+     * Find the tab widget at a point in scene coordinates.
+     *
+     * @param scenePoint A point
+     * @return A widget or null
+     */
+    @Override
+    public TabWidget tabAt(Point scenePoint) {
+        Point local = container.convertSceneToLocal(scenePoint);
+        if (last != null && lastGeneration == edges.generation()
+                && last.getParentWidget() == container
+                && lastBounds.contains(local)) {
+            hits++;
+            return last;
+        }
+        searches++;
+        last = null;
+        int index = vertical ? edges.indexAt(local.y) : edges.indexAt(local.x, local.y);
+        TabWidget result = materialized(index);
+        if (result == null) {
+            return null;
+        }
+        Rectangle bounds = result.getBounds();
+        Point loc = result.getLocation();
+        if (bounds == null || loc == null) {
+            return null;
+        }
+        lastBounds.setBounds(bounds);
+        lastBounds.translate(loc.x, loc.y);
+        if (!lastBounds.contains(local)) {
+            // Above or below the tabs
+            return null;
+        }
+        lastGeneration = edges.generation();
+        return last = result;
+    }
+
+    @Override
+    public TabWidget tabSpanning(int x) {
+        return materialized(edges.indexAt(x));
+    }
+
+    @Override
+    public void ensureMeasured() {
+        if (mapper.syncStale(ignored -> true)) {
+            container.getScene().validate();
+        }
+    }
+
+    /**
+     * Forget the cached tab, e.g. when it is removed.
+     */
+    void reset() {
+        last = null;
+    }
+
+    /**
+     * The number of lookups answered from the cached last-hovered tab.
+     *
+     * @return A count
+     */
+    int cacheHits() {
+        return hits;
+    }
+
+    /**
+     * The number of lookups which needed a search.
+     *
+     * @return A count
+     */
+    int searches() {
+        return searches;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+
+/**
+ * Velocity-based scrolling for the pan tray: wheel events add to a velocity
+ * rather than each starting an animation, and a single timer running at
+ * frame rate moves the tray and applies friction until it comes to rest.
+ * Rapid wheel motion in one direction builds up speed, so scrolling across
+ * hundreds of tabs is quick, while a single notch moves a short, fixed
+ * distance.  The limits of travel are fetched when a fling starts and
+ * reused for every frame, until the target reports they have changed.
+ *
+ * @author Tim Boudreau
+ */
+final class KineticScroller implements ActionListener {
+
+    // Fraction of velocity retained per frame
+    private static final double FRICTION = 0.86;
+    // Below this many pixels per frame, stop
+    private static final double REST = 0.5;
+    // Wheel events closer together than this count as one gesture
+    private static final long STREAK_MILLIS = 120;
+    private static final int MAX_STREAK = 12;
+    private final Target target;
+    private final Timer timer;
+    private double velocity;
+    private double position;
+    private long lastImpulse;
+    private int streak;
+    private int[] limits;
+
+    KineticScroller(Target target) {
+        this.target = target;
+        timer = new Timer(CoalescingScheduler.FRAME_MILLIS, this);
+        timer.setRepeats(true);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Add motion from a wheel event.
+     *
+     * @param distance The distance in pixels this event alone should move
+     * the tray, if nothing else were going on
+     * @param when The event time
+     */
+    void impulse(double distance, long when) {
+        if (distance == 0) {
+            return;
+        }
+        boolean sameDirection = Math.signum(distance) == Math.signum(velocity);
+        if (sameDirection && when - lastImpulse <= STREAK_MILLIS) {
+            streak = Math.min(MAX_STREAK, streak + 1);
+        } else {
+            streak = 0;
+            if (!sameDirection) {
+                // Reversing direction should not have to overcome momentum
+                velocity = 0;
+            }
+        }
+        lastImpulse = when;
+        if (!timer.isRunning()) {
+            position = target.position();
+            limits = target.limits();
+        }
+        // With per-frame friction f, an initial velocity v travels
+        // v / (1 - f) in total, so this makes one isolated event move
+        // the tray by the requested distance
+        velocity += distance * (1D - FRICTION) * (1 + streak);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    boolean isRunning() {
+        return timer.isRunning();
+    }
+
+    void stop() {
+        if (timer.isRunning()) {
+            timer.stop();
+            velocity = 0;
+            streak = 0;
+            limits = null;
+            target.settled();
+        }
+    }
+
+    /**
+     * Called when the extent of the content or the viewport has changed,
+     * so the next frame fetches the limits again.
+     */
+    void limitsChanged() {
+        limits = null;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (limits == null) {
+            limits = target.limits();
+        }
+        int[] minMax = limits;
+        position += velocity;
+        velocity *= FRICTION;
+        if (position <= minMax[0]) {
+            position = minMax[0];
+            velocity = 0;
+        } else if (position >= minMax[1]) {
+            position = minMax[1];
+            velocity = 0;
+        }
+        target.setPosition((int) Math.round(position));
+        if (Math.abs(velocity) < REST) {
+            stop();
+        }
+    }
+
+    interface Target {
+
+        int position();
+
+        int[] limits();
+
+        void setPosition(int position);
+
+        void settled();
+    }
+}
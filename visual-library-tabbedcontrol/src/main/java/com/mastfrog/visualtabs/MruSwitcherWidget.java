@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.List;
+import org.netbeans.api.visual.model.ObjectState;
+import org.netbeans.api.visual.widget.Scene;
+import org.netbeans.api.visual.widget.Widget;
+import org.netbeans.swing.tabcontrol.TabData;
+
+/**
+ * Overlay shown over the tabs while cycling through recently selected
+ * tabs, listing them in most-recently-selected order with the one which
+ * will be selected highlighted - in a row over a horizontal strip, or a
+ * column over a vertical one.
+ *
+ * @author Tim Boudreau
+ */
+final class MruSwitcherWidget extends Widget {
+
+    private static final ObjectState NORMAL = ObjectState.createNormal();
+    private static final ObjectState SELECTED = NORMAL.deriveSelected(true);
+    private final TabsAppearance appearance;
+    private List<TabData> candidates;
+    private String[] names = new String[0];
+    private int position;
+
+    MruSwitcherWidget(Scene scene, TabsAppearance appearance) {
+        super(scene);
+        this.appearance = appearance;
+        setVisible(false);
+    }
+
+    void show(List<TabData> candidates, int position) {
+        this.candidates = candidates;
+        names = new String[candidates.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = TabScene.deHtml(candidates.get(i).getText());
+        }
+        this.position = position;
+        setVisible(true);
+        repaint();
+    }
+
+    void hide() {
+        setVisible(false);
+        candidates = null;
+    }
+
+    boolean isShowing() {
+        return candidates != null;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void setPosition(int position) {
+        if (position != this.position) {
+            this.position = position;
+            repaint();
+        }
+    }
+
+    TabData selected() {
+        return candidates == null ? null : candidates.get(position);
+    }
+
+    @Override
+    protected void paintWidget() {
+        Rectangle bds = getBounds();
+        Graphics2D g = getGraphics();
+        if (bds == null || g == null || names.length == 0) {
+            return;
+        }
+        g.setColor(appearance.getBackground());
+        g.fill(bds);
+        g.setFont(appearance.tabFont());
+        FontMetrics fm = g.getFontMetrics();
+        int pad = appearance.tabInternalPadding();
+        boolean column = bds.height > bds.width;
+        int rowHeight = fm.getHeight() + pad;
+        int pos = column ? bds.y : bds.x + pad;
+        for (int i = 0; i < names.length; i++) {
+            Rectangle cell = column
+                    ? new Rectangle(bds.x, pos, bds.width, rowHeight)
+                    : new Rectangle(pos, bds.y + pad / 2, fm.stringWidth(names[i]) + pad * 2, bds.height - pad);
+            if (i == position) {
+                g.setColor(TabsAppearance.alpha(96, appearance.selectionDirectionIndicatorColor()));
+                g.fillRoundRect(cell.x, cell.y, cell.width, cell.height, pad, pad);
+            }
+            g.setPaint(appearance.tabForeground(i == position ? SELECTED : NORMAL));
+            g.drawString(names[i], cell.x + pad, cell.y + ((cell.height - fm.getHeight()) / 2) + fm.getAscent());
+            pos += column ? rowHeight : cell.width;
+            if (pos > (column ? bds.y + bds.height : bds.x + bds.width)) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import org.netbeans.api.visual.widget.Scene;
+import org.netbeans.api.visual.widget.Widget;
+
+/**
+ * Debugging aid which times the paints of tabs, the selection glow, the
+ * ragged edges and the buttons, and draws each widget tinted from green
+ * (cheap) to red (slow) with its average paint time, plus a line in the
+ * corner of the scene with frames per second, paint time per frame, and
+ * how that time divides between tab backgrounds, labels, icons, glow,
+ * edges and buttons - so a screenshot from a user's machine shows what
+ * dominates with their look and feel.  Enabled with the system property
+ * <code>visualtabs.paintHeatmap=true</code>; when it is not set, scenes
+ * have no heatmap, and the cost to painting is a null check.
+ * <p>
+ * Times are kept per widget in small ring buffers of the last
+ * {@link #SAMPLES} frames it was painted in.  Only used on the event
+ * thread.
+ *
+ * @author Tim Boudreau
+ */
+final class PaintHeatmap {
+
+    static final String SYSTEM_PROPERTY = "visualtabs.paintHeatmap";
+    static final boolean ENABLED = Boolean.getBoolean(SYSTEM_PROPERTY);
+    static final int SAMPLES = 32;
+    // Average paint time at which a widget is drawn fully red
+    private static final double HOT_MILLIS = 1;
+    private static final int HUD_REFRESH_MILLIS = 500;
+    private final Map<Widget, Ring> widgets = new WeakHashMap<>();
+    private final List<Ring> paintedThisFrame = new ArrayList<>();
+    private final Ring[] parts = new Ring[Part.values().length];
+    private final Ring frames = new Ring();
+    // Timestamps of recent frames, for frames per second
+    private final long[] frameTimes = new long[128];
+    private int nextFrameTime;
+    private final Rectangle hud = new Rectangle();
+    private Font font;
+    private Timer hudRefresh;
+
+    enum Part {
+        BACKGROUND("bg"),
+        LABEL("label"),
+        ICON("icon"),
+        GLOW("glow"),
+        EDGES("edges"),
+        BUTTONS("buttons");
+        final String abbreviation;
+
+        Part(String abbreviation) {
+            this.abbreviation = abbreviation;
+        }
+    }
+
+    PaintHeatmap() {
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new Ring();
+        }
+    }
+
+    /**
+     * Get the heatmap of the scene a widget belongs to.
+     *
+     * @param scene A scene
+     * @return A heatmap, or null if not enabled
+     */
+    static PaintHeatmap of(Scene scene) {
+        return scene instanceof TabScene ? ((TabScene) scene).heatmap() : null;
+    }
+
+    private static final class Ring {
+
+        private final long[] samples = new long[SAMPLES];
+        private int next;
+        private int count;
+        private long pending;
+        private boolean painted;
+
+        void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SAMPLES;
+            count = Math.min(SAMPLES, count + 1);
+        }
+
+        double averageMillis() {
+            if (count == 0) {
+                return 0;
+            }
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += samples[i];
+            }
+            return total / (count * 1000000D);
+        }
+    }
+
+    /**
+     * Record part of the time it took to paint a widget in the current
+     * frame.
+     *
+     * @param widget The widget the time is attributed to
+     * @param part What was painted
+     * @param nanos How long it took
+     */
+    void painted(Widget widget, Part part, long nanos) {
+        Ring ring = widgets.get(widget);
+        if (ring == null) {
+            ring = new Ring();
+            widgets.put(widget, ring);
+        }
+        if (!ring.painted) {
+            ring.painted = true;
+            paintedThisFrame.add(ring);
+        }
+        ring.pending += nanos;
+        Ring partRing = parts[part.ordinal()];
+        if (!partRing.painted) {
+            partRing.painted = true;
+            paintedThisFrame.add(partRing);
+        }
+        partRing.pending += nanos;
+    }
+
+    /**
+     * Called after the scene has painted, to close out the frame and paint
+     * the overlay over it.
+     *
+     * @param scene The scene
+     * @param g The scene's graphics
+     * @param nanos How long the scene took to paint
+     */
+    void framePainted(Scene scene, Graphics2D g, long nanos) {
+        Rectangle clip = g.getClipBounds();
+        // Frames which only refresh the HUD are not counted
+        if (clip == null || !hud.contains(clip)) {
+            for (Ring ring : paintedThisFrame) {
+                ring.add(ring.pending);
+                ring.pending = 0;
+                ring.painted = false;
+            }
+            frames.add(nanos);
+            frameTimes[nextFrameTime] = System.nanoTime();
+            nextFrameTime = (nextFrameTime + 1) % frameTimes.length;
+        } else {
+            for (Ring ring : paintedThisFrame) {
+                ring.pending = 0;
+                ring.painted = false;
+            }
+        }
+        paintedThisFrame.clear();
+        if (font == null) {
+            font = scene.getDefaultFont().deriveFont(Font.PLAIN, 10F);
+        }
+        Font oldFont = g.getFont();
+        g.setFont(font);
+        paintWidgets(g, clip);
+        paintHud(scene, g);
+        g.setFont(oldFont);
+        refreshHud(scene);
+    }
+
+    private void paintWidgets(Graphics2D g, Rectangle clip) {
+        FontMetrics fm = g.getFontMetrics();
+        for (Map.Entry<Widget, Ring> e : widgets.entrySet()) {
+            Widget w = e.getKey();
+            Rectangle r = w.getBounds();
+            if (r == null || w.getParentWidget() == null || !w.isVisible()) {
+                continue;
+            }
+            r = w.convertLocalToScene(r);
+            if (clip != null && !clip.intersects(r)) {
+                continue;
+            }
+            double ms = e.getValue().averageMillis();
+            float heat = (float) Math.min(1, ms / HOT_MILLIS);
+            g.setColor(TabsAppearance.alpha(96, Color.getHSBColor((1 - heat) / 3, 1, 1)));
+            g.fillRect(r.x, r.y, r.width, r.height);
+            String text = String.format("%.2f", ms);
+            if (fm.stringWidth(text) < r.width) {
+                g.setColor(Color.BLACK);
+                g.drawString(text, r.x + 2, r.y + fm.getAscent());
+            }
+        }
+    }
+
+    private void paintHud(Scene scene, Graphics2D g) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(framesPerSecond()).append(" fps ")
+                .append(String.format("%.2fms", frames.averageMillis()));
+        for (Part p : Part.values()) {
+            sb.append(' ').append(p.abbreviation).append(' ')
+                    .append(String.format("%.2f", parts[p.ordinal()].averageMillis()));
+        }
+        String text = sb.toString();
+        FontMetrics fm = g.getFontMetrics();
+        Rectangle bounds = scene.getBounds();
+        int x = bounds == null ? 0 : bounds.x;
+        int y = bounds == null ? 0 : bounds.y;
+        hud.setBounds(x, y, fm.stringWidth(text) + 6, fm.getHeight() + 2);
+        g.setColor(new Color(0, 0, 0, 176));
+        g.fillRect(hud.x, hud.y, hud.width, hud.height);
+        g.setColor(Color.WHITE);
+        g.drawString(text, hud.x + 3, hud.y + 1 + fm.getAscent());
+    }
+
+    private int framesPerSecond() {
+        long since = System.nanoTime() - 1000000000L;
+        int result = 0;
+        for (long t : frameTimes) {
+            if (t != 0 && t > since) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Repaint the HUD now and then, so it does not show stale numbers after
+     * the tabs stop repainting; stops once the view is not showing.
+     */
+    private void refreshHud(Scene scene) {
+        JComponent view = scene.getView();
+        if (view == null || (hudRefresh != null && hudRefresh.isRunning())) {
+            return;
+        }
+        hudRefresh = new Timer(HUD_REFRESH_MILLIS, ae -> {
+            if (!view.isShowing()) {
+                hudRefresh.stop();
+            } else {
+                view.repaint(scene.convertSceneToView(hud));
+            }
+        });
+        hudRefresh.start();
+    }
+}
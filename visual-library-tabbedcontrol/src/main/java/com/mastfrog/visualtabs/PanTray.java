@@ -19,11 +19,17 @@
 package com.mastfrog.visualtabs;
 
 import java.awt.FontMetrics;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseWheelEvent;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 import javax.swing.JComponent;
 import javax.swing.Timer;
 import org.netbeans.api.visual.action.WidgetAction;
@@ -33,12 +39,13 @@ import org.netbeans.api.visual.animator.AnimatorListener;
 import org.netbeans.api.visual.animator.SceneAnimator;
 import org.netbeans.api.visual.widget.Scene;
 import org.netbeans.api.visual.widget.Widget;
+import org.netbeans.swing.tabcontrol.TabDataModel;
 
 /**
  *
  * @author Tim Boudreau
  */
-class PanTray extends Widget {
+class PanTray extends Widget implements KineticScroller.Target {
 
     private int panPosition = 0;
     private Point lastPoint;
@@ -47,12 +54,17 @@ class PanTray extends Widget {
     private final HoverNotifier hoverConsumer;
     private final int leftInset;
     private final PartiallyVisibleWidgetConsumer pvConsumer;
+    private final Supplier<? extends TabLocator> locator;
+    private final KineticScroller kinetic = new KineticScroller(this);
+    private boolean scrollerMoving;
+    private IntSupplier verticalExtent;
 
     PanTray(Scene scene, int inset, HoverNotifier hoverConsumer, PartiallyVisibleWidgetConsumer pvConsumer) {
-        this(scene, inset, inset, hoverConsumer, pvConsumer);
+        this(scene, inset, inset, hoverConsumer, pvConsumer, null);
     }
 
-    PanTray(Scene scene, int leftInset, int rightInset, HoverNotifier hoverConsumer, PartiallyVisibleWidgetConsumer pvConsumer) {
+    PanTray(Scene scene, int leftInset, int rightInset, HoverNotifier hoverConsumer,
+            PartiallyVisibleWidgetConsumer pvConsumer, Supplier<? extends TabLocator> locator) {
         super(scene);
         getActions().addAction(new WidgetAction.Adapter() {
             @Override
@@ -67,11 +79,49 @@ class PanTray extends Widget {
         this.hoverConsumer = hoverConsumer;
         this.leftInset = leftInset;
         this.pvConsumer = pvConsumer;
+        this.locator = locator;
+        // Children revalidating notify this widget's dependencies too; a
+        // tab opening, closing or changing width mid-fling changes where
+        // the fling has to stop
+        addDependency(() -> {
+            if (!scrollerMoving) {
+                kinetic.limitsChanged();
+            }
+        });
+    }
+
+    /**
+     * Pan vertically rather than horizontally.  The extent is supplied
+     * rather than measured from the child's children, since in a
+     * vertical strip only the tabs near the viewport have widgets.
+     *
+     * @param extent Supplies the height of the tabs, including the
+     * leading inset
+     */
+    void setVertical(IntSupplier extent) {
+        this.verticalExtent = extent;
+    }
+
+    boolean isVertical() {
+        return verticalExtent != null;
+    }
+
+    private Point panPoint(int pos) {
+        return verticalExtent == null ? new Point(pos, 0) : new Point(0, pos);
     }
 
     @Override
     protected Rectangle calculateClientArea() {
         Rectangle result = new Rectangle(0, 0, 0, 0);
+        if (verticalExtent != null) {
+            for (Widget w : getChildren()) {
+                Rectangle r = w.getBounds();
+                result.width = Math.max(result.width, r.width);
+            }
+            result.height = verticalExtent.getAsInt();
+            result.y -= panPosition;
+            return result;
+        }
         for (Widget w : getChildren()) {
             Rectangle r = w.getBounds();
             result.width += r.width;
@@ -81,66 +131,103 @@ class PanTray extends Widget {
         return result;
     }
 
-    long lastScrollEvent = 0;
-    int rapidCount;
-
-    private static final long RAPID = 55;
-    private static final int TRIGGER_RAPID_COUNT = 4;
-    private static final int RAPID_MULTIPLIER = 25;
     static boolean MAC = System.getProperty("os.name", "-").contains("Mac OS");
 
     private void mouseWheelMoved(WidgetAction.WidgetMouseWheelEvent event) {
-        long now = System.currentTimeMillis();
         // Wheel numbers are low, so to not have deathly slow scrolling
         // we need a multiplier
         int multiplier = MAC ? 45 : 5; // XXX why?
-        // We will accelerate if we see more than some number of events
-        // in a short timeframe
-        long interval = now - lastScrollEvent;
-        boolean lastWasRapid = rapidCount > 0;
-        // store for next time
-        lastScrollEvent = now;
-        if (interval <= RAPID) { // Got a fast one
-            rapidCount++;
-            // Several fast ones in a row? Multiply the multiplier
-            if (rapidCount > TRIGGER_RAPID_COUNT) {
-                multiplier *= RAPID_MULTIPLIER;
-            }
-        } else {
-            // Longer delay, reset the counter
-            rapidCount = 0;
-        }
-        // If we got a more delayed event after rapid ones (i.e. scramming
-        // the mouse wheel twice in a row), multiply even more
-        if (lastWasRapid && rapidCount == 0
-                && getScene().getSceneAnimator().isAnimatingPreferredLocation(getChildren().get(0))) {
-            multiplier *= RAPID_MULTIPLIER * 2;
-        } else {
-            // If we're in the middle of a scroll animation, don't keep
-            // firing more
-            if (rapidCount > TRIGGER_RAPID_COUNT + 1) {
-                return;
+        double units = event.getUnitsToScroll();
+        // Trackpads and high-resolution wheels report fractional rotation,
+        // which the visual library's event does not expose
+        AWTEvent awt = EventQueue.getCurrentEvent();
+        if (awt instanceof MouseWheelEvent) {
+            MouseWheelEvent mwe = (MouseWheelEvent) awt;
+            if (mwe.getScrollType() == MouseWheelEvent.WHEEL_UNIT_SCROLL) {
+                units = mwe.getPreciseWheelRotation() * mwe.getScrollAmount();
             }
         }
+        if (!animates()) {
+            // Jump straight to the destination instead of coasting there
+            int[] minMax = measuredMinMax();
+            int newPos = (int) Math.round(panPosition - units * multiplier);
+            setPanPosition(Math.max(minMax[0], Math.min(minMax[1], newPos)));
+            return;
+        }
+        kinetic.impulse(-units * multiplier, event.getWhen());
+    }
 
-        int distance = -event.getUnitsToScroll() * multiplier;
-        int newPos = panPosition + (distance);
-        // get the limits on how far left or right we can move
-        int[] minMax = minMax();
-        boolean usable = newPos >= minMax[0] && newPos <= minMax[1];
-        if (!usable) {
-            if (newPos > minMax[1]) {
-                newPos = minMax[1];
-            } else if (newPos < minMax[0]) {
-                newPos = minMax[0];
+    private boolean animates() {
+        return !(getScene() instanceof TabScene)
+                || ((TabScene) getScene()).appearance.renderingProfile().animates();
+    }
+
+    @Override
+    public int position() {
+        return panPosition;
+    }
+
+    @Override
+    public int[] limits() {
+        return measuredMinMax();
+    }
+
+    private TabLocator locator() {
+        return locator == null ? null : locator.get();
+    }
+
+    private int[] measuredMinMax() {
+        TabLocator locator = locator();
+        if (locator != null) {
+            locator.ensureMeasured();
+        }
+        return minMax();
+    }
+
+    @Override
+    public void setPosition(int pos) {
+        // Called once per frame by the kinetic scroller, so move directly
+        // rather than starting an animation
+        if (pos != panPosition) {
+            EdtWatchdog.Bracket stall = EdtWatchdog.enter("PanTray.setPosition", tabModel(), null);
+            // Moving the child revalidates it, which changes no limits
+            scrollerMoving = true;
+            try {
+                panPosition = pos;
+                Widget child = getChildren().get(0);
+                SceneAnimator anim = getScene().getSceneAnimator();
+                if (anim.isAnimatingPreferredLocation(child)) {
+                    anim.animatePreferredLocation(child, panPoint(pos));
+                } else {
+                    child.setPreferredLocation(panPoint(pos));
+                }
+                revalidate(false);
+                getScene().validate();
+            } finally {
+                scrollerMoving = false;
+                EdtWatchdog.exit(stall);
             }
-            usable = true;
         }
-        if (usable) {
-            setPanPosition(newPos);
+    }
+
+    @Override
+    public void settled() {
+        EdtWatchdog.Bracket stall = EdtWatchdog.enter("PanTray.settled", tabModel(), null);
+        try {
+            updatePartiallyVisibleWidget();
+            TabLocator locator = locator();
+            if (locator != null && lastPoint != null) {
+                hoverConsumer.hoverMayBeChanged(eventTime, locator.tabAt(lastPoint), lastPoint);
+            }
+        } finally {
+            EdtWatchdog.exit(stall);
         }
     }
 
+    private TabDataModel tabModel() {
+        return getScene() instanceof TabScene ? ((TabScene) getScene()).model() : null;
+    }
+
     int width() {
         int result = 0;
         for (Widget w : getChildren()) {
@@ -150,7 +237,6 @@ class PanTray extends Widget {
     }
 
     int[] minMax() {
-        int needed = width();
         JComponent comp = getScene().getView();
         Rectangle r = getBounds();
         if (r == null) {
@@ -161,7 +247,11 @@ class PanTray extends Widget {
             }
         }
         if (comp != null) {
-            int w = r.width - leftInset;
+            // Only measured with a view: without one the scene is never
+            // validated, and tabs added since the last layout have no
+            // bounds to take a preferred size from
+            int needed = verticalExtent == null ? width() : verticalExtent.getAsInt();
+            int w = (verticalExtent == null ? r.width : r.height) - leftInset;
             if (w < needed) {
                 int min = w - needed;
                 int[] result = new int[]{min, 0};
@@ -229,11 +319,16 @@ class PanTray extends Widget {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            boolean result = tray.scrollFor(widget);
-            if (!result) {
-                stop();
+            EdtWatchdog.Bracket stall = EdtWatchdog.enter("PanTray.DragScrollTimer", tray.tabModel(), null);
+            try {
+                boolean result = tray.scrollFor(widget);
+                if (!result) {
+                    stop();
+                }
+                tick();
+            } finally {
+                EdtWatchdog.exit(stall);
             }
-            tick();
         }
         int ct = 0;
 
@@ -272,8 +367,17 @@ class PanTray extends Widget {
         }
     }
 
+    private boolean isInTray(Widget w) {
+        for (Widget p = w.getParentWidget(); p != null; p = p.getParentWidget()) {
+            if (p == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int directionOf(Widget w) {
-        if (w.getParentWidget() == null) {
+        if (!isInTray(w)) {
             return 0;
         }
         Rectangle bds = w.getBounds();
@@ -295,6 +399,12 @@ class PanTray extends Widget {
         r = convertLocalToScene(r);
         r = getChildren().get(0).convertSceneToLocal(r);
 
+        if (verticalExtent != null) {
+            if (bds.y + bds.height >= r.y && bds.y <= r.y + r.height) {
+                return 0;
+            }
+            return bds.y + bds.height > r.y ? 1 : -1;
+        }
         if (bds.x + bds.width >= r.x && bds.x <= r.x + r.width) {
             return 0;
         }
@@ -307,9 +417,15 @@ class PanTray extends Widget {
     }
 
     void ensureChildVisible(Widget w) {
-        if (w.getParentWidget() == null) {
+        if (!isInTray(w)) {
+            // Not here, or in a region, such as pinned tabs, which never pans
             return;
         }
+        TabLocator locator = locator();
+        if (locator != null) {
+            // Tabs to the left of w may have changed width
+            locator.ensureMeasured();
+        }
         Rectangle bds = w.getBounds();
         if (bds == null) {
             w.getScene().validate();
@@ -325,6 +441,10 @@ class PanTray extends Widget {
         }
         bds = w.getParentWidget().convertLocalToScene(bds);
         bds = getChildren().get(0).convertSceneToLocal(bds);
+        if (verticalExtent != null) {
+            ensureSpanVisible(bds.y, bds.height);
+            return;
+        }
         Rectangle r = getVisibleRectangle();
         r = convertLocalToScene(r);
         r = getChildren().get(0).convertSceneToLocal(r);
@@ -348,6 +468,35 @@ class PanTray extends Widget {
         setPanPosition(-bds.x);
     }
 
+    /**
+     * Pan so that a span along the axis of the tray, in the coordinate
+     * space of the tray's child, is in view, whether or not any widget
+     * occupies it.
+     *
+     * @param start The leading edge
+     * @param extent The length
+     */
+    void ensureSpanVisible(int start, int extent) {
+        Rectangle bds = getBounds();
+        if (bds == null) {
+            getScene().validate();
+            bds = getBounds();
+            if (bds == null) {
+                return;
+            }
+        }
+        int visible = verticalExtent == null ? bds.width : bds.height;
+        int viewStart = -panPosition;
+        if (start >= viewStart && start + extent <= viewStart + visible) {
+            return;
+        }
+        int pos = start > viewStart
+                ? -(start + extent + rightInset - visible)
+                : -(start - leftInset);
+        int[] minMax = measuredMinMax();
+        setPanPosition(Math.max(minMax[0], Math.min(minMax[1], pos)));
+    }
+
     public Rectangle getVisibleRectangle() {
         Rectangle result = getBounds();
         if (result == null) {
@@ -370,19 +519,43 @@ class PanTray extends Widget {
         return this.panPosition;
     }
 
-    HoverUpdateNotifier hun;
-
-    private void updatePartiallyVisibleWidget() {
-        Graphics2D g = getGraphics();
-        if (g == null) {
-            getScene().validate();
-            g = getGraphics();
+    private final HoverUpdateNotifier hun = new HoverUpdateNotifier();
+    private Font thresholdFont;
+    private int threshold = -1;
+
+    /**
+     * The width below which a tab partially scrolled off the left edge is
+     * considered very partially visible, cached for the current font.
+     *
+     * @return The width, or -1 if it cannot be computed yet
+     */
+    private int partialVisibilityThreshold() {
+        Font font = getFont();
+        if (threshold < 0 || thresholdFont != font) {
+            Graphics2D g = getGraphics();
             if (g == null) {
-                return;
+                getScene().validate();
+                g = getGraphics();
+                if (g == null) {
+                    return -1;
+                }
             }
+            FontMetrics fm = g.getFontMetrics(font);
+            threshold = fm.stringWidth("xxxxxxx");
+            thresholdFont = font;
+        }
+        return threshold;
+    }
+
+    private void updatePartiallyVisibleWidget() {
+        if (verticalExtent != null) {
+            // Rows are never partially off the side
+            return;
+        }
+        int charsWidth = partialVisibilityThreshold();
+        if (charsWidth < 0) {
+            return;
         }
-        FontMetrics fm = g.getFontMetrics(getFont());
-        int charsWidth = fm.stringWidth("xxxxxxx");
         if (partiallyVisibleLeftWidget != null) {
             Rectangle bds = partiallyVisibleLeftWidget.getBounds();
             if (partiallyVisibleLeftWidget.getBounds() == null) {
@@ -402,6 +575,24 @@ class PanTray extends Widget {
             }
         }
 
+        TabLocator locator = locator();
+        if (locator != null) {
+            // Look up the tab spanning the left edge from the tab edges
+            Widget container = getChildren().get(0);
+            Point edge = container.convertSceneToLocal(convertLocalToScene(new Point(0, 0)));
+            Widget w = locator.tabSpanning(edge.x);
+            Rectangle bds = w == null ? null : w.getBounds();
+            if (bds != null) {
+                bds = convertSceneToLocal(w.convertLocalToScene(bds));
+                int right = bds.x + bds.width;
+                if (bds.x < 0 && right > 0) {
+                    setPartiallyVisibleLeftWidget(w, right < charsWidth);
+                    return;
+                }
+            }
+            setPartiallyVisibleLeftWidget(null, false);
+            return;
+        }
         boolean found = false;
         for (Widget w : getChildren().get(0).getChildren()) {
             Rectangle bds = w.getBounds();
@@ -452,16 +643,19 @@ class PanTray extends Widget {
     }
 
     void setPanPosition(int pos) {
+        kinetic.stop();
         if (pos != this.panPosition) {
             this.panPosition = pos;
-            SceneAnimator anim = getScene().getSceneAnimator();
-            Animator locAnim = anim.getPreferredLocationAnimator();
-            if (hun != null) {
-                locAnim.removeAnimatorListener(hun);
+            if (!animates()) {
+                getChildren().get(0).setPreferredLocation(panPoint(pos));
+                this.revalidate(false);
+                getScene().validate();
+                settled();
+                return;
             }
-            hun = new HoverUpdateNotifier();
-            locAnim.addAnimatorListener(hun);
-            anim.animatePreferredLocation(getChildren().get(0), new Point(pos, 0));
+            SceneAnimator anim = getScene().getSceneAnimator();
+            hun.panStarted(anim.getPreferredLocationAnimator());
+            anim.animatePreferredLocation(getChildren().get(0), panPoint(pos));
             updatePartiallyVisibleWidget();
             this.revalidate(false);
         }
@@ -474,9 +668,24 @@ class PanTray extends Widget {
         }
     }
 
+    /**
+     * Listens on the scene's shared preferred-location animator for the end
+     * of a pan; registered once and reused for every pan, since other
+     * widgets' location animations notify it too, and it only acts when a
+     * pan is in progress and the tray's own animation is over.
+     */
     class HoverUpdateNotifier implements AnimatorListener {
 
-        boolean triggered;
+        private boolean registered;
+        private boolean panning;
+
+        void panStarted(Animator animator) {
+            if (!registered) {
+                animator.addAnimatorListener(this);
+                registered = true;
+            }
+            panning = true;
+        }
 
         @Override
         public void animatorStarted(AnimatorEvent event) {
@@ -484,20 +693,35 @@ class PanTray extends Widget {
 
         @Override
         public void animatorReset(AnimatorEvent event) {
-//            event.getAnimator().removeAnimatorListener(this);
         }
 
         @Override
         public void animatorFinished(AnimatorEvent event) {
-            event.getAnimator().removeAnimatorListener(this);
-            if (!triggered && lastPoint != null) {
-                triggered = true;
-                Widget container = getChildren().get(0);
-                for (Widget w : container.getChildren()) {
-                    Point pp = w.convertSceneToLocal(lastPoint);
-                    if (w.isHitAt(pp)) {
-                        hoverConsumer.hoverMayBeChanged(eventTime, w, lastPoint);
-                        break;
+            if (panning && !getScene().getSceneAnimator()
+                    .isAnimatingPreferredLocation(getChildren().get(0))) {
+                EdtWatchdog.Bracket stall = EdtWatchdog.enter("PanTray.panFinished", tabModel(), null);
+                try {
+                    panFinished();
+                } finally {
+                    EdtWatchdog.exit(stall);
+                }
+            }
+        }
+
+        private void panFinished() {
+            panning = false;
+            if (lastPoint != null) {
+                TabLocator locator = locator();
+                if (locator != null) {
+                    hoverConsumer.hoverMayBeChanged(eventTime, locator.tabAt(lastPoint), lastPoint);
+                } else {
+                    Widget container = getChildren().get(0);
+                    for (Widget w : container.getChildren()) {
+                        Point pp = w.convertSceneToLocal(lastPoint);
+                        if (w.isHitAt(pp)) {
+                            hoverConsumer.hoverMayBeChanged(eventTime, w, lastPoint);
+                            break;
+                        }
                     }
                 }
                 updatePartiallyVisibleWidget();
@@ -514,6 +738,35 @@ class PanTray extends Widget {
         }
     }
 
+    /**
+     * Finds tabs by position faster than scanning the tray's children.
+     */
+    interface TabLocator {
+
+        /**
+         * Find the tab at a point in scene coordinates.
+         *
+         * @param scenePoint A point
+         * @return A widget or null
+         */
+        Widget tabAt(Point scenePoint);
+
+        /**
+         * Find the tab whose horizontal extent includes a coordinate in the
+         * coordinate space of the tray's child.
+         *
+         * @param x A coordinate
+         * @return A widget or null
+         */
+        Widget tabSpanning(int x);
+
+        /**
+         * Bring up to date any tabs whose data changed while they were
+         * scrolled out of view, so the total width is exact.
+         */
+        void ensureMeasured();
+    }
+
     public int offEdgeDirection(Widget dragged) {
         Rectangle bds = dragged.getBounds();
         if (bds == null) {
@@ -526,6 +779,12 @@ class PanTray extends Widget {
     }
 
     public int offEdgeDirection(Rectangle r) {
+        if (verticalExtent != null) {
+            if (r.y < 0) {
+                return -1;
+            }
+            return r.y + r.height > getVisibleRectangle().height ? 1 : 0;
+        }
         if (r.x < 0) {
             return -1;
         } else {
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import org.netbeans.api.visual.layout.Layout;
+import org.netbeans.api.visual.widget.Widget;
+
+/**
+ * Lays out pinned tabs left to right in model order, in a region of their
+ * own outside the pan tray, recording their positions in a separate edge
+ * cache.  Since the region is not a descendant of the pan tray, panning or
+ * reflowing the other tabs never invalidates it, and its total width is
+ * kept here so the scene layout can reserve room for it without measuring
+ * the pinned tabs again.
+ *
+ * @author Tim Boudreau
+ */
+final class PinnedTabsLayout implements Layout {
+
+    private final ToIntFunction<Widget> indexOf;
+    private final int gap;
+    private final TabEdges edges = new TabEdges();
+    private final List<Widget> order = new ArrayList<>();
+    private int extent;
+    private int height;
+
+    PinnedTabsLayout(ToIntFunction<Widget> indexOf, int gap) {
+        this.indexOf = indexOf;
+        this.gap = gap;
+    }
+
+    /**
+     * The width of the pinned tabs as of the last layout.
+     *
+     * @return A width, or 0 if there are none
+     */
+    int extent() {
+        return extent;
+    }
+
+    /**
+     * The height of the tallest pinned tab as of the last layout.
+     *
+     * @return A height
+     */
+    int height() {
+        return height;
+    }
+
+    /**
+     * Find the pinned tab at a horizontal position.
+     *
+     * @param x A coordinate in the space of the region
+     * @return A widget, or null
+     */
+    Widget widgetAt(int x) {
+        int ix = edges.indexAt(x);
+        return ix < 0 || ix >= order.size() ? null : order.get(ix);
+    }
+
+    @Override
+    public void layout(Widget widget) {
+        order.clear();
+        order.addAll(widget.getChildren());
+        // Few tabs are pinned, and the mapper's index lookups are cheap
+        order.sort((a, b) -> Integer.compare(indexOf.applyAsInt(a), indexOf.applyAsInt(b)));
+        edges.clear();
+        int max = 0;
+        for (Widget child : order) {
+            max = Math.max(max, child.getPreferredBounds().height);
+        }
+        int pos = 0;
+        for (Widget child : order) {
+            Rectangle pref = child.getPreferredBounds();
+            edges.add(pos, pref.width);
+            child.resolveBounds(new Point(pos - pref.x, -pref.y), new Rectangle(pref.x, pref.y, pref.width, max));
+            pos += pref.width + gap;
+        }
+        extent = order.isEmpty() ? 0 : pos;
+        height = max;
+    }
+
+    @Override
+    public boolean requiresJustification(Widget widget) {
+        return false;
+    }
+
+    @Override
+    public void justify(Widget widget) {
+        // do nothing
+    }
+}
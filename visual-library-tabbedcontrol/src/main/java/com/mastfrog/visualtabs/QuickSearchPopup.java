@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.AbstractAction;
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import org.netbeans.swing.tabcontrol.TabData;
+
+/**
+ * Popup for switching tabs by typing part of a tab's name, which filters
+ * the list on each keystroke using a TabNameIndex.  The list has a fixed
+ * cell size, so it never measures rows, and only the rows scrolled into
+ * view are rendered, however many tabs match.
+ *
+ * @author Tim Boudreau
+ */
+final class QuickSearchPopup implements DocumentListener {
+
+    private static final Logger LOG = Logger.getLogger(QuickSearchPopup.class.getName());
+    private static final int VISIBLE_ROWS = 16;
+    private static final int WIDTH_IN_CHARS = 40;
+    private final TabNameIndex index;
+    private final Consumer<TabData> onSelect;
+    private final JTextField field = new JTextField();
+    private final Results results = new Results();
+    private final JList<TabNameIndex.Entry> list = new JList<>(results);
+    private final JPopupMenu popup = new JPopupMenu();
+
+    QuickSearchPopup(TabNameIndex index, TabsAppearance appearance, Consumer<TabData> onSelect) {
+        this.index = index;
+        this.onSelect = onSelect;
+        list.setFont(appearance.tabFont());
+        field.setFont(appearance.tabFont());
+        FontMetrics fm = list.getFontMetrics(list.getFont());
+        int width = fm.charWidth('x') * WIDTH_IN_CHARS;
+        list.setFixedCellHeight(Math.max(fm.getHeight(), 16) + 4);
+        list.setFixedCellWidth(width);
+        list.setVisibleRowCount(VISIBLE_ROWS);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.setCellRenderer(new Renderer());
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = list.locationToIndex(e.getPoint());
+                if (row >= 0) {
+                    list.setSelectedIndex(row);
+                    commit();
+                }
+            }
+        });
+        field.getDocument().addDocumentListener(this);
+        bind("DOWN", "next", () -> move(1));
+        bind("UP", "prev", () -> move(-1));
+        bind("PAGE_DOWN", "nextPage", () -> move(VISIBLE_ROWS - 1));
+        bind("PAGE_UP", "prevPage", () -> move(-(VISIBLE_ROWS - 1)));
+        bind("ENTER", "commit", this::commit);
+        bind("ESCAPE", "cancel", () -> popup.setVisible(false));
+
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(null);
+        popup.setLayout(new BorderLayout());
+        popup.add(field, BorderLayout.NORTH);
+        popup.add(scroll, BorderLayout.CENTER);
+    }
+
+    private void bind(String key, String name, Runnable r) {
+        field.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(key), name);
+        field.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                r.run();
+            }
+        });
+    }
+
+    /**
+     * Show the popup with its top right corner at the passed point, with
+     * any previous search cleared.
+     *
+     * @param invoker The component the coordinates are relative to
+     * @param x The right edge
+     * @param y The top edge
+     */
+    void show(Component invoker, int x, int y) {
+        field.setText("");
+        filter();
+        Dimension size = popup.getPreferredSize();
+        popup.show(invoker, Math.max(0, x - size.width), y);
+        field.requestFocusInWindow();
+    }
+
+    boolean isShowing() {
+        return popup.isVisible();
+    }
+
+    private void move(int by) {
+        int size = results.getSize();
+        if (size == 0) {
+            return;
+        }
+        int row = Math.max(0, Math.min(size - 1, list.getSelectedIndex() + by));
+        list.setSelectedIndex(row);
+        list.ensureIndexIsVisible(row);
+    }
+
+    private void commit() {
+        TabNameIndex.Entry selected = list.getSelectedValue();
+        popup.setVisible(false);
+        if (selected != null) {
+            onSelect.accept(selected.data);
+        }
+    }
+
+    private void filter() {
+        long start = System.nanoTime();
+        results.set(index.search(field.getText()));
+        if (results.getSize() > 0) {
+            list.setSelectedIndex(0);
+            list.ensureIndexIsVisible(0);
+        } else {
+            list.clearSelection();
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Quick search ''{0}'' found {1} of {2} in {3}us",
+                    new Object[]{field.getText(), results.getSize(), index.size(),
+                        (System.nanoTime() - start) / 1000});
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        filter();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        filter();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // do nothing
+    }
+
+    static final class Results extends AbstractListModel<TabNameIndex.Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<TabNameIndex.Entry> entries = Collections.emptyList();
+
+        void set(List<TabNameIndex.Entry> entries) {
+            int oldSize = this.entries.size();
+            this.entries = entries;
+            // One event, whatever the size, so the list does not
+            // recompute anything per row
+            fireContentsChanged(this, 0, Math.max(oldSize, entries.size()) - 1);
+        }
+
+        @Override
+        public int getSize() {
+            return entries.size();
+        }
+
+        @Override
+        public TabNameIndex.Entry getElementAt(int index) {
+            return entries.get(index);
+        }
+    }
+
+    static final class Renderer extends DefaultListCellRenderer {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                boolean isSelected, boolean cellHasFocus) {
+            TabNameIndex.Entry entry = (TabNameIndex.Entry) value;
+            JLabel result = (JLabel) super.getListCellRendererComponent(list, entry.name, index,
+                    isSelected, false);
+            result.setIcon(entry.data.getIcon());
+            return result;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.mastfrog.visualtabs;
 
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.Rectangle;
@@ -37,6 +38,9 @@ final class RaggedBorder implements Border {
     private final IntSupplier selectionDirection;
     private boolean leftVisible = true;
     private boolean rightVisible = true;
+    private boolean vertical;
+    private int attentionBefore;
+    private int attentionAfter;
 
     public RaggedBorder(int depthLeft, int depthRight, TabsAppearance appearance, IntSupplier selectionDirection) {
         this.depthLeft = depthLeft;
@@ -55,17 +59,112 @@ final class RaggedBorder implements Border {
         return this;
     }
 
+    /**
+     * Fade the top and bottom edges, for a vertical strip, rather than the
+     * left and right.
+     *
+     * @param vertical Whether vertical
+     * @return this
+     */
+    RaggedBorder setVertical(boolean vertical) {
+        this.vertical = vertical;
+        return this;
+    }
+
+    /**
+     * Set the number of tabs requesting attention which are scrolled off
+     * each edge, which are summarized by a pulsing bar and a count on
+     * that edge.
+     *
+     * @param before The number off the left (or top) edge
+     * @param after The number off the right (or bottom) edge
+     * @return true if either changed
+     */
+    boolean setAttention(int before, int after) {
+        boolean result = before != attentionBefore || after != attentionAfter;
+        attentionBefore = before;
+        attentionAfter = after;
+        return result;
+    }
+
+    boolean hasAttention() {
+        return attentionBefore > 0 || attentionAfter > 0;
+    }
+
     @Override
     public Insets getInsets() {
+        if (vertical) {
+            return new Insets(leftVisible ? depthLeft : 0, 0, rightVisible ? depthRight : 0, 0);
+        }
         return new Insets(0, leftVisible ? depthLeft : 0, 0, rightVisible ? depthRight : 0);
     }
 
     @Override
     public void paint(Graphics2D gr, Rectangle bounds) {
+        paintEdges(gr, bounds);
+        if (hasAttention()) {
+            paintAttention(gr, bounds);
+        }
+    }
+
+    private void paintAttention(Graphics2D gr, Rectangle bounds) {
+        Color color = appearance.attentionColor();
+        float pulse = appearance.renderingProfile().animates() ? AttentionTracker.pulse() : 1;
+        gr.setColor(TabsAppearance.alpha(64 + (int) (191 * pulse), color));
+        int bar = 3;
+        Rectangle before = vertical
+                ? new Rectangle(bounds.x, bounds.y, bounds.width, depthLeft)
+                : new Rectangle(bounds.x, bounds.y, depthLeft, bounds.height);
+        Rectangle after = vertical
+                ? new Rectangle(bounds.x, bounds.y + bounds.height - depthRight, bounds.width, depthRight)
+                : new Rectangle(bounds.x + bounds.width - depthRight, bounds.y, depthRight, bounds.height);
+        if (leftVisible && attentionBefore > 0) {
+            if (vertical) {
+                gr.fillRect(before.x, before.y, before.width, bar);
+            } else {
+                gr.fillRect(before.x, before.y, bar, before.height);
+            }
+        }
+        if (rightVisible && attentionAfter > 0) {
+            if (vertical) {
+                gr.fillRect(after.x, after.y + after.height - bar, after.width, bar);
+            } else {
+                gr.fillRect(after.x + after.width - bar, after.y, bar, after.height);
+            }
+        }
+        gr.setFont(appearance.tabFont().deriveFont(appearance.tabFont().getSize2D() * 0.625F));
+        gr.setColor(TabsAppearance.alpha(255, color));
+        if (leftVisible && attentionBefore > 1) {
+            paintCount(gr, attentionBefore, before);
+        }
+        if (rightVisible && attentionAfter > 1) {
+            paintCount(gr, attentionAfter, after);
+        }
+    }
+
+    private void paintCount(Graphics2D gr, int count, Rectangle in) {
+        String s = count > 99 ? "99+" : Integer.toString(count);
+        FontMetrics fm = gr.getFontMetrics();
+        int w = fm.stringWidth(s);
+        if (w <= in.width && fm.getAscent() <= in.height) {
+            gr.drawString(s, in.x + (in.width - w) / 2,
+                    in.y + ((in.height - fm.getHeight()) / 2) + fm.getAscent());
+        }
+    }
+
+    private void paintEdges(Graphics2D gr, Rectangle bounds) {
         int selDir = selectionDirection.getAsInt();
         Color col = (Color) appearance.getBackground();
         Color end = TabsAppearance.alpha(0, col);
         Color selEnd = appearance.selectionDirectionIndicatorColor();
+        if (appearance.renderingProfile().opaqueEffects()) {
+            paintOpaque(gr, bounds, selDir, col, TabsAppearance.alpha(255, selEnd));
+            return;
+        }
+        if (vertical) {
+            paintVertical(gr, bounds, selDir, col, end, selEnd);
+            return;
+        }
 
         if (leftVisible) {
             appearance.gradients().linear(gr, bounds.x, bounds.y, col, bounds.x + depthLeft, bounds.y,
@@ -79,6 +178,59 @@ final class RaggedBorder implements Border {
         }
     }
 
+    private void paintVertical(Graphics2D gr, Rectangle bounds, int selDir, Color col, Color end, Color selEnd) {
+        if (leftVisible) {
+            appearance.gradients().linear(gr, bounds.x, bounds.y, col, bounds.x, bounds.y + depthLeft,
+                    selDir == -1 ? selEnd : end).fill(gr, bounds.x, bounds.y, bounds.width, depthLeft);
+        }
+        if (rightVisible) {
+            int y = bounds.y + bounds.height - depthRight;
+            appearance.gradients().linear(gr, bounds.x, y, selDir == 1 ? selEnd : end,
+                    bounds.x, bounds.y + bounds.height, col)
+                    .fill(gr, bounds.x, y, bounds.width, depthRight);
+        }
+    }
+
+    private void paintOpaque(Graphics2D gr, Rectangle bounds, int selDir, Color col, Color sel) {
+        // Solid edges, with a bar on the side the selection is off toward,
+        // instead of gradients to transparent
+        int bar = 2;
+        if (vertical) {
+            int y = bounds.y + bounds.height - depthRight;
+            gr.setColor(col);
+            if (leftVisible) {
+                gr.fillRect(bounds.x, bounds.y, bounds.width, depthLeft);
+            }
+            if (rightVisible) {
+                gr.fillRect(bounds.x, y, bounds.width, depthRight);
+            }
+            gr.setColor(sel);
+            if (leftVisible && selDir == -1) {
+                gr.fillRect(bounds.x, bounds.y + depthLeft - bar, bounds.width, bar);
+            } else if (rightVisible && selDir == 1) {
+                gr.fillRect(bounds.x, y, bounds.width, bar);
+            }
+            return;
+        }
+        if (leftVisible) {
+            gr.setColor(col);
+            gr.fillRect(bounds.x, bounds.y, depthLeft, bounds.height);
+            if (selDir == -1) {
+                gr.setColor(sel);
+                gr.fillRect(bounds.x + depthLeft - bar, bounds.y, bar, bounds.height);
+            }
+        }
+        if (rightVisible) {
+            int x = bounds.x + bounds.width - depthRight;
+            gr.setColor(col);
+            gr.fillRect(x, bounds.y, depthRight, bounds.height);
+            if (selDir == 1) {
+                gr.setColor(sel);
+                gr.fillRect(x, bounds.y, bar, bounds.height);
+            }
+        }
+    }
+
     @Override
     public boolean isOpaque() {
         return false;
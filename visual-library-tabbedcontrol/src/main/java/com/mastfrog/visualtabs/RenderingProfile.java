@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.GraphicsEnvironment;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How much visual effort tabs should spend painting. The default can be
+ * set with the system property <code>visualtabs.profile</code> (e.g.
+ * <code>-J-Dvisualtabs.profile=reduced-motion</code>), and overridden per
+ * appearance with <code>TabsAppearance.setRenderingProfile()</code>. If
+ * the property is unset or <code>auto</code>, REMOTE_DISPLAY is used when
+ * <code>sun.java2d.remote</code> is true or, if it is unset, when the X
+ * display is known to be remote - connected over TCP, or a VNC session -
+ * and STANDARD otherwise.
+ *
+ * @author Tim Boudreau
+ */
+public enum RenderingProfile {
+    /**
+     * Animated hover and selection decorations, animated panning and
+     * gradient backgrounds.
+     */
+    STANDARD,
+    /**
+     * No animations of any kind, no hover or selection decorations, and
+     * flat backgrounds, so tabs repaint only when their state actually
+     * changes - for users who prefer reduced motion, and for remote
+     * sessions where every animation frame is sent over the wire.
+     */
+    REDUCED_MOTION,
+    /**
+     * Everything REDUCED_MOTION does, plus opaque solid fills in place of
+     * the translucent glow and ragged edges, and tab text rendered once
+     * into cached images rather than re-rasterized on every paint - for
+     * remote X11 sessions (ssh -X, VNC), where gradients, alpha
+     * compositing and anti-aliased text are expensive to ship.  Layout
+     * metrics are the same as in the other profiles.
+     */
+    REMOTE_DISPLAY;
+
+    static final String SYSTEM_PROPERTY = "visualtabs.profile";
+    private static final Logger LOG = Logger.getLogger(RenderingProfile.class.getName());
+    private static RenderingProfile detected;
+
+    /**
+     * Get the profile named by the system property, or if none, the one
+     * detected for the current display.
+     *
+     * @return A profile
+     */
+    static RenderingProfile fromSystemProperties() {
+        RenderingProfile result = parse(System.getProperty(SYSTEM_PROPERTY));
+        return result == null ? detect() : result;
+    }
+
+    static synchronized RenderingProfile detect() {
+        if (detected == null) {
+            detected = isRemoteDisplay() ? REMOTE_DISPLAY : STANDARD;
+            LOG.log(Level.FINE, "Detected rendering profile {0}", detected);
+        }
+        return detected;
+    }
+
+    static boolean isRemoteDisplay() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return false;
+        }
+        return isRemoteDisplay(System.getProperty("sun.java2d.remote"),
+                System.getenv("DISPLAY"), System.getenv("VNCDESKTOP"));
+    }
+
+    /**
+     * Decide whether a display is remote.  Only positive evidence counts:
+     * <ul>
+     * <li><code>sun.java2d.remote</code>, the JDK's own hint, if set,
+     * decides by itself</li>
+     * <li>a host name before the colon in <code>DISPLAY</code>, other than
+     * <code>unix</code>, means a TCP connection to the X server, which is
+     * what ssh -X forwarding (<code>localhost:10.0</code>) looks like</li>
+     * <li><code>VNCDESKTOP</code> is set in sessions started by
+     * vncserver</li>
+     * </ul>
+     * The display number alone proves nothing - a local X server may be
+     * started on any number, and nested or additional servers commonly
+     * are - so it is not consulted.
+     *
+     * @param remoteProperty The value of <code>sun.java2d.remote</code>,
+     * or null
+     * @param display The value of <code>DISPLAY</code>, or null
+     * @param vncDesktop The value of <code>VNCDESKTOP</code>, or null
+     * @return True if the display is known to be remote
+     */
+    static boolean isRemoteDisplay(String remoteProperty, String display, String vncDesktop) {
+        if (remoteProperty != null) {
+            return Boolean.parseBoolean(remoteProperty);
+        }
+        if (display != null && !display.isEmpty()) {
+            int colon = display.lastIndexOf(':');
+            String host = colon > 0 ? display.substring(0, colon) : "";
+            if (!host.isEmpty() && !"unix".equals(host)) {
+                return true;
+            }
+        }
+        return vncDesktop != null;
+    }
+
+    static RenderingProfile parse(String value) {
+        if (value == null || "auto".equalsIgnoreCase(value.trim())) {
+            return null;
+        }
+        String name = value.trim().toUpperCase().replace('-', '_');
+        for (RenderingProfile p : values()) {
+            if (p.name().equals(name)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    boolean animates() {
+        switch (this) {
+            case STANDARD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    boolean paintsDecorations() {
+        switch (this) {
+            case STANDARD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    boolean flatFills() {
+        switch (this) {
+            case REDUCED_MOTION:
+            case REMOTE_DISPLAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    boolean opaqueEffects() {
+        switch (this) {
+            case REMOTE_DISPLAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    boolean cachesText() {
+        switch (this) {
+            case REMOTE_DISPLAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.Arrays;
+
+/**
+ * Packs tabs into rows for the multi-row layout.  Widths are kept as a
+ * prefix sum, so finding where a row breaks is a binary search, and the
+ * break positions are memoized: a repack only recomputes rows from the
+ * one before the first changed tab's row, and stops as soon as a row
+ * breaks at the same tab it did before, past the last changed one.
+ * Widths are supplied one at a time, during the pass the layout already
+ * makes over the tabs, and only changed ones touch the prefix sums;
+ * resizing leaves them alone and changes every row, but costs one search
+ * per row rather than a pass over every tab.
+ *
+ * @author Tim Boudreau
+ */
+final class RowPacker {
+
+    private int[] widths = new int[16];
+    // prefix[i] is the total extent of tabs 0 through i - 1, each followed
+    // by the gap
+    private int[] prefix = new int[17];
+    private int count;
+    private int oldCount;
+    private int firstChanged;
+    private int lastChanged = -1;
+    private int[] breaks = new int[4];
+    private int rows;
+    private int packedWidth = -1;
+    private int packedGap = -1;
+    private long rowsPacked;
+
+    /**
+     * Start supplying the widths of the tabs for the next pack; widths
+     * not passed to width() before it are left as they were.
+     *
+     * @param n The number of tabs
+     */
+    void update(int n) {
+        if (widths.length < n) {
+            widths = Arrays.copyOf(widths, n + (n / 2));
+            prefix = Arrays.copyOf(prefix, widths.length + 1);
+        }
+        oldCount = count;
+        count = n;
+        firstChanged = n;
+        lastChanged = -1;
+        if (n > oldCount) {
+            firstChanged = oldCount;
+            lastChanged = n - 1;
+        }
+    }
+
+    /**
+     * Set the width of one tab.
+     *
+     * @param index The tab's index
+     * @param width Its width
+     */
+    void width(int index, int width) {
+        if (index < oldCount && widths[index] == width) {
+            return;
+        }
+        widths[index] = width;
+        if (index < firstChanged) {
+            firstChanged = index;
+        }
+        if (index > lastChanged) {
+            lastChanged = index;
+        }
+    }
+
+    /**
+     * Pack the tabs, with the widths supplied since update(), into rows no
+     * wider than the passed width.
+     *
+     * @param gap The gap between tabs
+     * @param width The available width
+     * @return The number of rows
+     */
+    int pack(int gap, int width) {
+        int n = count;
+        boolean countChanged = n != oldCount;
+        oldCount = n;
+        if (gap != packedGap) {
+            firstChanged = 0;
+            lastChanged = n - 1;
+        }
+        for (int i = firstChanged; i < n; i++) {
+            prefix[i + 1] = prefix[i] + widths[i] + gap;
+        }
+        boolean widthsChanged = firstChanged <= lastChanged;
+        if (width == packedWidth && gap == packedGap && !widthsChanged && !countChanged) {
+            return rows;
+        }
+        // If only the width changed, every row may break differently, but
+        // the prefix sums still hold
+        boolean incremental = width == packedWidth && gap == packedGap;
+        int[] oldBreaks = breaks;
+        int oldRows = rows;
+        // A tab which shrank may now fit at the end of the previous row
+        int row = incremental ? Math.max(0, rowOf(Math.min(firstChanged, n)) - 1) : 0;
+        breaks = Arrays.copyOf(oldBreaks, Math.max(oldBreaks.length, row + 1));
+        packedWidth = width;
+        packedGap = gap;
+        rows = row;
+        int start = row == 0 ? 0 : breaks[row];
+        while (start < n) {
+            if (rows == breaks.length) {
+                breaks = Arrays.copyOf(breaks, rows * 2);
+            }
+            breaks[rows++] = start;
+            rowsPacked++;
+            int end = lastFitting(start, n, prefix[start] + width + gap);
+            // A tab wider than a row gets a row to itself
+            start = Math.max(end, start + 1);
+            if (incremental && !countChanged && start > lastChanged) {
+                // Everything past here is as it was
+                int same = Arrays.binarySearch(oldBreaks, 0, oldRows, start);
+                if (same > 0) {
+                    int remaining = oldRows - same;
+                    if (breaks.length < rows + remaining) {
+                        breaks = Arrays.copyOf(breaks, rows + remaining);
+                    }
+                    System.arraycopy(oldBreaks, same, breaks, rows, remaining);
+                    rows += remaining;
+                    break;
+                }
+            }
+        }
+        if (rows == 0) {
+            breaks[0] = 0;
+            rows = 1;
+        }
+        return rows;
+    }
+
+    private int lastFitting(int start, int n, int limit) {
+        int lo = start + 1;
+        int hi = n;
+        int result = start;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prefix[mid] <= limit) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the row containing a tab.
+     *
+     * @param index A tab index
+     * @return A row
+     */
+    int rowOf(int index) {
+        if (rows == 0) {
+            return 0;
+        }
+        int ix = Arrays.binarySearch(breaks, 0, rows, index);
+        return ix >= 0 ? ix : Math.max(0, -ix - 2);
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * The index of the first tab in a row.
+     *
+     * @param row A row
+     * @return An index
+     */
+    int rowStart(int row) {
+        return row <= 0 ? 0 : row >= rows ? count : breaks[row];
+    }
+
+    /**
+     * The total number of rows computed by all packs, for measuring how
+     * incremental repacking is.
+     *
+     * @return A count
+     */
+    long rowsPacked() {
+        return rowsPacked;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SingleSelectionModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * Listens to a scene's selection model, and has the scene show the
+ * selected tab - at most once per frame during storms of changes, and
+ * immediately for isolated clicks.
+ *
+ * @author Tim Boudreau
+ */
+final class SelectionChangeListener implements ChangeListener, Runnable {
+
+    private static final Logger LOG = Logger.getLogger(SelectionChangeListener.class.getName());
+    private final TabScene scene;
+    private final TabDataModel model;
+    private final SingleSelectionModel selection;
+    private final CoalescingScheduler scheduler = new CoalescingScheduler(this);
+    private int lastIndex = -1;
+    private TabData lastSelectedData;
+    private long lastChanged = System.currentTimeMillis();
+
+    SelectionChangeListener(TabScene scene, TabDataModel model, SingleSelectionModel selection) {
+        this.scene = scene;
+        this.model = model;
+        this.selection = selection;
+    }
+
+    void init() {
+        lastIndex = selection.getSelectedIndex();
+        if (lastIndex > 0 && lastIndex < model.size()) {
+            lastSelectedData = model.getTab(lastIndex);
+        } else {
+            lastSelectedData = null;
+        }
+    }
+
+    CoalescingScheduler scheduler() {
+        return scheduler;
+    }
+
+    TabData lastSelectedData() {
+        return lastSelectedData;
+    }
+
+    long elapsed() {
+        long now = System.currentTimeMillis();
+        long lc = lastChanged;
+        lastChanged = now;
+        return now - lc;
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        if (scene.selectionChanging()) {
+            // Processed once when the bulk edit is committed
+            return;
+        }
+        scheduler.changed();
+    }
+
+    @Override
+    public void run() {
+        if (!EventQueue.isDispatchThread()) {
+            EventQueue.invokeLater(this);
+            return;
+        }
+        EdtWatchdog.Bracket stall = EdtWatchdog.enter("SelectionChangeListener.run", model,
+                EdtWatchdog.ENABLED ? "selection=" + selection.getSelectedIndex() : null);
+        try {
+            selectionChanged();
+        } finally {
+            EdtWatchdog.exit(stall);
+        }
+    }
+
+    private void selectionChanged() {
+        int index = selection.getSelectedIndex();
+        long ela = elapsed();
+        LOG.log(Level.FINE, "{0}: SEL CHANGE -> index {1}", new Object[]{ela, index});
+        if (index < 0) {
+            TabData old = lastSelectedData;
+            LOG.log(Level.FINE, "Negative index from {0}", old);
+            lastSelectedData = null;
+            lastIndex = -1;
+            scene.selectionCleared(old);
+        } else if (index >= model.size()) {
+            // Coalesced runs happen later than the change; if tabs were
+            // closed since, the selection model will report again once
+            // it is back in range
+            LOG.log(Level.FINE, "Selection {0} past the last of {1} tabs",
+                    new Object[]{index, model.size()});
+            return;
+        } else {
+            TabData old = lastSelectedData;
+            TabData data = model.getTab(index);
+
+            LOG.log(Level.FINE, "{0}: select from {1} to {2}",
+                    new Object[]{ela, old == null ? -1 : model.indexOf(old), index});
+
+            lastSelectedData = data;
+            scene.selectionMoved(old, data, index);
+        }
+        lastIndex = index;
+    }
+}
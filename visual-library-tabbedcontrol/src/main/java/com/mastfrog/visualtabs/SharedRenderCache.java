@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import javax.swing.Icon;
+import javax.swing.UIManager;
+
+/**
+ * Rendering caches shared by every tab control in the VM - text and font
+ * measurements, blended palette colors, scaled tab icons, close icon
+ * sprites and glow rasters - so that a window with many tab displayers
+ * computes each of these once rather than once per displayer.  The
+ * instance is only weakly held here; each TabsAppearance keeps it alive,
+ * so it goes away when the last tab control does.  Everything is
+ * discarded when the look and feel changes.  Event thread only.
+ *
+ * @author Tim Boudreau
+ */
+final class SharedRenderCache {
+
+    private static WeakReference<SharedRenderCache> instance = new WeakReference<>(null);
+    private static int themeGeneration;
+    private static boolean listening;
+    private static final PropertyChangeListener THEME_LISTENER = evt -> {
+        if ("lookAndFeel".equals(evt.getPropertyName())) {
+            themeChanged();
+        }
+    };
+    private int generation = themeGeneration;
+    private final Region<List<Object>, Integer> textWidths = new Region<>("textWidth", 4096);
+    private final Region<List<Object>, int[]> fontMetrics = new Region<>("fontMetrics", 64);
+    private final Region<List<Object>, Color> palette = new Region<>("palette", 256);
+    private final Region<List<Object>, BufferedImage> sprites = new Region<>("sprites", 64);
+    private final Region<List<Object>, BufferedImage> glows = new Region<>("glow", 8);
+    private final Region<List<Object>, BufferedImage> icons = new Region<>("scaledIcon", 256);
+    private final Region<List<Object>, String> truncations = new Region<>("truncation", 2048);
+    // Icons are keyed by identity and must not be held strongly
+    private final Map<Icon, Integer> iconIds = new WeakHashMap<>();
+    private int nextIconId;
+    private final List<Region<?, ?>> regions
+            = Arrays.asList(textWidths, fontMetrics, palette, sprites, glows, icons, truncations);
+
+    private SharedRenderCache() {
+    }
+
+    static synchronized SharedRenderCache get() {
+        SharedRenderCache result = instance.get();
+        if (result == null) {
+            result = new SharedRenderCache();
+            instance = new WeakReference<>(result);
+        }
+        if (!listening) {
+            UIManager.addPropertyChangeListener(THEME_LISTENER);
+            listening = true;
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate everything cached, because colors, fonts or rendering
+     * hints may have changed.
+     */
+    static synchronized void themeChanged() {
+        themeGeneration++;
+    }
+
+    private void checkGeneration() {
+        int current;
+        synchronized (SharedRenderCache.class) {
+            current = themeGeneration;
+        }
+        if (current != generation) {
+            generation = current;
+            for (Region<?, ?> r : regions) {
+                r.clear();
+            }
+            iconIds.clear();
+        }
+    }
+
+    int textWidth(String text, Font font, FontRenderContext frc, IntSupplier measure) {
+        checkGeneration();
+        return textWidths.get(Arrays.asList(text, font, frc), measure::getAsInt);
+    }
+
+    /**
+     * Font height and max ascent for a font in a rendering context.
+     *
+     * @param font The font
+     * @param frc The context
+     * @param measure Computes the pair if not cached
+     * @return An array of height and max ascent
+     */
+    int[] fontMetrics(Font font, FontRenderContext frc, Supplier<int[]> measure) {
+        checkGeneration();
+        return fontMetrics.get(Arrays.asList(font, frc), measure);
+    }
+
+    /**
+     * Text truncated to fit a width; widths are expected to be bucketed by
+     * the caller, so resizing does not re-truncate every label.
+     *
+     * @param text The text
+     * @param font The font
+     * @param frc The rendering context
+     * @param width The width bucket
+     * @param truncate Computes the truncated text if not cached
+     * @return The truncated text
+     */
+    String truncated(String text, Font font, FontRenderContext frc, int width, Supplier<String> truncate) {
+        checkGeneration();
+        return truncations.get(Arrays.asList(text, font, frc, width), truncate);
+    }
+
+    Color palette(Object key, Supplier<Color> compute) {
+        checkGeneration();
+        return palette.get(Arrays.asList(key), compute);
+    }
+
+    /**
+     * Get a cached translucent raster, painting it if necessary.
+     *
+     * @param key Everything the appearance of the raster depends on
+     * @param width The pixel width
+     * @param height The pixel height
+     * @param painter Paints the raster
+     * @return An image
+     */
+    BufferedImage sprite(List<Object> key, int width, int height, Consumer<Graphics2D> painter) {
+        checkGeneration();
+        return sprites.get(key, () -> render(width, height, painter));
+    }
+
+    BufferedImage glow(List<Object> key, int width, int height, Consumer<Graphics2D> painter) {
+        checkGeneration();
+        return glows.get(key, () -> render(width, height, painter));
+    }
+
+    BufferedImage scaledIcon(Icon icon, double scale, int width, int height, Consumer<Graphics2D> painter) {
+        checkGeneration();
+        Integer id = iconIds.get(icon);
+        if (id == null) {
+            id = nextIconId++;
+            iconIds.put(icon, id);
+        }
+        return icons.get(Arrays.asList(id, scale, width, height), () -> render(width, height, painter));
+    }
+
+    private static BufferedImage render(int width, int height, Consumer<Graphics2D> painter) {
+        BufferedImage img = new BufferedImage(Math.max(1, width), Math.max(1, height),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = img.createGraphics();
+        try {
+            painter.accept(g);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    /**
+     * Report the hit rate of each cache region to a scene's statistics.
+     *
+     * @param stats The statistics
+     */
+    void registerStats(TabSceneStats stats) {
+        for (Region<?, ?> r : regions) {
+            stats.addCache("shared." + r.name, r::hits, r::lookups);
+        }
+    }
+
+    private static final class Region<K, V> {
+
+        private final String name;
+        private final Map<K, V> map;
+        private long hits;
+        private long lookups;
+
+        Region(String name, int maxSize) {
+            this.name = name;
+            map = new LinkedHashMap<K, V>(Math.min(maxSize, 64), 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        V get(K key, Supplier<V> compute) {
+            lookups++;
+            V result = map.get(key);
+            if (result == null) {
+                result = compute.get();
+                map.put(key, result);
+            } else {
+                hits++;
+            }
+            return result;
+        }
+
+        void clear() {
+            map.clear();
+        }
+
+        long hits() {
+            return hits;
+        }
+
+        long lookups() {
+            return lookups;
+        }
+    }
+}
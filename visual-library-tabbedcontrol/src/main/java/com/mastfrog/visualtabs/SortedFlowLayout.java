@@ -21,9 +21,13 @@ package com.mastfrog.visualtabs;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 import org.netbeans.api.visual.layout.Layout;
 import org.netbeans.api.visual.layout.LayoutFactory;
 import org.netbeans.api.visual.widget.Widget;
@@ -44,15 +48,192 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
     private final LayoutFactory.SerialAlignment alignment;
     private final int gap;
     private final int edgeGap;
+    private final Supplier<List<? extends Widget>> order;
+    private final TabEdges edges;
+    private IntSupplier available;
+    private IntSupplier compressedMinimum;
+    private RowPacker packer;
+    private IntSupplier wrapWidth;
+    private IntConsumer onRowCountChange;
+    private int lastRows = 1;
+    private IntSupplier firstRow;
+    private IntSupplier rowPitch;
+    private IntSupplier rowWidth;
+    private Widget elsewhere;
 
     public SortedFlowLayout(TabDataModel model, boolean verticalOrientation, LayoutFactory.SerialAlignment alignment, int gap, int edgeGap) {
+        this(model, null, null, verticalOrientation, alignment, gap, edgeGap);
+    }
+
+    /**
+     * Create a layout which takes the order of tab widgets from the passed
+     * supplier when it is consistent with the container's children, rather
+     * than sorting them by model index, and records where it placed each
+     * tab in the passed edge cache.
+     */
+    SortedFlowLayout(TabDataModel model, Supplier<List<? extends Widget>> order, TabEdges edges,
+            boolean verticalOrientation, LayoutFactory.SerialAlignment alignment, int gap, int edgeGap) {
         this.model = model;
+        this.order = order;
+        this.edges = edges;
         this.verticalOrientation = verticalOrientation;
         this.alignment = alignment;
         this.gap = gap;
         this.edgeGap = edgeGap;
     }
 
+    /**
+     * Enable shrinking horizontally laid out tabs to fit the available
+     * width.
+     *
+     * @param available Supplies the width to fit into, or -1 to not
+     * compress
+     * @param minimum Supplies the width below which no tab is shrunk
+     */
+    void setCompression(IntSupplier available, IntSupplier minimum) {
+        this.available = available;
+        this.compressedMinimum = minimum;
+    }
+
+    /**
+     * Enable wrapping horizontally laid out tabs into as many rows as are
+     * needed to fit a width; wrapping takes precedence over compression
+     * when both are enabled.
+     *
+     * @param packer The row packer
+     * @param width Supplies the width to wrap at, or -1 to not wrap
+     * @param onRowCountChange Called when the number of rows changes
+     */
+    void setWrapping(RowPacker packer, IntSupplier width, IntConsumer onRowCountChange) {
+        this.packer = packer;
+        this.wrapWidth = width;
+        this.onRowCountChange = onRowCountChange;
+    }
+
+    /**
+     * For vertically laid out tabs where only a window of them have
+     * widgets, lay every row out at the same pitch, starting at the
+     * position the first materialized tab would have if all of them did.
+     *
+     * @param firstRow Supplies the index of the first tab which has a
+     * widget
+     * @param pitch Supplies the height of each row
+     * @param width Supplies the width rows should be justified to, so it
+     * does not change with which tabs are in the window
+     */
+    void setVirtualRows(IntSupplier firstRow, IntSupplier pitch, IntSupplier width) {
+        this.firstRow = firstRow;
+        this.rowPitch = pitch;
+        this.rowWidth = width;
+    }
+
+    /**
+     * Allow tab widgets in the order supplied to this layout to belong to
+     * another container, such as the pinned tabs region; they take up no
+     * room here, but still get an empty entry in the edge cache, so its
+     * indices stay the same as the mapper's.
+     *
+     * @param region The other container
+     */
+    void setPlacedElsewhere(Widget region) {
+        this.elsewhere = region;
+    }
+
+    private static boolean shown(Widget parent, Widget child) {
+        return child.isVisible() && child.getParentWidget() == parent;
+    }
+
+    /**
+     * The width to wrap rows at, if wrapping.
+     *
+     * @return A width, or -1 if not wrapping
+     */
+    private int wrapWidth() {
+        int width = wrapWidth == null || verticalOrientation ? -1 : wrapWidth.getAsInt();
+        if (width <= 0) {
+            rowCount(1);
+            return -1;
+        }
+        return width;
+    }
+
+    /**
+     * Pack the children into rows, once their widths have been passed to
+     * the packer.
+     *
+     * @param width The width to wrap at
+     * @return The number of rows
+     */
+    private int wrap(int width) {
+        int rows = packer.pack(gap, width - edgeGap);
+        rowCount(rows);
+        return rows;
+    }
+
+    private void rowCount(int rows) {
+        if (rows != lastRows) {
+            lastRows = rows;
+            if (onRowCountChange != null) {
+                onRowCountChange.accept(rows);
+            }
+        }
+    }
+
+    /**
+     * If the tabs overflow the available width, compute widths which fit
+     * by capping the widest tabs at a common width, so short tab names
+     * are never truncated while long ones still are, and no tab shrinks
+     * below the minimum (at which point the tray pans as before).
+     *
+     * @param children The children in layout order
+     * @return Widths in the same order, or null if no compression is
+     * needed
+     */
+    private int[] compressedWidths(Widget parent, List<Widget> children) {
+        int available = this.available == null ? -1 : this.available.getAsInt();
+        if (available <= 0) {
+            return null;
+        }
+        int count = children.size();
+        int[] widths = new int[count];
+        int visible = 0;
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            Widget child = children.get(i);
+            if (shown(parent, child)) {
+                widths[i] = child.getPreferredBounds().width;
+                total += widths[i];
+                visible++;
+            }
+        }
+        int room = available - edgeGap - (gap * visible);
+        if (total <= room || visible == 0) {
+            return null;
+        }
+        int[] sorted = new int[visible];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (shown(parent, children.get(i))) {
+                sorted[j++] = widths[i];
+            }
+        }
+        Arrays.sort(sorted);
+        int remaining = room;
+        int cap = sorted[visible - 1];
+        for (int i = 0; i < visible; i++) {
+            int fair = remaining / (visible - i);
+            if (sorted[i] > fair) {
+                cap = fair;
+                break;
+            }
+            remaining -= sorted[i];
+        }
+        cap = Math.max(cap, compressedMinimum == null ? 0 : compressedMinimum.getAsInt());
+        for (int i = 0; i < count; i++) {
+            widths[i] = Math.min(widths[i], cap);
+        }
+        return widths;
+    }
+
     @Override
     public int compare(Widget o1, Widget o2) {
         if (o1 instanceof TabWidget && o2 instanceof TabWidget) {
@@ -73,18 +254,52 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
     }
 
     List<Widget> widgetsSorted(Widget w) {
-        List<Widget> result = new ArrayList<>(w.getChildren());
+        List<Widget> children = w.getChildren();
+        if (order != null) {
+            List<? extends Widget> ordered = order.get();
+            int foreign = foreignCount(w, ordered);
+            if (foreign >= 0 && ordered.size() - foreign == children.size()) {
+                return new ArrayList<>(ordered);
+            }
+        }
+        List<Widget> result = new ArrayList<>(children);
         Collections.sort(result, this);
         return result;
     }
 
+    /**
+     * Count the widgets in the order which are placed in the other
+     * container.
+     *
+     * @return A count, or -1 if some widget belongs to neither
+     */
+    private int foreignCount(Widget parent, List<? extends Widget> ordered) {
+        // While widgets are being created or removed, the mapper and the
+        // container can briefly disagree, in which case fall back to sorting
+        int result = 0;
+        for (Widget w : ordered) {
+            Widget p = w.getParentWidget();
+            if (p != parent) {
+                if (p == null || p != elsewhere) {
+                    return -1;
+                }
+                result++;
+            }
+        }
+        return result;
+    }
+
     @Override
     public void layout(Widget widget) {
         int max = 0;
         List<Widget> children = widgetsSorted(widget);
+        if (edges != null) {
+            edges.clear();
+            edges.setGap(gap);
+        }
         if (verticalOrientation) {
             for (Widget child : children) {
-                if (!child.isVisible()) {
+                if (!shown(widget, child)) {
                     continue;
                 }
                 Rectangle preferredBounds = child.getPreferredBounds();
@@ -93,13 +308,21 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
                     max = i;
                 }
             }
-            int pos = 0;
+            if (rowWidth != null) {
+                max = Math.max(max, rowWidth.getAsInt());
+            }
+            int pitch = rowPitch == null ? -1 : rowPitch.getAsInt();
+            int pos = pitch > 0 ? edgeGap + (firstRow.getAsInt() * pitch) : 0;
             for (Widget child : children) {
+                if (child.getParentWidget() != widget) {
+                    edges(pos, 0, child);
+                    continue;
+                }
                 Rectangle preferredBounds = child.getPreferredBounds();
                 int x = preferredBounds.x;
                 int y = preferredBounds.y;
                 int width = preferredBounds.width;
-                int height = preferredBounds.height;
+                int height = pitch > 0 ? pitch - gap : preferredBounds.height;
                 int lx = -x;
                 int ly = pos - y;
                 switch (alignment) {
@@ -115,6 +338,7 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
                         lx += max - width;
                         break;
                 }
+                edges(pos, child.isVisible() ? height : 0, child);
                 if (child.isVisible()) {
                     child.resolveBounds(new Point(lx, ly), new Rectangle(x, y, width, height));
                     pos += height + gap;
@@ -123,25 +347,55 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
                 }
             }
         } else {
-            for (Widget child : children) {
-                if (!child.isVisible()) {
+            int wrapAt = wrapWidth();
+            if (wrapAt > 0) {
+                packer.update(children.size());
+            }
+            for (int ix = 0; ix < children.size(); ix++) {
+                Widget child = children.get(ix);
+                if (!shown(widget, child)) {
+                    if (wrapAt > 0) {
+                        packer.width(ix, 0);
+                    }
                     continue;
                 }
                 Rectangle preferredBounds = child.getPreferredBounds();
+                if (wrapAt > 0) {
+                    packer.width(ix, preferredBounds.width);
+                }
                 int i = preferredBounds.height;
                 if (i > max) {
                     max = i;
                 }
             }
             int pos = edgeGap;
-            for (Widget child : children) {
+            int rows = wrapAt > 0 ? wrap(wrapAt) : 0;
+            int[] compressed = rows > 0 ? null : compressedWidths(widget, children);
+            int pitch = max + gap;
+            int row = 0;
+            if (edges != null && rows > 0) {
+                edges.newRow(pitch);
+            }
+            for (int i = 0; i < children.size(); i++) {
+                Widget child = children.get(i);
+                if (row + 1 < rows && i == packer.rowStart(row + 1)) {
+                    row++;
+                    pos = edgeGap;
+                    if (edges != null) {
+                        edges.newRow(pitch);
+                    }
+                }
+                if (child.getParentWidget() != widget) {
+                    edges(pos, 0, child);
+                    continue;
+                }
                 Rectangle preferredBounds = child.getPreferredBounds();
                 int x = preferredBounds.x;
                 int y = preferredBounds.y;
-                int width = preferredBounds.width;
+                int width = compressed == null ? preferredBounds.width : compressed[i];
                 int height = preferredBounds.height;
                 int lx = pos - x;
-                int ly = -y;
+                int ly = (row * pitch) - y;
                 switch (alignment) {
                     case CENTER:
                         ly += (max - height) / 2;
@@ -155,6 +409,7 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
                         ly += max - height;
                         break;
                 }
+                edges(pos, child.isVisible() ? width : 0, child);
                 if (child.isVisible()) {
                     child.resolveBounds(new Point(lx, ly), new Rectangle(x, y, width, height));
                     pos += width + gap;
@@ -165,6 +420,12 @@ final class SortedFlowLayout implements Layout, Comparator<Widget> {
         }
     }
 
+    private void edges(int pos, int extent, Widget child) {
+        if (edges != null && child instanceof TabWidget) {
+            edges.add(pos, extent);
+        }
+    }
+
     @Override
     public boolean requiresJustification(Widget widget) {
         return false;
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The aspects of a tab's data which a TabWidget fingerprints, so that a
+ * sync can tell exactly what changed and invalidate only what depends on
+ * it.  Changes are collected as a bit mask, to keep the common case of
+ * nothing having changed free of allocation.
+ *
+ * @author Tim Boudreau
+ */
+enum TabAspect {
+    /**
+     * The display text; requires relayout of the label.
+     */
+    TEXT,
+    /**
+     * The tooltip; requires nothing but updating it.
+     */
+    TOOLTIP,
+    /**
+     * The icon was replaced by one of the same size; requires a repaint.
+     */
+    ICON,
+    /**
+     * The icon's size changed; requires relayout.
+     */
+    ICON_SIZE,
+    /**
+     * The tab's position-derived kind changed; requires a border swap.
+     */
+    KIND,
+    /**
+     * Whether the close button is shown changed.
+     */
+    CLOSEABLE;
+
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    boolean in(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    /**
+     * Whether any aspect in the mask affects the size of the tab.
+     *
+     * @param mask A mask
+     * @return true if layout is needed
+     */
+    static boolean affectsLayout(int mask) {
+        return (mask & (TEXT.bit() | ICON_SIZE.bit() | KIND.bit() | CLOSEABLE.bit())) != 0;
+    }
+
+    static Set<TabAspect> of(int mask) {
+        EnumSet<TabAspect> result = EnumSet.noneOf(TabAspect.class);
+        for (TabAspect a : values()) {
+            if (a.in(mask)) {
+                result.add(a);
+            }
+        }
+        return result;
+    }
+}
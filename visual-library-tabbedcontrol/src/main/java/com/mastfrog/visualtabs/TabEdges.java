@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.Arrays;
+
+/**
+ * Cache of the leading edge and extent of each tab along the strip, in
+ * model order, as of the last layout.  Kept as flat arrays so that looking
+ * up the tab at a coordinate is a binary search, and moving a tab only
+ * rewrites the entries between its old and new positions.  When tabs
+ * are laid out in multiple rows, the leading edges restart in each row,
+ * and lookups first find the row by its vertical position.
+ *
+ * @author Tim Boudreau
+ */
+final class TabEdges {
+
+    private int[] starts = new int[16];
+    private int[] extents = new int[16];
+    private int size;
+    private int generation;
+    private int[] rowStarts = new int[4];
+    private int rows = 1;
+    private int rowPitch;
+    private int gap;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Incremented whenever cached positions change, so callers which cache
+     * bounds derived from this can tell when theirs are stale.
+     *
+     * @return The generation
+     */
+    int generation() {
+        return generation;
+    }
+
+    void clear() {
+        size = 0;
+        rows = 1;
+        generation++;
+    }
+
+    /**
+     * Note that the next tab added begins a new row.
+     *
+     * @param pitch The distance between the tops of successive rows
+     */
+    void newRow(int pitch) {
+        if (size == 0) {
+            rowPitch = pitch;
+            return;
+        }
+        if (rows == rowStarts.length) {
+            rowStarts = Arrays.copyOf(rowStarts, rows * 2);
+        }
+        rowStarts[rows++] = size;
+        rowPitch = pitch;
+    }
+
+    /**
+     * Set the gap the layout leaves after each visible tab, so moves can
+     * be applied without it.
+     *
+     * @param gap The gap
+     */
+    void setGap(int gap) {
+        this.gap = gap;
+    }
+
+    int rowCount() {
+        return rows;
+    }
+
+    int rowPitch() {
+        return rowPitch;
+    }
+
+    private int rowStart(int row) {
+        return row == 0 ? 0 : rowStarts[row];
+    }
+
+    private int rowEnd(int row) {
+        return row + 1 < rows ? rowStarts[row + 1] : size;
+    }
+
+    /**
+     * Find the row at a vertical position.
+     *
+     * @param y A coordinate in the coordinate space of the tabs container
+     * @return A row, or -1 if outside all rows
+     */
+    int rowAt(int y) {
+        if (rows == 1) {
+            return 0;
+        }
+        if (y < 0 || rowPitch <= 0) {
+            return -1;
+        }
+        int row = y / rowPitch;
+        return row < rows ? row : -1;
+    }
+
+    /**
+     * The index one past the last tab in a row.
+     *
+     * @param row A row
+     * @return An index
+     */
+    int endOfRow(int row) {
+        return row < 0 || row >= rows ? -1 : rowEnd(row);
+    }
+
+    /**
+     * The index of the first tab in a row.
+     *
+     * @param row A row
+     * @return An index
+     */
+    int startOfRow(int row) {
+        return row < 0 || row >= rows ? -1 : rowStart(row);
+    }
+
+    /**
+     * Record the position of the next tab; called by the layout in model
+     * order.
+     *
+     * @param start The leading edge
+     * @param extent The width (or height if vertical)
+     */
+    void add(int start, int extent) {
+        if (size == starts.length) {
+            int newLength = starts.length * 2;
+            starts = Arrays.copyOf(starts, newLength);
+            extents = Arrays.copyOf(extents, newLength);
+        }
+        starts[size] = start;
+        extents[size++] = extent;
+    }
+
+    int start(int index) {
+        return index < 0 || index >= size ? -1 : starts[index];
+    }
+
+    int extent(int index) {
+        return index < 0 || index >= size ? 0 : extents[index];
+    }
+
+    int end() {
+        return size == 0 ? 0 : starts[size - 1] + extents[size - 1];
+    }
+
+    /**
+     * Find the index of the tab whose span contains the passed coordinate,
+     * in the first row.
+     *
+     * @param pos A coordinate in the coordinate space of the tabs container
+     * @return An index or -1
+     */
+    int indexAt(int pos) {
+        return search(pos, 0, rowEnd(0) - 1);
+    }
+
+    /**
+     * Find the index of the tab at a point, taking rows into account.
+     *
+     * @param x A horizontal coordinate in the tabs container
+     * @param y A vertical coordinate in the tabs container
+     * @return An index or -1
+     */
+    int indexAt(int x, int y) {
+        int row = rowAt(y);
+        return row < 0 ? -1 : search(x, rowStart(row), rowEnd(row) - 1);
+    }
+
+    /**
+     * Find where a tab dropped at a point would be inserted: before the
+     * first tab in the point's row whose midpoint is past it, or after the
+     * row's last tab.
+     *
+     * @param x A horizontal coordinate in the tabs container
+     * @param y A vertical coordinate in the tabs container
+     * @return An index from the start to the end of the row, inclusive,
+     * or -1 if outside all rows
+     */
+    int insertionIndex(int x, int y) {
+        int row = rowAt(y);
+        if (row < 0) {
+            return -1;
+        }
+        int lo = rowStart(row);
+        int hi = rowEnd(row);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x < starts[mid] + extents[mid] / 2) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private int search(int pos, int lo, int hi) {
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int start = starts[mid];
+            if (pos < start) {
+                hi = mid - 1;
+            } else if (pos >= start + extents[mid]) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Update the cache for a tab having moved from one index to another,
+     * rewriting only the entries between the two; the tabs in that range
+     * are the same ones in a different order, so the range's total extent,
+     * and every entry outside it, is unchanged.
+     *
+     * @param from The old index
+     * @param to The new index
+     * @return false if the move could not be applied, because the tabs
+     * are in more than one row, where a different extent can change where
+     * rows break; the next layout must then rebuild the cache
+     */
+    boolean move(int from, int to) {
+        if (from < 0 || to < 0 || from >= size || to >= size) {
+            return false;
+        }
+        generation++;
+        if (rows > 1) {
+            return false;
+        }
+        int min = Math.min(from, to);
+        int max = Math.max(from, to);
+        int pos = starts[min];
+        int moved = extents[from];
+        if (from < to) {
+            System.arraycopy(extents, from + 1, extents, from, to - from);
+        } else {
+            System.arraycopy(extents, to, extents, to + 1, from - to);
+        }
+        extents[to] = moved;
+        for (int i = min; i <= max; i++) {
+            starts[i] = pos;
+            // Hidden tabs, and those placed elsewhere, take no room
+            if (extents[i] > 0) {
+                pos += extents[i] + gap;
+            }
+        }
+        return true;
+    }
+}
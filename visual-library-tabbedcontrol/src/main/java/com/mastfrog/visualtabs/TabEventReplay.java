@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.JLabel;
+import javax.swing.SingleSelectionModel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import static com.mastfrog.visualtabs.TabEventTrace.*;
+
+/**
+ * Replays a trace written by TabEventTrace against a fresh, offscreen
+ * TabScene, so a storm of tab changes captured from a real session can be
+ * rerun as a repeatable performance test.  Events recorded within the same
+ * frame interval are applied together, followed by one validate and paint
+ * into an image, as the event queue would coalesce them; the time for each
+ * frame, including whatever work the events deferred to the event queue,
+ * is reported.
+ * <p>
+ * TabEventReplayBenchmark, in the tests, runs traces from the command
+ * line.
+ *
+ * @author Tim Boudreau
+ */
+final class TabEventReplay {
+
+    private static final long FRAME_MICROS = 16_667;
+    private final List<Step> steps;
+    private final DefaultTabDataModel model = new DefaultTabDataModel();
+    private final SingleSelectionModel selection = new DefaultSingleSelectionModel();
+    private final Map<Integer, TabData> tabs = new HashMap<>();
+    private final Map<Integer, String[]> definitions = new HashMap<>();
+
+    private TabEventReplay(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * The model the trace is replayed into.
+     *
+     * @return The model
+     */
+    TabDataModel model() {
+        return model;
+    }
+
+    SingleSelectionModel selection() {
+        return selection;
+    }
+
+    private static final class Step {
+
+        final int type;
+        final boolean newTask;
+        final long micros;
+        final int[] indices;
+        final int[] ids;
+        final String text;
+        final String tooltip;
+
+        Step(int type, long micros, int[] indices, int[] ids, String text, String tooltip) {
+            this.type = type & ~NEW_TASK;
+            this.newTask = (type & NEW_TASK) != 0;
+            this.micros = micros;
+            this.indices = indices;
+            this.ids = ids;
+            this.text = text;
+            this.tooltip = tooltip;
+        }
+    }
+
+    /**
+     * Timings from one replay.
+     */
+    static final class Result {
+
+        final int steps;
+        final int tabs;
+        final long[] frameNanos;
+        final double layoutMillis;
+        final double paintMillis;
+        final double syncMillis;
+
+        Result(int steps, int tabs, long[] frameNanos, TabSceneStats stats) {
+            this.steps = steps;
+            this.tabs = tabs;
+            this.frameNanos = frameNanos;
+            this.layoutMillis = stats.averageLayoutMillis() * stats.layouts();
+            this.paintMillis = stats.averagePaintMillis() * stats.paints();
+            this.syncMillis = stats.syncMillis();
+        }
+
+        long totalNanos() {
+            long result = 0;
+            for (long n : frameNanos) {
+                result += n;
+            }
+            return result;
+        }
+
+        double percentileMillis(double pct) {
+            if (frameNanos.length == 0) {
+                return 0;
+            }
+            long[] sorted = frameNanos.clone();
+            Arrays.sort(sorted);
+            int ix = (int) Math.min(sorted.length - 1, Math.ceil(pct / 100D * sorted.length) - 1);
+            return sorted[Math.max(0, ix)] / 1000000D;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d events in %d frames, %d tabs at end: total %.2fms, "
+                    + "median frame %.3fms, p99 %.3fms, max %.3fms; "
+                    + "sync %.2fms, layout %.2fms, paint %.2fms",
+                    steps, frameNanos.length, tabs, totalNanos() / 1000000D,
+                    percentileMillis(50), percentileMillis(99), percentileMillis(100),
+                    syncMillis, layoutMillis, paintMillis);
+        }
+    }
+
+    /**
+     * Read a trace; it is parsed entirely before replaying, so reading the
+     * file is not included in the timings.
+     *
+     * @param file A trace file
+     * @return A replay
+     * @throws IOException If the file cannot be read or is not a trace
+     */
+    static TabEventReplay read(File file) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file)), 16384))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tab event trace: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trace version " + version + ": " + file);
+            }
+            long micros = 0;
+            for (;;) {
+                int type;
+                try {
+                    type = in.readUnsignedByte();
+                } catch (EOFException ex) {
+                    // Truncated by a crash; replay what there is
+                    break;
+                }
+                if (type == END) {
+                    break;
+                }
+                micros += readInt(in);
+                switch (type & ~NEW_TASK) {
+                    case DEFINE:
+                        int id = readInt(in);
+                        steps.add(new Step(type, micros, null, new int[]{id}, in.readUTF(), in.readUTF()));
+                        break;
+                    case ADDED:
+                    case CHANGED:
+                        int count = readInt(in);
+                        int[] indices = new int[count];
+                        int[] ids = new int[count];
+                        for (int i = 0; i < count; i++) {
+                            indices[i] = readInt(in);
+                            ids[i] = readInt(in);
+                        }
+                        steps.add(new Step(type, micros, indices, ids, null, null));
+                        break;
+                    case REMOVED:
+                        indices = new int[readInt(in)];
+                        for (int i = 0; i < indices.length; i++) {
+                            indices[i] = readInt(in);
+                        }
+                        steps.add(new Step(type, micros, indices, null, null, null));
+                        break;
+                    case SET_TABS:
+                        ids = new int[readInt(in)];
+                        for (int i = 0; i < ids.length; i++) {
+                            ids[i] = readInt(in);
+                        }
+                        steps.add(new Step(type, micros, null, ids, null, null));
+                        break;
+                    case SELECTED:
+                        steps.add(new Step(type, micros, new int[]{readInt(in) - 1}, null, null, null));
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type + " in " + file);
+                }
+            }
+        }
+        return new TabEventReplay(steps);
+    }
+
+    /**
+     * Replay the trace into a new scene.  Must not be called on the event
+     * thread, since it waits for the work each frame queues there.
+     *
+     * @param paced If true, wait between frames as long as the recording
+     * did
+     * @return The timings
+     */
+    Result replay(boolean paced) throws InterruptedException, InvocationTargetException {
+        TabScene[] scene = new TabScene[1];
+        BufferedImage img = new BufferedImage(1600, 64, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            // The trace begins with the tabs and selection as they were
+            // when recording started; start the scene from there
+            int first = 0;
+            while (first < steps.size() && (steps.get(first).type == DEFINE
+                    || steps.get(first).type == SET_TABS)) {
+                apply(steps.get(first++));
+            }
+            if (first < steps.size() && steps.get(first).type == SELECTED) {
+                apply(steps.get(first++));
+            }
+            long origin = first < steps.size() ? steps.get(first).micros : 0;
+            EventQueue.invokeAndWait(() -> {
+                scene[0] = TabEventTrace.unrecorded(() -> new TabScene(model, selection));
+                scene[0].init();
+                scene[0].validate(g);
+                scene[0].stats().reset();
+            });
+            List<Long> frames = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = first; i < steps.size();) {
+                long frameEnd = steps.get(i).micros + FRAME_MICROS;
+                int from = i;
+                while (i < steps.size() && steps.get(i).micros < frameEnd) {
+                    i++;
+                }
+                int to = i;
+                if (paced) {
+                    long due = start + TimeUnit.MICROSECONDS.toNanos(steps.get(from).micros - origin);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                long frameStart = System.nanoTime();
+                for (int j = from; j < to;) {
+                    // One event queue task per task in the recording, so
+                    // work each one defers runs before the next, as it did
+                    int taskStart = j++;
+                    while (j < to && !steps.get(j).newTask) {
+                        j++;
+                    }
+                    int taskEnd = j;
+                    EventQueue.invokeAndWait(() -> {
+                        for (int k = taskStart; k < taskEnd; k++) {
+                            apply(steps.get(k));
+                        }
+                    });
+                }
+                // Runs after anything the events queued with invokeLater
+                EventQueue.invokeAndWait(() -> {
+                    scene[0].validate(g);
+                    scene[0].paint(g);
+                });
+                frames.add(System.nanoTime() - frameStart);
+            }
+            long[] frameNanos = new long[frames.size()];
+            for (int i = 0; i < frameNanos.length; i++) {
+                frameNanos[i] = frames.get(i);
+            }
+            return new Result(steps.size(), model.size(), frameNanos, scene[0].stats());
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private TabData tab(int id) {
+        return tabs.computeIfAbsent(id, i -> {
+            String[] def = definitions.getOrDefault(i, new String[]{"Tab " + i, ""});
+            return new TabData(new JLabel(def[0]), null, def[0], def[1]);
+        });
+    }
+
+    private void apply(Step step) {
+        int size = model.size();
+        switch (step.type) {
+            case DEFINE:
+                definitions.put(step.ids[0], new String[]{step.text, step.tooltip});
+                break;
+            case ADDED:
+                TabData[] added = new TabData[step.ids.length];
+                for (int i = 0; i < added.length; i++) {
+                    added[i] = tab(step.ids[i]);
+                }
+                if (added.length == 1) {
+                    model.addTab(Math.min(size, step.indices[0]), added[0]);
+                } else if (added.length > 0) {
+                    model.addTabs(step.indices, added);
+                }
+                break;
+            case REMOVED:
+                int[] removed = step.indices;
+                if (removed.length == 1) {
+                    if (removed[0] < size) {
+                        model.removeTab(removed[0]);
+                    }
+                } else if (removed.length > 0) {
+                    if (removed[removed.length - 1] - removed[0] == removed.length - 1) {
+                        // The end is exclusive
+                        model.removeTabs(removed[0], removed[removed.length - 1] + 1);
+                    } else {
+                        model.removeTabs(removed);
+                    }
+                }
+                break;
+            case CHANGED:
+                for (int i = 0; i < step.indices.length; i++) {
+                    int ix = step.indices[i];
+                    if (ix >= size) {
+                        continue;
+                    }
+                    TabData expected = tab(step.ids[i]);
+                    String[] def = definitions.get(step.ids[i]);
+                    if (model.getTab(ix) != expected) {
+                        model.setTab(ix, expected);
+                    } else if (def != null) {
+                        if (!def[0].equals(expected.getText())) {
+                            model.setText(ix, def[0]);
+                        }
+                        if (!def[1].equals(expected.getTooltip())) {
+                            model.setToolTipTextAt(ix, def[1]);
+                        }
+                    }
+                }
+                break;
+            case SET_TABS:
+                TabData[] all = new TabData[step.ids.length];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = tab(step.ids[i]);
+                }
+                model.setTabs(all);
+                break;
+            case SELECTED:
+                int sel = step.indices[0];
+                if (sel >= 0 && sel < size) {
+                    selection.setSelectedIndex(sel);
+                } else {
+                    selection.clearSelection();
+                }
+                break;
+            default:
+                throw new AssertionError(step.type);
+        }
+    }
+}
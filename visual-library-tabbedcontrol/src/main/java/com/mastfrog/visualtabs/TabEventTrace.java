@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import javax.swing.SingleSelectionModel;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import org.netbeans.swing.tabcontrol.event.VeryComplexListDataEvent;
+
+/**
+ * Opt-in recorder of the model and selection events a tab scene sees, so
+ * that storms of changes (restoring tabs at startup, switching project
+ * groups, a VCS refresh closing and reopening files) can be replayed
+ * against an offscreen scene with TabEventReplay.  Enabled by setting the
+ * system property <code>visualtabs.trace</code> to a directory, which each
+ * scene writes one gzipped trace file into.
+ * <p>
+ * Tabs are recorded by identity: each tab is given an id, and its text and
+ * tooltip are written once when it is first seen (and again if they
+ * change), so a trace of a reorder or a model-wide diff is a list of ids,
+ * not of strings.  Every record is a type byte, the microseconds since the
+ * previous record, and a payload of variable-length ints; the type is
+ * flagged when the record is the first from a new event queue task.
+ *
+ * @author Tim Boudreau
+ */
+final class TabEventTrace {
+
+    static final String SYSTEM_PROPERTY = "visualtabs.trace";
+    static final int MAGIC = 0x56545243; // VTRC
+    static final int VERSION = 1;
+    static final String SUFFIX = ".vtrace";
+    // Record types
+    static final int END = 0;
+    static final int DEFINE = 1;
+    static final int ADDED = 2;
+    static final int REMOVED = 3;
+    static final int CHANGED = 4;
+    static final int SET_TABS = 5;
+    static final int SELECTED = 6;
+    // Set on the type of the first record written by an event queue task,
+    // so replay can dispatch events in the same batches, interleaved with
+    // whatever work each batch deferred with invokeLater
+    static final int NEW_TASK = 0x80;
+    // Stop rather than fill the disk if recording is left on
+    private static final int MAX_BYTES = 256 * 1024 * 1024;
+    private static final Logger LOG = Logger.getLogger(TabEventTrace.class.getName());
+    private static final AtomicInteger FILES = new AtomicInteger();
+    private static final ThreadLocal<Boolean> SUPPRESSED = new ThreadLocal<>();
+    private final TabDataModel model;
+    private final File file;
+    private final Map<TabData, Integer> ids = new IdentityHashMap<>();
+    private final Map<Integer, String> texts = new HashMap<>();
+    private DataOutputStream out;
+    private Thread shutdownHook;
+    private int nextId = 1;
+    private long last = System.nanoTime();
+    private Reference<AWTEvent> lastTask = new WeakReference<>(null);
+
+    private TabEventTrace(TabDataModel model, File file, DataOutputStream out) {
+        this.model = model;
+        this.file = file;
+        this.out = out;
+    }
+
+    /**
+     * Start recording if the system property names a directory.
+     *
+     * @param model The model
+     * @param selection The selection, whose current state is recorded
+     * @return A trace, or null if recording is not enabled or the file
+     * could not be created
+     */
+    static TabEventTrace start(TabDataModel model, SingleSelectionModel selection) {
+        String dir = System.getProperty(SYSTEM_PROPERTY);
+        if (dir == null || dir.isEmpty() || SUPPRESSED.get() != null) {
+            return null;
+        }
+        File file = new File(dir, "tabs-" + System.currentTimeMillis() + "-"
+                + FILES.incrementAndGet() + SUFFIX);
+        try {
+            file.getParentFile().mkdirs();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(file)), 16384));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            TabEventTrace result = new TabEventTrace(model, file, out);
+            result.shutdownHook = new Thread(result::stop, "tab-trace-close");
+            Runtime.getRuntime().addShutdownHook(result.shutdownHook);
+            LOG.log(Level.INFO, "Recording tab events to {0}", file);
+            // Start from the current state, so replay does too
+            result.contentsReplaced();
+            result.selected(selection.getSelectedIndex());
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.WARNING, "Could not record tab events to " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Create something (a scene replaying a trace) without recording it.
+     *
+     * @param <T> The type
+     * @param supplier Creates it
+     * @return The result of the supplier
+     */
+    static <T> T unrecorded(Supplier<T> supplier) {
+        SUPPRESSED.set(Boolean.TRUE);
+        try {
+            return supplier.get();
+        } finally {
+            SUPPRESSED.remove();
+        }
+    }
+
+    File file() {
+        return file;
+    }
+
+    /**
+     * Finish the trace; further events are ignored.
+     */
+    synchronized void stop() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(END);
+            out.close();
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Closing " + file, ex);
+        }
+        out = null;
+        ids.clear();
+        texts.clear();
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                // Already shutting down
+            }
+        }
+        LOG.log(Level.INFO, "Finished recording tab events to {0}", file);
+    }
+
+    void added(ListDataEvent e) {
+        record(ADDED, e);
+    }
+
+    void removed(ListDataEvent e) {
+        record(REMOVED, e);
+    }
+
+    void changed(ListDataEvent e) {
+        if (e instanceof VeryComplexListDataEvent) {
+            contentsReplaced();
+        } else {
+            record(CHANGED, e);
+        }
+    }
+
+    synchronized void selected(int index) {
+        if (out == null) {
+            return;
+        }
+        try {
+            header(SELECTED);
+            // Shifted so no selection, -1, fits an unsigned varint
+            writeInt(index + 1);
+            stopIfFull();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    private static int[] indices(ListDataEvent e) {
+        int[] result = e instanceof ComplexListDataEvent ? ((ComplexListDataEvent) e).getIndices() : null;
+        if (result == null) {
+            int a = Math.max(0, Math.min(e.getIndex0(), e.getIndex1()));
+            int b = Math.max(e.getIndex0(), e.getIndex1());
+            // DefaultTabDataModel.removeTabs(start, end) removes up to but
+            // not including end, yet reports the range as start to end; the
+            // tabs it names say how many were really removed
+            TabData[] affected = e instanceof ComplexListDataEvent
+                    ? ((ComplexListDataEvent) e).getAffectedItems() : null;
+            if (e.getType() == ListDataEvent.INTERVAL_REMOVED && affected != null && affected.length > 0) {
+                b = a + affected.length - 1;
+            }
+            result = new int[Math.max(0, b - a + 1)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = a + i;
+            }
+        }
+        return result;
+    }
+
+    private synchronized void record(int type, ListDataEvent e) {
+        if (out == null) {
+            return;
+        }
+        try {
+            int[] indices = indices(e);
+            int size = model.size();
+            if (type != REMOVED) {
+                // Define any tabs not seen before first, so the replay has
+                // them when it reads this record
+                for (int ix : indices) {
+                    if (ix < size) {
+                        idOf(model.getTab(ix));
+                    }
+                }
+            }
+            header(type);
+            writeInt(indices.length);
+            for (int ix : indices) {
+                writeInt(ix);
+                if (type != REMOVED) {
+                    writeInt(ix < size ? idOf(model.getTab(ix)) : 0);
+                }
+            }
+            if (type == REMOVED) {
+                pruneIds(size);
+            }
+            stopIfFull();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    private synchronized void contentsReplaced() {
+        if (out == null) {
+            return;
+        }
+        try {
+            int size = model.size();
+            int[] tabs = new int[size];
+            for (int i = 0; i < size; i++) {
+                tabs[i] = idOf(model.getTab(i));
+            }
+            header(SET_TABS);
+            writeInt(size);
+            for (int id : tabs) {
+                writeInt(id);
+            }
+            pruneIds(size);
+            stopIfFull();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    /**
+     * Get a tab's id, writing a definition record first if it is new or
+     * its text has changed since it was last defined.
+     */
+    private int idOf(TabData data) throws IOException {
+        Integer id = ids.get(data);
+        if (id == null) {
+            id = nextId++;
+            ids.put(data, id);
+        }
+        String text = data.getText() == null ? "" : data.getText();
+        String tip = data.getTooltip() == null ? "" : data.getTooltip();
+        String key = text + '\0' + tip;
+        if (!key.equals(texts.get(id))) {
+            texts.put(id, key);
+            header(DEFINE);
+            writeInt(id);
+            out.writeUTF(truncate(text));
+            out.writeUTF(truncate(tip));
+        }
+        return id;
+    }
+
+    /**
+     * Forget closed tabs once they outnumber open ones, so recording
+     * does not hold onto every tab (and its component) ever opened.
+     */
+    private void pruneIds(int size) {
+        if (ids.size() <= size * 2 + 32) {
+            return;
+        }
+        Set<TabData> open = Collections.newSetFromMap(new IdentityHashMap<>(size));
+        for (int i = 0; i < size; i++) {
+            open.add(model.getTab(i));
+        }
+        ids.entrySet().removeIf(en -> {
+            if (!open.contains(en.getKey())) {
+                texts.remove(en.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static String truncate(String s) {
+        // writeUTF cannot write more than 64K of encoded bytes
+        return s.length() > 8192 ? s.substring(0, 8192) : s;
+    }
+
+    private void header(int type) throws IOException {
+        long now = System.nanoTime();
+        long micros = Math.max(0, (now - last) / 1000);
+        last = now;
+        AWTEvent task = EventQueue.isDispatchThread() ? EventQueue.getCurrentEvent() : null;
+        if (task == null || task != lastTask.get()) {
+            lastTask = new WeakReference<>(task);
+            type |= NEW_TASK;
+        }
+        out.writeByte(type);
+        writeInt((int) Math.min(Integer.MAX_VALUE, micros));
+    }
+
+    private void writeInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readInt(DataInputStream in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private void stopIfFull() {
+        if (out.size() > MAX_BYTES || out.size() < 0) {
+            LOG.log(Level.WARNING, "Tab event trace {0} is full", file);
+            stop();
+        }
+    }
+
+    private void failed(IOException ex) {
+        LOG.log(Level.WARNING, "Stopped recording tab events to " + file, ex);
+        try {
+            out.close();
+        } catch (IOException ex1) {
+            // already logged
+        }
+        out = null;
+    }
+}
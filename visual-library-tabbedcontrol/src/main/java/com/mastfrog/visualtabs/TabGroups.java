@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import org.netbeans.swing.tabcontrol.event.ArrayDiff;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataListener;
+import org.netbeans.swing.tabcontrol.event.VeryComplexListDataEvent;
+
+/**
+ * Groups tabs by a key computed from each tab by the host, and tracks
+ * which groups are collapsed.  Membership is kept up to date from the
+ * model's events, touching only the tabs an event names - each tab's key
+ * is cached by identity, so a tab which is removed or changed is moved
+ * between groups without recomputing anything else.  Only an event which
+ * does not say which tabs it removed causes a rebuild.
+ *
+ * @author Tim Boudreau
+ */
+final class TabGroups implements ComplexListDataListener {
+
+    private final TabDataModel model;
+    private final Function<? super TabData, ?> keyFunction;
+    private final Map<TabData, Object> keys = new IdentityHashMap<>();
+    private final Map<Object, Group> groups = new HashMap<>();
+    private int collapsedCount;
+
+    TabGroups(TabDataModel model, Function<? super TabData, ?> keyFunction) {
+        this.model = model;
+        this.keyFunction = keyFunction;
+        rebuild();
+        model.addComplexListDataListener(this);
+    }
+
+    void detach() {
+        model.removeComplexListDataListener(this);
+    }
+
+    private static final class Group {
+
+        final Object key;
+        int size;
+        boolean collapsed;
+
+        Group(Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Get the key of the collapsed group a tab belongs to.
+     *
+     * @param data A tab
+     * @return The key, or null if the tab is not in a collapsed group
+     */
+    Object collapsedKey(TabData data) {
+        if (collapsedCount == 0) {
+            return null;
+        }
+        Object key = keyOf(data);
+        Group group = key == null ? null : groups.get(key);
+        return group != null && group.collapsed ? key : null;
+    }
+
+    boolean hasCollapsed() {
+        return collapsedCount > 0;
+    }
+
+    /**
+     * Get the key of the group a tab belongs to.
+     *
+     * @param data A tab
+     * @return A key, or null if the tab is in no group
+     */
+    Object keyOf(TabData data) {
+        Object key = keys.get(data);
+        if (key == null && !keys.containsKey(data)) {
+            // Not seen yet - an event for it may not have arrived
+            key = add(data);
+        }
+        return key;
+    }
+
+    boolean setCollapsed(Object key, boolean collapsed) {
+        Group group = key == null ? null : groups.get(key);
+        if (group == null || group.collapsed == collapsed) {
+            return false;
+        }
+        group.collapsed = collapsed;
+        collapsedCount += collapsed ? 1 : -1;
+        return true;
+    }
+
+    boolean isCollapsed(Object key) {
+        Group group = key == null ? null : groups.get(key);
+        return group != null && group.collapsed;
+    }
+
+    int size(Object key) {
+        Group group = key == null ? null : groups.get(key);
+        return group == null ? 0 : group.size;
+    }
+
+    List<Object> keys() {
+        return new ArrayList<>(groups.keySet());
+    }
+
+    private Object add(TabData data) {
+        Object key = keyFunction.apply(data);
+        keys.put(data, key);
+        if (key != null) {
+            groups.computeIfAbsent(key, Group::new).size++;
+        }
+        return key;
+    }
+
+    private void remove(TabData data) {
+        if (!keys.containsKey(data)) {
+            return;
+        }
+        leave(keys.remove(data));
+    }
+
+    private void leave(Object key) {
+        Group group = key == null ? null : groups.get(key);
+        if (group != null && --group.size <= 0) {
+            groups.remove(key);
+            if (group.collapsed) {
+                collapsedCount--;
+            }
+        }
+    }
+
+    /**
+     * Recompute the key of a tab whose contents changed, moving it to
+     * another group if need be.
+     */
+    private void rekey(TabData data) {
+        if (!keys.containsKey(data)) {
+            add(data);
+            return;
+        }
+        Object old = keys.get(data);
+        Object key = keyFunction.apply(data);
+        if (!Objects.equals(old, key)) {
+            leave(old);
+            keys.put(data, key);
+            if (key != null) {
+                groups.computeIfAbsent(key, Group::new).size++;
+            }
+        }
+    }
+
+    private void rebuild() {
+        Map<Object, Boolean> collapsed = new HashMap<>();
+        for (Group g : groups.values()) {
+            if (g.collapsed) {
+                collapsed.put(g.key, true);
+            }
+        }
+        keys.clear();
+        groups.clear();
+        collapsedCount = 0;
+        for (int i = 0; i < model.size(); i++) {
+            add(model.getTab(i));
+        }
+        for (Object key : collapsed.keySet()) {
+            setCollapsed(key, true);
+        }
+    }
+
+    private void rekeyRange(int first, int last) {
+        for (int i = Math.max(0, first); i <= last && i < model.size(); i++) {
+            rekey(model.getTab(i));
+        }
+    }
+
+    private void rekey(int[] indices, int first, int last) {
+        if (indices != null && indices.length > 0) {
+            for (int ix : indices) {
+                if (ix >= 0 && ix < model.size()) {
+                    rekey(model.getTab(ix));
+                }
+            }
+        } else {
+            rekeyRange(first, last);
+        }
+    }
+
+    @Override
+    public void indicesAdded(ComplexListDataEvent e) {
+        rekey(e.getIndices(), e.getIndex0(), e.getIndex1());
+    }
+
+    @Override
+    public void indicesRemoved(ComplexListDataEvent e) {
+        TabData[] removed = e.getAffectedItems();
+        if (removed == null) {
+            rebuild();
+            return;
+        }
+        for (TabData data : removed) {
+            remove(data);
+        }
+    }
+
+    @Override
+    public void indicesChanged(ComplexListDataEvent e) {
+        if (e instanceof VeryComplexListDataEvent) {
+            ArrayDiff diff = ((VeryComplexListDataEvent) e).getDiff();
+            TabData[] old = diff.getOldData();
+            TabData[] nue = diff.getNewData();
+            for (Integer i : diff.getDeletedIndices()) {
+                if (i >= 0 && i < old.length) {
+                    remove(old[i]);
+                }
+            }
+            for (Integer i : diff.getAddedIndices()) {
+                if (i >= 0 && i < nue.length) {
+                    rekey(nue[i]);
+                }
+            }
+            for (Integer i : diff.getChangedIndices()) {
+                // A different tab now has the index; one already known has
+                // only moved, and its key cannot have changed in the process
+                if (i >= 0 && i < nue.length && !keys.containsKey(nue[i])) {
+                    add(nue[i]);
+                }
+            }
+            if (keys.size() != model.size()) {
+                // The diff compares tabs by contents, so a tab replaced by
+                // an equal one is in neither set; start over
+                rebuild();
+            }
+            return;
+        }
+        rekey(e.getIndices(), e.getIndex0(), e.getIndex1());
+    }
+
+    @Override
+    public void intervalAdded(ListDataEvent e) {
+        rekeyRange(e.getIndex0(), e.getIndex1());
+    }
+
+    @Override
+    public void intervalRemoved(ListDataEvent e) {
+        // DefaultTabDataModel reports removeTab() and removeTabs(int, int)
+        // this way, naming the tabs removed
+        if (e instanceof ComplexListDataEvent) {
+            indicesRemoved((ComplexListDataEvent) e);
+        } else {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void contentsChanged(ListDataEvent e) {
+        rekeyRange(e.getIndex0(), e.getIndex1());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import org.netbeans.swing.tabcontrol.event.ArrayDiff;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataListener;
+import org.netbeans.swing.tabcontrol.event.VeryComplexListDataEvent;
+
+/**
+ * Most-recently-selected order of tabs, as a doubly linked list with a
+ * node per tab looked up by identity, so recording a selection is
+ * constant time however many tabs there are, and the k most recent tabs
+ * are found by walking k nodes.  Tabs are keyed by their TabData rather
+ * than their index, since indices shift as tabs are opened and closed.
+ * Closed tabs are unlinked when the removal event says which tabs they
+ * were; otherwise they are pruned in one pass the next time the order is
+ * read.  Content changes never cause a pass: a tab replaced in place,
+ * which the model reports as a content change, is dropped when it is
+ * next read and turns out not to be at (or near) the index it was last
+ * found at, nor anywhere else.
+ *
+ * @author Tim Boudreau
+ */
+final class TabMruIndex implements ComplexListDataListener {
+
+    private final TabDataModel model;
+    private final Map<TabData, Node> nodes = new IdentityHashMap<>();
+    // Sentinel of a circular list; head.next is the most recent
+    private final Node head = new Node(null);
+    private boolean needsPrune;
+    private long touches;
+
+    TabMruIndex(TabDataModel model) {
+        this.model = model;
+        head.next = head.prev = head;
+        model.addComplexListDataListener(this);
+    }
+
+    void detach() {
+        model.removeComplexListDataListener(this);
+    }
+
+    private static final class Node {
+
+        final TabData data;
+        // Where the tab was last found in the model
+        int hint = -1;
+        Node prev;
+        Node next;
+
+        Node(TabData data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Record that a tab was selected.
+     *
+     * @param data The tab
+     * @param index Its index, or -1 if not known
+     */
+    void touch(TabData data, int index) {
+        if (data == null) {
+            return;
+        }
+        if (head.next.data == data) {
+            head.next.hint = index;
+            return;
+        }
+        Node node = nodes.get(data);
+        if (node == null) {
+            node = new Node(data);
+            nodes.put(data, node);
+        } else {
+            unlink(node);
+        }
+        node.hint = index;
+        node.next = head.next;
+        node.prev = head;
+        head.next.prev = node;
+        head.next = node;
+        touches++;
+    }
+
+    void remove(TabData data) {
+        Node node = nodes.remove(data);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    private static void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.next = node.prev = null;
+    }
+
+    /**
+     * Get up to k tabs, most recently selected first.
+     *
+     * @param k The maximum number
+     * @return A list
+     */
+    List<TabData> topK(int k) {
+        prune();
+        List<TabData> result = new ArrayList<>(Math.min(k, nodes.size()));
+        for (Node n = head.next; n != head && result.size() < k;) {
+            Node next = n.next;
+            if (isOpen(n)) {
+                result.add(n.data);
+            } else {
+                nodes.remove(n.data);
+                unlink(n);
+            }
+            n = next;
+        }
+        return result;
+    }
+
+    private boolean isOpen(Node node) {
+        int size = model.size();
+        int hint = Math.max(0, Math.min(size - 1, node.hint));
+        // Opening and closing tabs shifts indices by as many tabs as were
+        // opened or closed before it, so search outward from where the tab
+        // was last found; only a closed tab costs a pass over the model
+        for (int d = 0; hint - d >= 0 || hint + d < size; d++) {
+            if (hint - d >= 0 && model.getTab(hint - d) == node.data) {
+                node.hint = hint - d;
+                return true;
+            }
+            if (d > 0 && hint + d < size && model.getTab(hint + d) == node.data) {
+                node.hint = hint + d;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        prune();
+        return nodes.size();
+    }
+
+    /**
+     * The number of selections recorded.
+     *
+     * @return A count
+     */
+    long touches() {
+        return touches;
+    }
+
+    private void prune() {
+        if (!needsPrune) {
+            return;
+        }
+        needsPrune = false;
+        int size = model.size();
+        Map<TabData, Integer> present = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            present.put(model.getTab(i), i);
+        }
+        for (Iterator<Map.Entry<TabData, Node>> it = nodes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<TabData, Node> e = it.next();
+            Integer index = present.get(e.getKey());
+            if (index == null) {
+                unlink(e.getValue());
+                it.remove();
+            } else {
+                e.getValue().hint = index;
+            }
+        }
+    }
+
+    @Override
+    public void indicesAdded(ComplexListDataEvent e) {
+        // do nothing
+    }
+
+    @Override
+    public void indicesRemoved(ComplexListDataEvent e) {
+        TabData[] removed = e.getAffectedItems();
+        if (removed == null) {
+            needsPrune = true;
+            return;
+        }
+        for (TabData data : removed) {
+            remove(data);
+        }
+    }
+
+    @Override
+    public void indicesChanged(ComplexListDataEvent e) {
+        if (e instanceof VeryComplexListDataEvent) {
+            ArrayDiff diff = ((VeryComplexListDataEvent) e).getDiff();
+            TabData[] old = diff.getOldData();
+            for (Integer i : diff.getDeletedIndices()) {
+                if (i >= 0 && i < old.length) {
+                    remove(old[i]);
+                }
+            }
+        }
+        // Tabs replaced in place are dropped when next read
+    }
+
+    @Override
+    public void intervalAdded(ListDataEvent e) {
+        // do nothing
+    }
+
+    @Override
+    public void intervalRemoved(ListDataEvent e) {
+        // DefaultTabDataModel reports removeTab() and removeTabs(int, int)
+        // this way, naming the tabs removed
+        if (e instanceof ComplexListDataEvent) {
+            indicesRemoved((ComplexListDataEvent) e);
+        } else {
+            needsPrune = true;
+        }
+    }
+
+    @Override
+    public void contentsChanged(ListDataEvent e) {
+        // Tabs replaced in place are dropped when next read
+    }
+}
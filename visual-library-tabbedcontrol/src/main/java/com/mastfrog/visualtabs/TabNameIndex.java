@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import org.netbeans.swing.tabcontrol.event.ArrayDiff;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataListener;
+import org.netbeans.swing.tabcontrol.event.VeryComplexListDataEvent;
+
+/**
+ * Index of tab names for the quick-search popup.  Listens to the same
+ * model events as the widget mapper, but only records what changed; the
+ * index is brought up to date when it is next searched, re-reading only
+ * the names of tabs whose text changed.  Names are stored with markup
+ * stripped and lower-cased, and each name's trigrams map to the entries
+ * containing them, so a substring search only examines the entries in
+ * the smallest posting set for any trigram of the query.  Matches for a
+ * query are kept, so typing another character only filters them.
+ *
+ * @author Tim Boudreau
+ */
+final class TabNameIndex implements ComplexListDataListener {
+
+    // Below this many substring matches, names which merely contain the
+    // query's characters in order are included too
+    private static final int FUZZY_THRESHOLD = 32;
+    private final TabDataModel model;
+    private final Map<TabData, Entry> byData = new IdentityHashMap<>();
+    private final Map<Long, Set<Entry>> trigrams = new HashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<TabData> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean structureChanged = true;
+    private int generation;
+    private String lastQuery;
+    private List<Entry> lastMatches;
+    private boolean lastComplete;
+    private int lastGeneration = -1;
+
+    TabNameIndex(TabDataModel model) {
+        this.model = model;
+        model.addComplexListDataListener(this);
+    }
+
+    void detach() {
+        model.removeComplexListDataListener(this);
+    }
+
+    /**
+     * An indexed tab.
+     */
+    static final class Entry implements Comparable<Entry> {
+
+        final TabData data;
+        String text;
+        String name;
+        String lower;
+        int index;
+        int score;
+
+        Entry(TabData data) {
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Integer.compare(score, o.score);
+            return result != 0 ? result : Integer.compare(index, o.index);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The number of indexed tabs.
+     *
+     * @return A count
+     */
+    int size() {
+        refresh();
+        return entries.size();
+    }
+
+    /**
+     * Find tabs whose names match a query, best first: names beginning with
+     * it, then names with a word beginning with it, then names containing
+     * it, then names containing its characters in order; ties are broken
+     * by position in the model.
+     *
+     * @param query The text typed
+     * @return The matches; the list belongs to the index and is replaced,
+     * not modified, by later searches
+     */
+    List<Entry> search(String query) {
+        refresh();
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            lastQuery = null;
+            return Collections.unmodifiableList(new ArrayList<>(entries));
+        }
+        List<Entry> result = new ArrayList<>();
+        boolean complete = true;
+        if (lastQuery != null && lastComplete && lastGeneration == generation
+                && q.startsWith(lastQuery)) {
+            // Anything matching the longer query matched the shorter one
+            for (Entry e : lastMatches) {
+                if ((e.score = score(e.lower, q)) >= 0) {
+                    result.add(e);
+                }
+            }
+        } else if (q.length() >= 3) {
+            Set<Entry> candidates = smallestPosting(q);
+            if (candidates != null) {
+                for (Entry e : candidates) {
+                    if ((e.score = score(e.lower, q)) >= 0 && e.score < FUZZY) {
+                        result.add(e);
+                    }
+                }
+            }
+            if (result.size() < FUZZY_THRESHOLD) {
+                for (Entry e : entries) {
+                    if (e.lower.indexOf(q) < 0 && isSubsequence(q, e.lower)) {
+                        e.score = FUZZY;
+                        result.add(e);
+                    }
+                }
+            } else {
+                complete = false;
+            }
+        } else {
+            for (Entry e : entries) {
+                if ((e.score = score(e.lower, q)) >= 0) {
+                    result.add(e);
+                }
+            }
+        }
+        Collections.sort(result);
+        lastQuery = q;
+        lastMatches = result;
+        lastComplete = complete;
+        lastGeneration = generation;
+        return Collections.unmodifiableList(result);
+    }
+
+    private static final int PREFIX = 0;
+    private static final int WORD_START = 1;
+    private static final int CONTAINS = 2;
+    private static final int FUZZY = 3;
+
+    static int score(String name, String q) {
+        int ix = name.indexOf(q);
+        if (ix == 0) {
+            return PREFIX;
+        } else if (ix > 0) {
+            while (ix > 0) {
+                if (!Character.isLetterOrDigit(name.charAt(ix - 1))) {
+                    return WORD_START;
+                }
+                ix = name.indexOf(q, ix + 1);
+            }
+            return CONTAINS;
+        }
+        return isSubsequence(q, name) ? FUZZY : -1;
+    }
+
+    static boolean isSubsequence(String q, String name) {
+        int pos = 0;
+        for (int i = 0; i < q.length(); i++) {
+            pos = name.indexOf(q.charAt(i), pos);
+            if (pos < 0) {
+                return false;
+            }
+            pos++;
+        }
+        return true;
+    }
+
+    private Set<Entry> smallestPosting(String q) {
+        Set<Entry> result = null;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Set<Entry> posting = trigrams.get(trigram(q, i));
+            if (posting == null) {
+                return null;
+            }
+            if (result == null || posting.size() < result.size()) {
+                result = posting;
+            }
+        }
+        return result;
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    /**
+     * Bring the index up to date with the model: if tabs were added,
+     * removed or reordered, walk the model, reusing the entries of tabs
+     * still present and re-reading only names whose text changed;
+     * otherwise re-read only the tabs reported as changed.
+     */
+    void refresh() {
+        if (structureChanged) {
+            structureChanged = false;
+            changed.clear();
+            int size = model.size();
+            Set<TabData> present = Collections.newSetFromMap(new IdentityHashMap<>(size));
+            entries.clear();
+            for (int i = 0; i < size; i++) {
+                TabData data = model.getTab(i);
+                present.add(data);
+                Entry e = byData.get(data);
+                if (e == null) {
+                    e = new Entry(data);
+                    byData.put(data, e);
+                }
+                e.index = i;
+                update(e);
+                entries.add(e);
+            }
+            if (byData.size() > present.size()) {
+                for (Iterator<Map.Entry<TabData, Entry>> it = byData.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<TabData, Entry> e = it.next();
+                    if (!present.contains(e.getKey())) {
+                        unindex(e.getValue());
+                        it.remove();
+                    }
+                }
+            }
+            generation++;
+        } else if (!changed.isEmpty()) {
+            for (TabData data : changed) {
+                Entry e = byData.get(data);
+                if (e != null) {
+                    update(e);
+                }
+            }
+            changed.clear();
+            generation++;
+        }
+    }
+
+    private void update(Entry e) {
+        String text = e.data.getText();
+        if (text == null) {
+            text = "";
+        }
+        if (text.equals(e.text)) {
+            return;
+        }
+        if (e.lower != null) {
+            unindex(e);
+        }
+        e.text = text;
+        e.name = TabScene.deHtml(text);
+        e.lower = e.name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + 3 <= e.lower.length(); i++) {
+            trigrams.computeIfAbsent(trigram(e.lower, i),
+                    k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(e);
+        }
+    }
+
+    private void unindex(Entry e) {
+        for (int i = 0; i + 3 <= e.lower.length(); i++) {
+            Long key = trigram(e.lower, i);
+            Set<Entry> posting = trigrams.get(key);
+            if (posting != null) {
+                posting.remove(e);
+                if (posting.isEmpty()) {
+                    trigrams.remove(key);
+                }
+            }
+        }
+    }
+
+    private void changed(int index) {
+        if (!structureChanged && index >= 0 && index < model.size()) {
+            changed.add(model.getTab(index));
+        }
+    }
+
+    @Override
+    public void indicesAdded(ComplexListDataEvent e) {
+        structureChanged = true;
+    }
+
+    @Override
+    public void indicesRemoved(ComplexListDataEvent e) {
+        structureChanged = true;
+    }
+
+    @Override
+    public void indicesChanged(ComplexListDataEvent e) {
+        if (e instanceof VeryComplexListDataEvent) {
+            ArrayDiff diff = ((VeryComplexListDataEvent) e).getDiff();
+            if (!diff.getAddedIndices().isEmpty() || !diff.getDeletedIndices().isEmpty()
+                    || !diff.getMovedIndices().isEmpty()) {
+                structureChanged = true;
+                return;
+            }
+            for (Integer i : diff.getChangedIndices()) {
+                changed(i);
+            }
+            return;
+        }
+        int[] affected = e.getIndices();
+        if (affected != null && affected.length > 0) {
+            for (int i : affected) {
+                changed(i);
+            }
+        } else {
+            contentsChanged(e);
+        }
+    }
+
+    @Override
+    public void intervalAdded(ListDataEvent e) {
+        structureChanged = true;
+    }
+
+    @Override
+    public void intervalRemoved(ListDataEvent e) {
+        structureChanged = true;
+    }
+
+    @Override
+    public void contentsChanged(ListDataEvent e) {
+        int first = Math.max(0, Math.min(e.getIndex0(), e.getIndex1()));
+        int last = Math.max(e.getIndex0(), e.getIndex1());
+        if (last - first > model.size() / 2) {
+            structureChanged = true;
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            changed(i);
+        }
+    }
+}
@@ -22,12 +22,14 @@ import com.mastfrog.visualtabs.buttons.ButtonsPanel;
 import com.mastfrog.visualtabs.PanTray.DragScrollTimer;
 import com.mastfrog.visualtabs.buttons.ButtonAction;
 import java.awt.AWTEvent;
+import java.awt.AWTKeyStroke;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.KeyboardFocusManager;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
@@ -36,10 +38,13 @@ import java.awt.event.ComponentListener;
 import java.awt.event.HierarchyBoundsListener;
 import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
+import javax.management.ObjectName;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -49,6 +54,7 @@ import java.util.logging.Logger;
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
 import javax.swing.JPopupMenu;
+import javax.swing.KeyStroke;
 import javax.swing.SingleSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
@@ -98,12 +104,43 @@ public class TabScene extends Scene {
     private final GlowWidget glow;
     private final LayerWidget dragLayer = new LayerWidget(this);
     private final Widget tabsContainer = new Widget(this);
-    private final Widget raggedEdges = new Widget(this);
+    private final Widget raggedEdges = new Widget(this) {
+        @Override
+        protected void paintBorder() {
+            if (heatmap == null) {
+                super.paintBorder();
+            } else {
+                long start = System.nanoTime();
+                super.paintBorder();
+                heatmap.painted(this, PaintHeatmap.Part.EDGES, System.nanoTime() - start);
+            }
+        }
+    };
     private final Widget raggedEdgesLayer = new LayerWidget(this);
     private final ButtonsPanel buttons;
     private final RequestProcessor.Task task;
 
     private final TabWidgetMapper mapper;
+    private final TabEdges edges = new TabEdges();
+    private HoverResolver hoverResolver;
+    private volatile TabSceneStats stats;
+    static final String HOVER_CACHE = "hover";
+    private final DragImageCache dragImages = new DragImageCache();
+    private TabNameIndex nameIndex;
+    private QuickSearchPopup quickSearch;
+    private TabMruIndex mru;
+    private AttentionTracker attention;
+    private TrackedTabs pinned;
+    private final Widget pinnedTabs = new Widget(this);
+    private final PinnedTabsLayout pinnedLayout;
+    private TabGroups groups;
+    private boolean aggregatesShown;
+    private final LayerWidget mruLayer = new LayerWidget(this);
+    private MruSwitcherWidget mruSwitcher;
+    private static final int MRU_SWITCHER_SIZE = 9;
+    private ObjectName metricsName;
+    private final TabEventTrace trace;
+    private final PaintHeatmap heatmap = PaintHeatmap.ENABLED ? new PaintHeatmap() : null;
 
     TabScene(TabDataModel model, SingleSelectionModel selection) {
         this(new TabsAppearance().forceFontSize(18).setTabsInnerSpacing(5), model, selection);
@@ -113,26 +150,61 @@ public class TabScene extends Scene {
         this.appearance = appearance;
         this.model = model;
         this.selection = selection;
-
-        panTray = new PanTray(this, appearance.panTrayLeftInset(),
-                appearance.panTrayRightInset(),
-                this::updateHoverForPan, this::updatePartiallyVisibleTabWidget);
+        selectionListener = new SelectionChangeListener(this, model, selection);
+
+        vertical = appearance.isVerticalStrip();
+        verticalEdge = appearance.panTrayLeftInset() / 2;
+        mapper = new TabWidgetMapper(this::createTabWidget, model, selection, this::removeTabWidget,
+                this::fullValidate, this::isTabInView);
+        trace = TabEventTrace.start(model, selection);
+        mapper.setTrace(trace);
+        if (appearance.isCtrlTabSwitching()) {
+            // Otherwise created when recent tabs are first asked for
+            mru = new TabMruIndex(model);
+        }
+        pinnedLayout = new PinnedTabsLayout(mapper::indexOf, 0);
+        panTray = new PanTray(this, vertical ? verticalEdge : appearance.panTrayLeftInset(),
+                vertical ? verticalEdge : appearance.panTrayRightInset(),
+                this::updateHoverForPan, this::updatePartiallyVisibleTabWidget, this::hoverResolver);
         // Used for computing how far off screen should hide the
         // close button
         panTray.setFont(appearance.tabFont());
-        mapper = new TabWidgetMapper(this::createTabWidget, model, selection, tabs::removeChild, this::fullValidate);
+        if (appearance.isLazySync()) {
+            // Otherwise no tab is ever left stale
+            addSceneListener(new StaleSync());
+        }
+        if (EdtWatchdog.ENABLED) {
+            addSceneListener(new LayoutStallWatch());
+        }
 
         addChild(tabsContainer);
 
         tabsContainer.addChild(tabsLayer);
         tabsLayer.addChild(panTray);
         int glowWidth = appearance.glowWidth();
-        tabsLayer.setPreferredLocation(new Point(0, glowWidth));
+        tabsLayer.setPreferredLocation(new Point(0, vertical ? 0 : glowWidth));
         panTray.addChild(tabs);
         task = RequestProcessor.getDefault().create(() -> {
             EventQueue.invokeLater(this::reallyEnsureSomethingVisible);
         });
-        tabs.setLayout(new SortedFlowLayout(model, false, LayoutFactory.SerialAlignment.LEFT_TOP, 0, appearance.panTrayLeftInset()));
+        SortedFlowLayout tabsLayout;
+        if (vertical) {
+            tabsLayout = new SortedFlowLayout(model, mapper::widgets, edges, true,
+                    LayoutFactory.SerialAlignment.JUSTIFY, 0, verticalEdge);
+            tabsLayout.setVirtualRows(mapper::windowStart, this::rowPitch, this::rowWidth);
+            panTray.setVertical(this::verticalExtent);
+            mapper.setWindowCapacity(INITIAL_WINDOW);
+            addSceneListener(new WindowTracker());
+        } else {
+            tabsLayout = new SortedFlowLayout(model, mapper::widgets, edges, false,
+                    LayoutFactory.SerialAlignment.LEFT_TOP, 0, appearance.panTrayLeftInset());
+            tabsLayout.setCompression(this::compressibleWidth, appearance::minimumCompressedTabWidth);
+            tabsLayout.setWrapping(rowPacker, this::wrapWidth, this::rowCountChanged);
+            tabsLayout.setPlacedElsewhere(pinnedTabs);
+        }
+        tabs.setLayout(tabsLayout);
+        pinnedTabs.setLayout(pinnedLayout);
+        addChild(pinnedTabs);
 
         tabsContainer.addChild(glowLayer);
         glow = new GlowWidget(this, appearance);
@@ -142,8 +214,12 @@ public class TabScene extends Scene {
         tabsContainer.addChild(dragLayer);
         addChild(raggedEdgesLayer);
         raggedEdgesLayer.addChild(raggedEdges);
-        raggedEdges.setBorder(new RaggedBorder(appearance.panTrayLeftInset(), appearance.panTrayRightInset(),
-                appearance, this::selectionDirection));
+        raggedBorder = vertical
+                ? new RaggedBorder(verticalEdge, verticalEdge, appearance, this::selectionDirection).setVertical(true)
+                : new RaggedBorder(appearance.panTrayLeftInset(), appearance.panTrayRightInset(),
+                        appearance, this::selectionDirection);
+        raggedEdges.setBorder(raggedBorder);
+        addChild(mruLayer);
 
         tabsContainer.addDependency(() -> {
             Rectangle tabsBounds = tabsContainer.getBounds();
@@ -156,7 +232,10 @@ public class TabScene extends Scene {
             }
         });
 
-        buttons = new ButtonsPanel(this, appearance, this::onButtonAction);
+        buttons = new ButtonsPanel(this, appearance, this::onButtonAction).setVertical(vertical);
+        if (heatmap != null) {
+            buttons.setPaintTimes(nanos -> heatmap.painted(buttons, PaintHeatmap.Part.BUTTONS, nanos));
+        }
         addChild(buttons);
         setLayout(new TabsAndButtonsLayout());
         tabs.addDependency(buttons::revalidate);
@@ -171,6 +250,18 @@ public class TabScene extends Scene {
             }
         });
 
+        // One hover action for the whole scene, which finds the tab under
+        // the pointer from the cached tab edges, instead of a hover action
+        // on every tab which each get hit-tested on every mouse motion
+        getActions().addAction(new WidgetAction.Adapter() {
+            @Override
+            public WidgetAction.State mouseMoved(Widget widget, WidgetMouseEvent event) {
+                hp.widgetHovered(tabWidgetAt(widget.convertLocalToScene(event.getPoint())));
+                return WidgetAction.State.REJECTED;
+            }
+        });
+        getActions().addAction(new MruSwitchAction());
+
         getSceneAnimator().getPreferredBoundsAnimator().addAnimatorListener(al);
         getSceneAnimator().getPreferredLocationAnimator().addAnimatorListener(al);
 
@@ -184,7 +275,10 @@ public class TabScene extends Scene {
 
     void reallyEnsureSomethingVisible() {
         Widget w = getSelectedWidget();
-        if (w != null && changesSinceLastEnsure > 2) {
+        if (vertical && w == null && changesSinceLastEnsure > 2) {
+            // The selected tab has no widget until it is scrolled to
+            ensureTabVisible(selection.getSelectedIndex());
+        } else if (w != null && changesSinceLastEnsure > 2) {
             panTray.ensureChildVisible(w);
         } else {
             panTray.ensureSomethingIsVisible();
@@ -195,16 +289,63 @@ public class TabScene extends Scene {
 
     void ensureSomethingVisible() {
         changesSinceLastEnsure++;
+        if (bulkEdit != null) {
+            bulkEdit.deferredWork = true;
+            return;
+        }
         task.schedule(750);
     }
 
     void fullValidate() {
+        if (bulkEdit != null) {
+            bulkEdit.deferredWork = true;
+            return;
+        }
+        if (stats != null) {
+            stats.fullyValidated();
+        }
+        placePinnedTabs();
+        labelGroups();
         ensureSelectedWidget(getSelectedWidget());
         ensureSomethingVisible();
         validate();
         repaint();
     }
 
+    /**
+     * After a move which only reordered the tabs in a range, put their
+     * widgets at the positions the edge cache now has for them, keeping
+     * their sizes and the rest of the strip as they are.
+     *
+     * @param min The first index in the range
+     * @param max The last index in the range
+     * @return false if some widget in the range has not been laid out or
+     * is pinned, in which case the strip must be laid out again
+     */
+    private boolean relocate(int min, int max) {
+        for (int i = min; i <= max; i++) {
+            TabWidget w = mapper.widget(i);
+            if (w == null || w.getParentWidget() != tabs || w.getBounds() == null
+                    || w.getLocation() == null) {
+                return false;
+            }
+        }
+        for (int i = min; i <= max; i++) {
+            TabWidget w = mapper.widget(i);
+            Rectangle bounds = w.getBounds();
+            Point loc = w.getLocation();
+            int start = edges.start(i);
+            if (vertical) {
+                loc.y = start - bounds.y;
+            } else {
+                loc.x = start - bounds.x;
+            }
+            w.resolveBounds(loc, bounds);
+            w.repaint();
+        }
+        return true;
+    }
+
     void hideCloseButton(TabWidget w) {
         w.closeButton.setEnabled(false);
         w.revalidate();
@@ -330,7 +471,9 @@ public class TabScene extends Scene {
                 }
                 break;
             case POPUP:
-                if (pressed) {
+                if (pressed && appearance.isQuickSearchPopup()) {
+                    showQuickSearch();
+                } else if (pressed) {
                     TabDisplayer td = displayer();
                     if (td != null) {
                         TabListPopupAction tlpa = new TabListPopupAction(td);
@@ -353,6 +496,147 @@ public class TabScene extends Scene {
         }
     }
 
+    /**
+     * Show the popup for finding a tab by name, below the buttons.
+     */
+    void showQuickSearch() {
+        JComponent view = getView();
+        if (view == null) {
+            return;
+        }
+        if (quickSearch == null) {
+            // The index listens to the model from here on, and is built
+            // from it on the first search
+            nameIndex = new TabNameIndex(model);
+            quickSearch = new QuickSearchPopup(nameIndex, appearance, this::selectAndReveal);
+        }
+        Rectangle bds = buttons.getBounds();
+        if (bds == null) {
+            validate();
+            bds = buttons.getBounds();
+            if (bds == null) {
+                return;
+            }
+        }
+        bds = buttons.convertLocalToScene(bds);
+        Point corner = convertSceneToView(new Point(bds.x + bds.width, bds.y + bds.height));
+        quickSearch.show(view, corner.x, corner.y);
+    }
+
+    /**
+     * Get the most recently selected tabs, most recent (normally the
+     * selected tab) first.  Only tabs which have been selected since this
+     * scene was created are included if Ctrl-Tab switching is enabled in
+     * its appearance; otherwise selections are only recorded from the
+     * first call to this method or mruSwitch().
+     *
+     * @param k The maximum number of tabs to return
+     * @return A list of at most k tabs
+     */
+    public List<TabData> recentTabs(int k) {
+        return mru().topK(k);
+    }
+
+    private TabMruIndex mru() {
+        if (mru == null) {
+            mru = new TabMruIndex(model);
+            mru.touch(selectionListener.lastSelectedData(), selection.getSelectedIndex());
+        }
+        return mru;
+    }
+
+    private boolean isMruSwitcherShowing() {
+        return mruSwitcher != null && mruSwitcher.isShowing();
+    }
+
+    /**
+     * Move to the next (or previous) tab in most-recently-selected order,
+     * showing the switcher over the tabs if it is not already showing; the
+     * tab is selected when the switch is committed.
+     *
+     * @param backward If true, move toward less recently used tabs from
+     * the end of the list
+     */
+    public void mruSwitch(boolean backward) {
+        if (!isMruSwitcherShowing()) {
+            List<TabData> candidates = mru().topK(MRU_SWITCHER_SIZE);
+            if (candidates.size() < 2) {
+                return;
+            }
+            if (mruSwitcher == null) {
+                mruSwitcher = new MruSwitcherWidget(this, appearance);
+                mruLayer.addChild(mruSwitcher);
+            }
+            mruSwitcher.show(candidates, backward ? candidates.size() - 1 : 1);
+            validate();
+            return;
+        }
+        int size = mruSwitcher.size();
+        mruSwitcher.setPosition((mruSwitcher.position() + (backward ? size - 1 : 1)) % size);
+        validate();
+    }
+
+    /**
+     * Select the tab the switcher is on and hide it.
+     */
+    public void commitMruSwitch() {
+        TabData target = mruSwitcher == null ? null : mruSwitcher.selected();
+        cancelMruSwitch();
+        if (target != null) {
+            selectAndReveal(target);
+        }
+    }
+
+    /**
+     * Hide the switcher without changing the selection.
+     */
+    public void cancelMruSwitch() {
+        if (isMruSwitcherShowing()) {
+            mruSwitcher.hide();
+            validate();
+        }
+    }
+
+    /**
+     * Ctrl-Tab and Ctrl-Shift-Tab cycle through recently used tabs while
+     * Ctrl is held; releasing it selects the tab, and Escape cancels.  The
+     * view only passes Ctrl-Tab on if TabsAppearance.setCtrlTabSwitching()
+     * was called; otherwise it moves focus as usual, and the switcher is
+     * only shown by calling mruSwitch().
+     */
+    final class MruSwitchAction extends WidgetAction.Adapter {
+
+        @Override
+        public WidgetAction.State keyPressed(Widget widget, WidgetAction.WidgetKeyEvent event) {
+            if (event.getKeyCode() == KeyEvent.VK_TAB && (event.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0) {
+                mruSwitch((event.getModifiersEx() & InputEvent.SHIFT_DOWN_MASK) != 0);
+                return WidgetAction.State.CONSUMED;
+            }
+            if (event.getKeyCode() == KeyEvent.VK_ESCAPE && isMruSwitcherShowing()) {
+                cancelMruSwitch();
+                return WidgetAction.State.CONSUMED;
+            }
+            return WidgetAction.State.REJECTED;
+        }
+
+        @Override
+        public WidgetAction.State keyReleased(Widget widget, WidgetAction.WidgetKeyEvent event) {
+            if (event.getKeyCode() == KeyEvent.VK_CONTROL && isMruSwitcherShowing()) {
+                commitMruSwitch();
+                return WidgetAction.State.CONSUMED;
+            }
+            return WidgetAction.State.REJECTED;
+        }
+    }
+
+    private void selectAndReveal(TabData data) {
+        int ix = indexOf(model.getTabs(), data);
+        if (ix >= 0) {
+            selection.setSelectedIndex(ix);
+            ensureTabVisible(ix);
+        }
+    }
+
     public void onLeftRightButtonTimer(ActionEvent ae) {
         if (currentPressed != null) {
             switch (currentPressed) {
@@ -381,6 +665,10 @@ public class TabScene extends Scene {
             raggedEdges.resolveBounds(null, dummy);
             tabsContainer.resolveBounds(null, dummy);
             buttons.resolveBounds(null, dummy);
+            pinnedTabs.resolveBounds(null, dummy);
+            if (mruSwitcher != null) {
+                mruSwitcher.resolveBounds(null, dummy);
+            }
 //            buttons.getLayout().layout(buttons);
         }
 
@@ -395,12 +683,19 @@ public class TabScene extends Scene {
                 return;
             }
             Dimension max = getViewSize();
+            if (isMruSwitcherShowing()) {
+                mruSwitcher.resolveBounds(new Point(0, 0), new Rectangle(0, 0, max.width, max.height));
+            }
             Rectangle pref = tabsContainer.getBounds();
             if (pref == null || pref.width < 1) {
                 return;
             }
+            if (vertical) {
+                justifyVertical(max);
+                return;
+            }
             Rectangle r = buttons.getPreferredBounds();
-            int h = Math.max(r.height, pref.height) - 1;
+            int h = Math.max(r.height, Math.max(pref.height, rowsHeight())) - 1;
             h += appearance.glowWidth();
             r.x = max.width - r.width;
             r.height = h;
@@ -422,13 +717,179 @@ public class TabScene extends Scene {
                 pt = new Point(0, 0);
             }
             pt.y -= gw / 2;
-            tabsContainer.resolveBounds(pt, new Rectangle(0, 0, r.x,
+            // Pinned tabs sit to the left of the pan tray and never move
+            int pw = pinnedLayout.extent();
+            pinnedTabs.resolveBounds(new Point(0, pt.y + gw), new Rectangle(0, 0, pw,
+                    Math.max(0, h - gw)));
+            pt.x += pw;
+            tabsContainer.resolveBounds(pt, new Rectangle(0, 0, r.x - pw,
                     h));
-            panTray.resolveBounds(null, new Rectangle(0, 0, r.x,
+            panTray.resolveBounds(null, new Rectangle(0, 0, r.x - pw,
                     h));
-            raggedEdges.resolveBounds(new Point(0, gw / 2), new Rectangle(0, 0, r.x,
+            raggedEdges.resolveBounds(new Point(pw, gw / 2), new Rectangle(0, 0, r.x - pw,
                     h - gw));
         }
+
+        /**
+         * In a vertical strip, the buttons sit above the tabs at the
+         * trailing edge, and the tabs get the rest of the height.
+         */
+        private void justifyVertical(Dimension max) {
+            Rectangle r = buttons.getPreferredBounds();
+            buttons.resolveBounds(new Point(max.width - (r.x + r.width), -r.y), r);
+            Rectangle rest = new Rectangle(0, 0, max.width, Math.max(0, max.height - r.height));
+            tabsContainer.resolveBounds(new Point(0, r.height), rest);
+            panTray.resolveBounds(null, rest);
+            raggedEdges.resolveBounds(new Point(0, r.height), rest);
+        }
+    }
+
+    /**
+     * The width the tabs must fit into in compress mode.
+     *
+     * @return A width, or -1 if not compressing
+     */
+    private int compressibleWidth() {
+        return appearance.isCompressTabs() ? availableTabsWidth() : -1;
+    }
+
+    private int wrapWidth() {
+        return appearance.isMultiRow() ? availableTabsWidth() : -1;
+    }
+
+    private int availableTabsWidth() {
+        if (getView() == null) {
+            return -1;
+        }
+        Rectangle buttonBounds = buttons.getPreferredBounds();
+        return getViewSize().width - (buttonBounds == null ? 0 : buttonBounds.width)
+                - appearance.panTrayRightInset() - pinnedLayout.extent();
+    }
+
+    private final boolean vertical;
+    private final int verticalEdge;
+    // Widgets made before the height of the view is known
+    private static final int INITIAL_WINDOW = 32;
+    // Rows materialized beyond each end of the viewport, so small scrolls
+    // only move existing widgets
+    private static final int WINDOW_OVERSCAN = 4;
+    private int rowPitch;
+    private boolean trackingWindow;
+
+    /**
+     * The height of each row in a vertical strip, measured from the first
+     * tab widget once it can be.
+     *
+     * @return A height
+     */
+    int rowPitch() {
+        if (rowPitch <= 0 && getGraphics() != null) {
+            for (TabWidget w : mapper.widgets()) {
+                Rectangle r = w.getPreferredBounds();
+                if (r != null && r.height > 0) {
+                    return rowPitch = r.height;
+                }
+                break;
+            }
+        }
+        // Not measurable yet, so estimate from the font
+        return rowPitch > 0 ? rowPitch : Math.max(16, appearance.tabFont().getSize() * 2);
+    }
+
+    private int rowWidth() {
+        Rectangle r = panTray.getBounds();
+        return r == null ? 0 : r.width;
+    }
+
+    /**
+     * The height a vertical strip would have if every tab had a widget.
+     *
+     * @return A height
+     */
+    private int verticalExtent() {
+        return verticalEdge + (model.size() * rowPitch());
+    }
+
+    /**
+     * In a vertical strip, moves the window of tabs which have widgets to
+     * follow the viewport just before each layout, resizing it if the
+     * view's height changed, so that during a pan only the few rows
+     * scrolling into view are rebound to new tabs.
+     */
+    final class WindowTracker implements Scene.SceneListener {
+
+        @Override
+        public void sceneRepaint() {
+            // do nothing
+        }
+
+        @Override
+        public void sceneValidating() {
+            Rectangle tray = panTray.getBounds();
+            if (tray == null || tray.height <= 0) {
+                return;
+            }
+            int pitch = rowPitch();
+            // Use the preferred location, which is what an in-progress
+            // pan animation updates
+            Point loc = tabs.getPreferredLocation();
+            int pan = loc == null ? panTray.panPosition() : loc.y;
+            int capacity = ((tray.height + pitch - 1) / pitch) + (WINDOW_OVERSCAN * 2);
+            int first = Math.max(0, ((-pan - verticalEdge) / pitch) - WINDOW_OVERSCAN);
+            trackingWindow = true;
+            try {
+                boolean changed = mapper.setWindowCapacity(capacity);
+                changed |= mapper.setWindowStart(first);
+                if (changed) {
+                    resetHover();
+                    ensureSelectedWidget(getSelectedWidget());
+                    tabs.revalidate();
+                }
+            } finally {
+                trackingWindow = false;
+            }
+        }
+
+        @Override
+        public void sceneValidated() {
+            // do nothing
+        }
+    }
+
+    private final RowPacker rowPacker = new RowPacker();
+    private int singleRowHeight;
+    private final RaggedBorder raggedBorder;
+
+    /**
+     * The height the tabs need in multi-row mode.
+     *
+     * @return A height, or 0 if the tabs are in a single row
+     */
+    private int rowsHeight() {
+        int rows = edges.rowCount();
+        return rows > 1 ? rows * edges.rowPitch() : 0;
+    }
+
+    /**
+     * Called by the layout when tabs wrap onto more or fewer rows; the
+     * ragged edges which fade tabs panned partly out of view are hidden,
+     * since with rows nothing is ever out of view, and the displayer is
+     * asked to resize to the new height.
+     */
+    private void rowCountChanged(int rows) {
+        raggedBorder.setLeftVisible(rows <= 1).setRightVisible(rows <= 1);
+        raggedEdges.revalidate();
+        EventQueue.invokeLater(() -> {
+            updatePreferredBounds();
+            JComponent view = getView();
+            if (view != null) {
+                view.revalidate();
+            }
+            TabDisplayer disp = displayer();
+            if (disp != null) {
+                disp.revalidate();
+            }
+        });
     }
 
     public Dimension getViewSize() {
@@ -457,13 +918,150 @@ public class TabScene extends Scene {
         super.paintWidget();
     }
 
+    @Override
+    protected void paintChildren() {
+        long start = System.nanoTime();
+        EdtWatchdog.Bracket stall = EdtWatchdog.enter("TabScene.paint", model, null);
+        try {
+            super.paintChildren();
+        } finally {
+            EdtWatchdog.exit(stall);
+        }
+        Graphics2D g = getGraphics();
+        long elapsed = System.nanoTime() - start;
+        if (stats != null) {
+            stats.painted(elapsed, g == null ? null : g.getClipBounds());
+        }
+        if (heatmap != null && g != null) {
+            heatmap.framePainted(this, g, elapsed);
+        }
+    }
+
+    /**
+     * Get the statistics for this scene, starting to collect them if this
+     * is the first call; a scene nobody asks about, through JMX or a
+     * replay, does not time its layouts, paints and syncs.
+     *
+     * @return The statistics
+     */
+    TabSceneStats stats() {
+        if (stats == null) {
+            stats = new TabSceneStats();
+            stats.addCache(HOVER_CACHE, () -> hoverResolver == null ? 0 : hoverResolver.cacheHits(),
+                    () -> hoverResolver == null ? 0 : hoverResolver.cacheHits() + hoverResolver.searches());
+            stats.addCache("dragImage", dragImages::hits, dragImages::lookups);
+            appearance.renderCache().registerStats(stats);
+            addSceneListener(stats);
+            mapper.setStats(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Get the statistics if they are being collected; if not, start
+     * collecting them on the event thread and return null.  Safe to call
+     * from any thread.
+     *
+     * @return The statistics or null
+     */
+    TabSceneStats statsIfCollecting() {
+        TabSceneStats result = stats;
+        if (result == null) {
+            EventQueue.invokeLater(this::stats);
+        }
+        return result;
+    }
+
+    PaintHeatmap heatmap() {
+        return heatmap;
+    }
+
+    /**
+     * Register a JMX MBean exposing metrics for this scene, if not already
+     * registered.
+     */
+    void registerMetrics() {
+        if (metricsName == null) {
+            metricsName = TabSceneMetrics.register(this);
+        }
+    }
+
+    /**
+     * Stop listening to the model, which may outlive this scene, and
+     * release what is held on the scene's behalf; called when the UI is
+     * uninstalled.
+     */
+    void detach() {
+        unregisterMetrics();
+        stopTrace();
+        selection.removeChangeListener(selectionListener);
+        model.removeChangeListener(modelListener);
+        mapper.detach();
+        if (attention != null) {
+            attention.detach();
+            attention = null;
+        }
+        if (pinned != null) {
+            pinned.detach();
+            pinned = null;
+        }
+        if (groups != null) {
+            groups.detach();
+            groups = null;
+            mapper.setCollapsedGroups(null);
+        }
+        if (nameIndex != null) {
+            nameIndex.detach();
+            nameIndex = null;
+            quickSearch = null;
+        }
+        if (mru != null) {
+            mru.detach();
+            mru = null;
+        }
+    }
+
+    /**
+     * Finish recording events, if the scene is recording them.
+     */
+    void stopTrace() {
+        if (trace != null) {
+            trace.stop();
+        }
+    }
+
+    void unregisterMetrics() {
+        TabSceneMetrics.unregister(metricsName);
+        metricsName = null;
+    }
+
+    int tabCount() {
+        return model.size();
+    }
+
+    TabDataModel model() {
+        return model;
+    }
+
+    int widgetCount() {
+        return mapper.widgetCount();
+    }
+
+    TabWidgetMapper mapper() {
+        return mapper;
+    }
+
     @Override
     protected boolean isRepaintRequiredForRevalidating() {
         return true;
     }
 
     public void ensureTabVisible(int index) {
-        if (index >= 0 && index < model.size()) {
+        if (vertical && index >= 0 && index < model.size()) {
+            // The tab may not have a widget until it is scrolled to
+            int pitch = rowPitch();
+            panTray.ensureSpanVisible(verticalEdge + (index * pitch), pitch);
+        } else if (index >= 0 && index < model.size()) {
             TabData dta = model.getTab(index);
             TabWidget widget = widgetFor(dta);
             if (widget != null) {
@@ -473,7 +1071,17 @@ public class TabScene extends Scene {
     }
 
     public Image tabImage(int index) {
-        TabWidget wid = mapper.widget(index);
+        TabWidget found = mapper.widget(index);
+        if (found == null && index >= 0 && index < model.size()) {
+            // Not materialized in a vertical strip
+            ensureTabVisible(index);
+            validate();
+            found = mapper.widget(index);
+        }
+        if (found == null) {
+            return null;
+        }
+        TabWidget wid = found;
         Rectangle bds = wid.getBounds();
         if (bds == null) {
             bds = wid.getPreferredBounds();
@@ -484,30 +1092,382 @@ public class TabScene extends Scene {
                 bds = new Rectangle(new Point(0, 0), size);
             }
         }
-        BufferedImage img = new BufferedImage(bds.width, bds.height, BufferedImage.TYPE_INT_ARGB_PRE);
-        Graphics2D g = img.createGraphics();
-        try {
+        return dragImages.image(wid, bds.width, bds.height, g -> {
             wid.withTemporaryGraphics(g, () -> {
                 wid.paint();
             });
-        } finally {
-            g.dispose();
-        }
-        return img;
+        });
+    }
+
+    private void removeTabWidget(TabWidget w) {
+        // May be in the pinned region
+        w.removeFromParent();
+        dragImages.remove(w);
     }
 
     public int tabForCoordinate(Point p) {
-        for (TabWidget w : mapper) {
-            Point test = w.convertSceneToLocal(p);
-            if (w.isHitAt(test)) {
-                return mapper.indexOf(w);
+        TabWidget w = tabWidgetAt(p);
+        return w == null ? -1 : mapper.indexOf(w);
+    }
+
+    /**
+     * Whether a tab is within, or within half a screen of, the visible part
+     * of the pan tray.  Tabs which are not only note that they are stale
+     * when their data changes, and are synced when they near the viewport.
+     *
+     * @param index The tab index
+     * @return true if it is in view, or lazy syncing is off
+     */
+    boolean isTabInView(int index) {
+        if (!appearance.isLazySync() || index == selection.getSelectedIndex()) {
+            return true;
+        }
+        if (vertical) {
+            // Only tabs in or near the viewport have widgets
+            return true;
+        }
+        TabWidget w = mapper.widget(index);
+        Rectangle tray = panTray == null ? null : panTray.getBounds();
+        Rectangle bds = w == null ? null : w.getBounds();
+        Point loc = w == null ? null : w.getLocation();
+        if (tray == null || bds == null || loc == null) {
+            // Not laid out yet, so it needs its real size
+            return true;
+        }
+        // Use the preferred location, since during a pan that is updated
+        // before layout catches up with it
+        Point tabsLoc = tabs.getPreferredLocation();
+        if (tabsLoc == null) {
+            tabsLoc = tabs.getLocation();
+        }
+        int left = tabsLoc.x + loc.x + bds.x;
+        int margin = tray.width / 2;
+        return left + bds.width >= tray.x - margin
+                && left <= tray.x + tray.width + margin;
+    }
+
+    /**
+     * Syncs stale tabs which have been scrolled into view just before the
+     * scene is laid out; if their size changed, the scene loops back
+     * through validation before painting.
+     */
+    final class StaleSync implements Scene.SceneListener {
+
+        @Override
+        public void sceneRepaint() {
+            // do nothing
+        }
+
+        @Override
+        public void sceneValidating() {
+            if (mapper.staleCount() > 0) {
+                mapper.syncStale(TabScene.this::isTabInView);
             }
         }
-        return -1;
+
+        @Override
+        public void sceneValidated() {
+            // do nothing
+        }
+    }
+
+    /**
+     * Brackets scene validation for EdtWatchdog.
+     */
+    final class LayoutStallWatch implements Scene.SceneListener {
+
+        private EdtWatchdog.Bracket layout;
+
+        @Override
+        public void sceneRepaint() {
+            // do nothing
+        }
+
+        @Override
+        public void sceneValidating() {
+            // In case an exception skipped the last sceneValidated()
+            EdtWatchdog.exit(layout);
+            layout = EdtWatchdog.enter("TabScene.validate", model, null);
+        }
+
+        @Override
+        public void sceneValidated() {
+            EdtWatchdog.exit(layout);
+            layout = null;
+        }
+    }
+
+    /**
+     * Get the hit tester for tabs in the pan tray, creating it on the first
+     * pointer event or pan which needs one.
+     *
+     * @return The resolver
+     */
+    private HoverResolver hoverResolver() {
+        if (hoverResolver == null) {
+            hoverResolver = new HoverResolver(tabs, edges, mapper, vertical);
+        }
+        return hoverResolver;
+    }
+
+    private void resetHover() {
+        if (hoverResolver != null) {
+            hoverResolver.reset();
+        }
+    }
+
+    TabWidget tabWidgetAt(Point scenePoint) {
+        if (pinnedLayout.extent() > 0) {
+            Point local = pinnedTabs.convertSceneToLocal(scenePoint);
+            Rectangle bds = pinnedTabs.getBounds();
+            if (bds != null && bds.contains(local)) {
+                return (TabWidget) pinnedLayout.widgetAt(local.x);
+            }
+        }
+        return hoverResolver().tabAt(scenePoint);
+    }
+
+    /**
+     * Pin a tab, moving it to the region at the leading edge of the strip
+     * which never pans, where it is shown by its icon alone.  The tab's
+     * widget is moved there as it is, without syncing the other tabs.
+     * Pinning is not supported in a vertical strip.
+     *
+     * @param index The index of the tab
+     * @return true if the tab was not already pinned
+     */
+    public boolean pinTab(int index) {
+        return setPinned(index, true);
+    }
+
+    /**
+     * Return a pinned tab to the tabs which pan.
+     *
+     * @param index The index of the tab
+     * @return true if the tab was pinned
+     */
+    public boolean unpinTab(int index) {
+        return setPinned(index, false);
+    }
+
+    public boolean isTabPinned(int index) {
+        return pinned != null && index >= 0 && index < model.size() && pinned.contains(model.getTab(index));
+    }
+
+    public int pinnedTabCount() {
+        return pinned == null ? 0 : pinned.entries().size();
+    }
+
+    private boolean setPinned(int index, boolean pin) {
+        if (vertical || index < 0 || index >= model.size()) {
+            return false;
+        }
+        if (pinned == null) {
+            if (!pin) {
+                return false;
+            }
+            pinned = new TrackedTabs(model);
+        }
+        if (!pinned.set(model.getTab(index), index, pin)) {
+            return false;
+        }
+        placePinnedTabs();
+        validate();
+        return true;
+    }
+
+    /**
+     * Make the widgets of pinned tabs, and only those, children of the
+     * pinned region; since the mapper binds widgets to tabs by position,
+     * this is done after each sync, as well as on pinning and unpinning.
+     * Costs a pass over the pinned tabs, not all of them.
+     */
+    private void placePinnedTabs() {
+        if (pinned == null || (pinned.isEmpty() && pinnedTabs.getChildren().isEmpty())) {
+            return;
+        }
+        List<TrackedTabs.Entry> entries = pinned.entries();
+        for (Widget w : new ArrayList<>(pinnedTabs.getChildren())) {
+            int ix = mapper.indexOf(w);
+            if (ix < 0 || ix >= model.size() || !pinned.contains(model.getTab(ix))) {
+                place((TabWidget) w, false);
+            }
+        }
+        for (TrackedTabs.Entry e : entries) {
+            TabWidget w = mapper.widget(e.hint);
+            if (w != null && w.getParentWidget() == tabs) {
+                place(w, true);
+            }
+        }
+    }
+
+    /**
+     * Group tabs by a key computed from each one, such as the project or
+     * folder its file belongs to, so that groups can be collapsed.  Not
+     * supported in a vertical strip.
+     *
+     * @param keyFunction Computes the key of the group a tab belongs to,
+     * or null if it is in none; or null to stop grouping
+     */
+    public void setTabGrouping(Function<? super TabData, ?> keyFunction) {
+        if (vertical) {
+            return;
+        }
+        if (groups != null) {
+            groups.detach();
+        }
+        groups = keyFunction == null ? null : new TabGroups(model, keyFunction);
+        mapper.setCollapsedGroups(groups == null ? null : groups::collapsedKey);
+        mapper._sync();
+    }
+
+    /**
+     * Get the key of the group a tab belongs to.
+     *
+     * @param index The index of the tab
+     * @return A key, or null if not grouping or the tab is in no group
+     */
+    public Object groupOf(int index) {
+        return groups == null || index < 0 || index >= model.size()
+                ? null : groups.keyOf(model.getTab(index));
+    }
+
+    /**
+     * Collapse a group of tabs into a single widget at the position of
+     * its first tab; the other tabs in the group have no widgets until it
+     * is expanded, which clicking that widget does.
+     *
+     * @param key The group
+     * @return true if the group was not already collapsed
+     */
+    public boolean collapseGroup(Object key) {
+        return setGroupCollapsed(key, true);
+    }
+
+    public boolean expandGroup(Object key) {
+        return setGroupCollapsed(key, false);
+    }
+
+    public boolean isGroupCollapsed(Object key) {
+        return groups != null && groups.isCollapsed(key);
+    }
+
+    private boolean setGroupCollapsed(Object key, boolean collapsed) {
+        if (groups == null || !groups.setCollapsed(key, collapsed)) {
+            return false;
+        }
+        mapper._sync();
+        return true;
+    }
+
+    @Messages({
+        "# {0} - group name",
+        "# {1} - number of tabs",
+        "groupLabel=\u25B8 {0} ({1})"
+    })
+    private void labelGroups() {
+        if (groups == null || (!aggregatesShown && !groups.hasCollapsed())) {
+            return;
+        }
+        // Any widget of a tab in a collapsed group stands for the group
+        boolean any = false;
+        for (TabWidget w : mapper.widgets()) {
+            // A widget left over from before tabs were closed stands for
+            // no tab until the next sync, and must not be counted in a
+            // group as one
+            int ix = mapper.indexOf(w);
+            Object key = ix < 0 || ix >= model.size()
+                    ? null : groups.collapsedKey(model.getTab(ix));
+            w.setAggregate(key == null ? null : Bundle.groupLabel(key, groups.size(key)));
+            any |= key != null;
+        }
+        aggregatesShown = any;
+    }
+
+    private void place(TabWidget w, boolean pin) {
+        w.removeFromParent();
+        (pin ? pinnedTabs : tabs).addChild(w);
+        w.setPinned(pin);
+        // Pinned tabs keep their order, so are not dragged
+        if (moveAction != null) {
+            if (pin) {
+                w.getActions().removeAction(moveAction);
+            } else if (!w.getActions().getActions().contains(moveAction)) {
+                int at = w.getActions().getActions().indexOf(selectAction);
+                w.getActions().addAction(Math.max(0, at), moveAction);
+            }
+        }
+        resetHover();
     }
 
     protected void setAttentionHighlight(int tab, boolean highlight) {
-        // do nothing for now
+        if (tab < 0 || tab >= model.size()) {
+            return;
+        }
+        if (attention == null) {
+            if (!highlight) {
+                return;
+            }
+            attention = new AttentionTracker(model, this::attentionTick);
+        }
+        if (attention.set(model.getTab(tab), tab, highlight)) {
+            TabWidget w = mapper.widget(tab);
+            if (w != null) {
+                w.repaintForTick();
+            }
+            attentionTick();
+        }
+    }
+
+    /**
+     * Stop highlighting every tab, so this scene no longer holds the
+     * shared attention clock running.
+     */
+    void cancelAllAttention() {
+        if (attention != null && !attention.isEmpty()) {
+            attention.clear();
+            attentionTick();
+        }
+    }
+
+    boolean isRequestingAttention(TabWidget w) {
+        return attention != null && !attention.isEmpty() && attention.isFlagged(w.get());
+    }
+
+    /**
+     * Called by the shared attention clock: repaints flagged tabs which
+     * are on screen, and updates the counts of those scrolled off each
+     * edge, which the ragged border summarizes.
+     */
+    private void attentionTick() {
+        int before = 0;
+        int after = 0;
+        for (TrackedTabs.Entry e : attention.entries()) {
+            TabWidget w = mapper.widget(e.hint);
+            int dir;
+            if (w == null) {
+                // Outside the window of materialized tabs
+                dir = e.hint < mapper.windowStart() ? -1 : 1;
+            } else if (w.getBounds() == null) {
+                continue;
+            } else {
+                dir = panTray.directionOf(w);
+            }
+            if (dir < 0) {
+                before++;
+            } else if (dir > 0) {
+                after++;
+            } else {
+                w.repaintForTick();
+            }
+        }
+        if (raggedBorder.setAttention(before, after) || raggedBorder.hasAttention()) {
+            Rectangle r = raggedEdges.getBounds();
+            JComponent v = getView();
+            if (r != null && v != null) {
+                v.repaint(raggedEdges.convertLocalToScene(r));
+            }
+        }
     }
 
     public Rectangle getTabRect(int index, Rectangle destination) {
@@ -517,29 +1477,79 @@ public class TabScene extends Scene {
         if (index >= 0 && index < model.size()) {
             TabWidget w = mapper.widget(index);
             if (w != null) {
+                if (mapper.syncIfStale(w)) {
+                    validate();
+                }
                 Rectangle r = w.getBounds();
                 if (r != null) {
                     r = w.convertLocalToScene(r);
                     destination.setBounds(r);
                 }
+            } else if (vertical) {
+                // Where the row would be if it had a widget
+                int pitch = rowPitch();
+                destination.setBounds(tabs.convertLocalToScene(
+                        new Rectangle(0, verticalEdge + (index * pitch), rowWidth(), pitch)));
             }
         }
         return destination;
     }
 
+    /**
+     * Find the index a tab dropped at a point would be inserted at: that
+     * of the tab under the point if the point is in its leading half, the
+     * next one if in its trailing half, or the one after the last tab in a
+     * row if past its end.  Multiple rows are found by the point's vertical
+     * position, and a vertical strip is searched along its own axis.
+     *
+     * @param p A point in scene coordinates
+     * @return An index, or -1 if the point is not over the tabs
+     */
     public int dropIndexOfPoint(Point p) {
-        Rectangle tmp = new Rectangle();
-        for (int i = 0; i < model.size(); i++) {
-            getTabRect(i, tmp);
-            if (tmp.contains(p)) {
-                if (p.x < (tmp.x + tmp.width) / 2) {
-                    return i;
-                } else {
-                    return i + 1;
+        int size = model.size();
+        if (size == 0) {
+            return -1;
+        }
+        if (pinnedLayout.extent() > 0) {
+            Point local = pinnedTabs.convertSceneToLocal(p);
+            Rectangle bds = pinnedTabs.getBounds();
+            if (bds != null && bds.contains(local)) {
+                Widget w = pinnedLayout.widgetAt(local.x);
+                int ix = mapper.indexOf(w);
+                if (ix < 0) {
+                    return -1;
                 }
+                Rectangle r = w.getBounds();
+                Point loc = w.getLocation();
+                return local.x < loc.x + r.x + (r.width / 2) ? ix : ix + 1;
             }
         }
-        return -1;
+        Point local = tabs.convertSceneToLocal(p);
+        if (vertical) {
+            // Every row, with a widget or not, is a pitch high
+            int pitch = rowPitch();
+            int y = local.y - verticalEdge;
+            if (y < 0 || local.x < 0 || local.x >= rowWidth()) {
+                return -1;
+            }
+            int row = y / pitch;
+            if (row >= size) {
+                return -1;
+            }
+            return y - (row * pitch) < pitch / 2 ? row : row + 1;
+        }
+        List<TabWidget> widgets = mapper.widgets();
+        if (edges.size() != widgets.size()) {
+            // Not laid out since the last sync
+            return -1;
+        }
+        int slot = edges.insertionIndex(local.x, local.y);
+        if (slot < 0) {
+            return -1;
+        }
+        // Before the widget at the slot; a collapsed group's widget stands
+        // for all of its tabs, so this is after the whole preceding group
+        return slot < widgets.size() ? mapper.indexOf(widgets.get(slot)) : size;
     }
 
     private TabWidget getSelectedWidget() {
@@ -577,20 +1587,27 @@ public class TabScene extends Scene {
         }
     }
 
+    private final ChangeListener modelListener = this::modelChanged;
+
+    private void modelChanged(ChangeEvent ce) {
+        // Text changes can result in a tab bounds moving while the
+        // glow box remains around the tab's previous position
+        if (bulkEdit == null && getView() != null && getView().isShowing()) {
+            glow.revalidate();
+            glowLayer.revalidate();
+            glowLayer.getLayout().layout(glowLayer);
+            validate();
+            repaint();
+        }
+    }
+
     void init() {
         selectionListener.init();
+        if (mru != null) {
+            mru.touch(selectionListener.lastSelectedData(), selection.getSelectedIndex());
+        }
         selection.addChangeListener(selectionListener);
-        model.addChangeListener(ce -> {
-            // Text changes can result in a tab bounds moving while the
-            // glow box remains around the tab's previous position
-            if (getView() != null && getView().isShowing()) {
-                glow.revalidate();
-                glowLayer.revalidate();
-                glowLayer.getLayout().layout(glowLayer);
-                validate();
-                repaint();
-            }
-        });
+        model.addChangeListener(modelListener);
         sync();
         ensureSelectedWidget(getSelectedWidget());
         validate();
@@ -603,130 +1620,123 @@ public class TabScene extends Scene {
         NO_PREVIOUS_SELECTION
     }
 
-    private final SelectionChangeListener selectionListener = new SelectionChangeListener();
+    private final SelectionChangeListener selectionListener;
 
-    private static final long STARTUP = System.currentTimeMillis();
-
-    private static long elapsedSinceStartup() {
-        return System.currentTimeMillis() - STARTUP;
+    /**
+     * The number of selection changes which were actually processed.
+     *
+     * @return A count
+     */
+    public int appliedSelectionChanges() {
+        return selectionListener.scheduler().appliedCount();
     }
 
-    class SelectionChangeListener implements ChangeListener, Runnable {
-
-        private int lastIndex = -1;
-        private TabData lastSelectedData;
-        private long lastChanged = System.currentTimeMillis();
-        private RequestProcessor.Task delayedRefresh = RequestProcessor.getDefault().create(this);
-        private int changes;
-
-        void init() {
-            lastIndex = selection.getSelectedIndex();
-            if (lastIndex > 0 && lastIndex < model.size()) {
-                lastSelectedData = model.getTab(lastIndex);
-            } else {
-                lastSelectedData = null;
-            }
-        }
+    /**
+     * The number of selection changes which arrived while processing of
+     * an earlier one was pending, and were folded into it.
+     *
+     * @return A count
+     */
+    public int coalescedSelectionChanges() {
+        return selectionListener.scheduler().coalescedCount();
+    }
 
-        long elapsed() {
-            long now = System.currentTimeMillis();
-            long lc = lastChanged;
-            lastChanged = now;
-            return now - lc;
+    /**
+     * Called by the selection listener as soon as the selection model
+     * changes, before the change is processed.
+     *
+     * @return true if processing should wait until an open bulk edit is
+     * committed
+     */
+    boolean selectionChanging() {
+        if (trace != null) {
+            trace.selected(selection.getSelectedIndex());
+        }
+        if (bulkEdit != null) {
+            bulkEdit.selectionChanged = true;
+            return true;
         }
+        return false;
+    }
 
-        @Override
-        public void stateChanged(ChangeEvent e) {
-            int change = changes++;
-            if (change == 0 & elapsedSinceStartup() < 45000) {
-                LOG.log(Level.FINE, "Defer initial tab change 2 seconds");
-                task.schedule(2000);
-            } else if (elapsed() < 200) {
-                LOG.log(Level.FINER, "Many tab changes, reschedule in 500ms");
-                task.schedule(500);
-            } else {
-                LOG.log(Level.FINEST, "Run tab state change immediately");
-                run();
+    /**
+     * Called by the selection listener when nothing is selected any more.
+     *
+     * @param old The tab which was selected, or null
+     */
+    void selectionCleared(TabData old) {
+        if (old != null) {
+            TabWidget previouslySelected = widgetFor(old);
+            if (previouslySelected != null && previouslySelected.getState().isSelected()) {
+                previouslySelected.setState(previouslySelected.getState().deriveSelected(false));
+                selectionShown();
             }
         }
+    }
 
-        @Override
-        public void run() {
-            if (!EventQueue.isDispatchThread()) {
-                EventQueue.invokeLater(this);
-                return;
+    /**
+     * Called by the selection listener when a tab is selected: moves the
+     * selected state and glow from the old tab's widget to the new one's,
+     * reveals it and gives its component focus.
+     *
+     * @param old The tab which was selected, or null
+     * @param data The tab now selected
+     * @param index Its index
+     */
+    void selectionMoved(TabData old, TabData data, int index) {
+        if (mru != null) {
+            mru.touch(data, index);
+        }
+        if (groups != null && mapper.widget(index) == null && groups.collapsedKey(data) != null) {
+            // Selected from outside, e.g. the tab list popup
+            expandGroup(groups.keyOf(data));
+        }
+        if (old != null) {
+            TabWidget previouslySelected = widgetFor(old);
+            if (previouslySelected != null && previouslySelected.getState().isSelected()) {
+                LOG.log(Level.FINEST, "Remove dep from prev");
+                previouslySelected.removeDependency(glowDependency);
+                previouslySelected.setState(previouslySelected.getState().deriveSelected(false));
+                previouslySelected.revalidate();
             }
-            boolean changed = false;
-            int index = selection.getSelectedIndex();
-            long ela = elapsed();
-            LOG.log(Level.FINE, "{0}: SEL CHANGE -> index {1}", new Object[]{ela, index});
-            if (index < 0) {
-                TabData old = lastSelectedData;
-                LOG.log(Level.FINE, "Negative index from {0}", old);
-                lastSelectedData = null;
-                lastIndex = -1;
-                if (old != null) {
-                    TabWidget previouslySelected = widgetFor(old);
-                    if (previouslySelected != null && previouslySelected.getState().isSelected()) {
-                        previouslySelected.setState(previouslySelected.getState().deriveSelected(false));
-                        changed = true;
-                    }
-                }
-            } else {
-                TabData old = lastSelectedData;
-                TabData data = model.getTab(index);
-
-                LOG.log(Level.FINE, "{0}: select from {1} to {2}",
-                        new Object[]{ela, old == null ? -1 : model.indexOf(old), index});
-
-                lastSelectedData = data;
-                if (old != null) {
-                    TabWidget previouslySelected = widgetFor(old);
-                    if (previouslySelected != null && previouslySelected.getState().isSelected()) {
-                        LOG.log(Level.FINEST, "{0}:  remove dep from prev", ela);
-                        previouslySelected.removeDependency(glowDependency);
-                        previouslySelected.setState(previouslySelected.getState().deriveSelected(false));
-                        previouslySelected.revalidate();
-                        changed = true;
-                    }
-                }
-                TabWidget newlySelected = widgetFor(data);
-                LOG.log(Level.FINEST, "{0}: new sel {1}", new Object[]{ela, data});
-                if (newlySelected != null) {
-                    newlySelected.addDependency(glowDependency);
-                    newlySelected.setState(newlySelected.getState().deriveSelected(true));
-                    newlySelected.bringToFront();
-                    newlySelected.revalidate();
-                    panTray.ensureChildVisible(newlySelected);
-                    ensureSelectedWidget(newlySelected);
-                    changed = true;
-                    if (data != old) {
-                        Component comp = data.getComponent();
-                        if (comp != null) {
-                            EventQueue.invokeLater(() -> {
-                                if (comp.isDisplayable()) {
-                                    LOG.log(Level.FINEST, "{0}:  send focus to it", ela);
-                                    comp.requestFocusInWindow();
-                                } else {
-                                    LOG.log(Level.FINEST, ela + ":  not displayable, can't send focus");
-                                }
-                            });
+        }
+        TabWidget newlySelected = widgetFor(data);
+        LOG.log(Level.FINEST, "New sel {0}", data);
+        if (newlySelected != null) {
+            newlySelected.addDependency(glowDependency);
+            newlySelected.setState(newlySelected.getState().deriveSelected(true));
+            newlySelected.bringToFront();
+            newlySelected.revalidate();
+            panTray.ensureChildVisible(newlySelected);
+            ensureSelectedWidget(newlySelected);
+            if (data != old) {
+                Component comp = data.getComponent();
+                if (comp != null) {
+                    EventQueue.invokeLater(() -> {
+                        if (comp.isDisplayable()) {
+                            LOG.log(Level.FINEST, "Send focus to {0}", data);
+                            comp.requestFocusInWindow();
+                        } else {
+                            LOG.log(Level.FINEST, "{0} not displayable, can''t send focus", data);
                         }
-                    }
-                } else {
-                    LOG.log(Level.WARNING, "don''t have a widget for {0} with {1}",
-                            new Object[]{data, index});
-                    changed = true;
-                    revalidate();
+                    });
                 }
             }
-            lastIndex = index;
-            if (changed) {
-                glowLayer.revalidate();
-                glow.revalidate();
-                validate();
-            }
+        } else if (vertical) {
+            // Scrolling to it will materialize and select it
+            ensureTabVisible(index);
+        } else {
+            LOG.log(Level.WARNING, "don''t have a widget for {0} with {1}",
+                    new Object[]{data, index});
+            revalidate();
         }
+        selectionShown();
+    }
+
+    private void selectionShown() {
+        glowLayer.revalidate();
+        glow.revalidate();
+        validate();
     }
 
     final Dependency glowDependency = new Dependency() {
@@ -750,6 +1760,16 @@ public class TabScene extends Scene {
         if (view != null) {
             Rectangle r = view.getVisibleRect();
             r.height = Math.max(47, r.height); // XXX huh?
+            int rowsHeight = rowsHeight();
+            if (rowsHeight > 0) {
+                // Grow or shrink to fit the rows, rather than keeping
+                // whatever height we were last given
+                r.height = Math.max(singleRowHeight, rowsHeight + appearance.glowWidth() * 2);
+            } else if (appearance.isMultiRow() && singleRowHeight > 0) {
+                r.height = singleRowHeight;
+            } else {
+                singleRowHeight = r.height;
+            }
             double zoom = getZoomFactor();
             if (zoom != 1D) {
                 r.x *= zoom;
@@ -800,6 +1820,9 @@ public class TabScene extends Scene {
         @Override
         public void componentResized(ComponentEvent e) {
             updatePreferredBounds();
+            if (appearance.isCompressTabs() || vertical) {
+                tabs.revalidate();
+            }
         }
 
         @Override
@@ -828,6 +1851,7 @@ public class TabScene extends Scene {
         v.addHierarchyBoundsListener(vl);
         v.addHierarchyListener(vl);
         v.addComponentListener(vl);
+        configureFocusTraversal(v);
         JComponent result = v;
         if (appearance.isInternalDragDropSupportEnabled()) {
             result = new DndHack(result);
@@ -835,6 +1859,16 @@ public class TabScene extends Scene {
         return result;
     }
 
+    void configureFocusTraversal(JComponent v) {
+        if (appearance.isCtrlTabSwitching()) {
+            // Let Ctrl-Tab reach the MRU switcher rather than moving focus
+            v.setFocusTraversalKeys(KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS,
+                    Collections.<AWTKeyStroke>singleton(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, 0)));
+            v.setFocusTraversalKeys(KeyboardFocusManager.BACKWARD_TRAVERSAL_KEYS,
+                    Collections.<AWTKeyStroke>singleton(KeyStroke.getKeyStroke(KeyEvent.VK_TAB, InputEvent.SHIFT_DOWN_MASK)));
+        }
+    }
+
     void setTabFeatures(Set<TabFeatures> features) {
         this.features = features;
         buttons.updateFeatures(features);
@@ -875,6 +1909,88 @@ public class TabScene extends Scene {
         mapper.sync();
     }
 
+    private BulkEdit bulkEdit;
+
+    /**
+     * Begin a bulk edit of the tabs - closes, moves and inserts are
+     * collected and applied to the model as a single change when the
+     * returned object is committed, with widget sync, layout, glow and
+     * ensure-visible work suspended until then, so the result is one sync
+     * pass, one layout and one repaint however many tabs are affected.
+     * Must be called on the event thread, and only one bulk edit may be
+     * open at a time.
+     *
+     * @return A bulk edit
+     * @throws IllegalStateException if a bulk edit is already open
+     */
+    public BulkEdit beginBulkEdit() {
+        if (bulkEdit != null) {
+            throw new IllegalStateException("Bulk edit already in progress");
+        }
+        mapper.suspend();
+        return bulkEdit = new BulkEdit(this, model, selection, mapper);
+    }
+
+    /**
+     * Called when a bulk edit is committed or cancelled, once its changes
+     * have been applied to the model.
+     */
+    void bulkEditClosed() {
+        bulkEdit = null;
+    }
+
+    /**
+     * Called after a bulk edit is committed, to do the work it deferred
+     * once.
+     *
+     * @param edit The edit
+     * @param changed Whether the tabs changed
+     * @param relocated Whether the only change was a move whose widgets
+     * have already been placed and repainted
+     */
+    void bulkEditCommitted(BulkEdit edit, boolean changed, boolean relocated) {
+        if (edit.selectionChanged) {
+            selectionListener.scheduler().changed();
+        }
+        if (changed && !relocated) {
+            tabs.revalidate();
+        }
+        if (changed || edit.deferredWork) {
+            glow.revalidate();
+            glowLayer.revalidate();
+            if (relocated && !edit.deferredWork) {
+                // Only the moved tabs' widgets changed position, and
+                // they have been placed and repainted already
+                validate();
+            } else {
+                fullValidate();
+            }
+        }
+    }
+
+    /**
+     * After a bulk edit moved one tab in place, update the edge cache and
+     * move the widgets between its old and new indices.
+     *
+     * @param orig The old index
+     * @param target The new index
+     * @return false if the strip must be laid out again
+     */
+    boolean relocateMoved(int orig, int target) {
+        return edges.move(orig, target)
+                && relocate(Math.min(orig, target), Math.max(orig, target));
+    }
+
+    static int indexOf(List<TabData> all, TabData data) {
+        // TabData.equals() compares contents, so use identity
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i) == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private TabDisplayer displayer() {
         JComponent view = getView();
         if (view != null) {
@@ -907,7 +2023,11 @@ public class TabScene extends Scene {
         "closeTab=Close {0}",
         "# {0} - tab text",
         "closeAllBut=Close All But {0}",
-        "closeRight=Close Tabs to the Right"
+        "closeRight=Close Tabs to the Right",
+        "pinTab=Pin Tab",
+        "unpinTab=Unpin Tab",
+        "# {0} - group name",
+        "collapseGroup=Collapse {0}"
     })
     private void showDefaultPopup(Widget widget, WidgetMouseEvent evt) {
         TabWidget tw = (TabWidget) widget;
@@ -939,50 +2059,50 @@ public class TabScene extends Scene {
             @Override
             public void actionPerformed(ActionEvent e) {
                 TabData dt = tw.get();
-                model.setTabs(new TabData[]{dt});
-                selection.setSelectedIndex(0);
-                validate();
+                beginBulkEdit().closeAllBut(dt).select(dt).commit();
             }
         });
         if (!mapper.isLast(tw)) {
             popup.add(new AbstractAction(Bundle.closeRight()) {
                 @Override
                 public void actionPerformed(ActionEvent e) {
-                    List<TabData> all = new ArrayList<>(model.getTabs());
-                    int selIdx = selection.getSelectedIndex();
-                    TabData selected = selIdx >= 0 && selIdx < model.size()
-                            ? all.get(selIdx) : null;
-                    Rectangle bounds = widget.getBounds();
-                    if (bounds == null) {
-                        TabScene.this.validate();
-                        bounds = widget.getBounds();
-                        if (bounds == null) {
-                            // ???
-                            return;
-                        }
+                    // Go by model order rather than position, since tabs
+                    // may be on other rows or have no widget
+                    int ix = model.indexOf(tw.get());
+                    if (ix < 0) {
+                        return;
                     }
-                    bounds = tw.convertLocalToScene(widget.getBounds());
-                    boolean selectedWasRemoved = false;
-                    for (TabWidget w : mapper) {
-                        if (w == tw) {
-                            continue;
+                    BulkEdit edit = beginBulkEdit();
+                    boolean collected = false;
+                    try {
+                        for (int i = ix + 1; i < model.size(); i++) {
+                            edit.close(model.getTab(i));
                         }
-                        Rectangle test = w.convertLocalToScene(w.getBounds());
-                        if (test.x >= bounds.x + bounds.width) {
-                            TabData dt = w.get();
-                            selectedWasRemoved |= selected == dt;
-                            if (dt != null) {
-                                all.remove(dt);
-                            }
+                        collected = true;
+                    } finally {
+                        if (!collected) {
+                            edit.cancel();
                         }
                     }
-                    if (all.size() < model.size()) {
-                        model.setTabs(all.toArray(new TabData[0]));
-                        if (selectedWasRemoved) {
-                            selection.setSelectedIndex(all.size() - 1);
-                        }
-                        validate();
-                    }
+                    edit.commit();
+                }
+            });
+        }
+        Object group = groups == null ? null : groups.keyOf(tw.get());
+        if (group != null && !tw.isAggregate()) {
+            popup.add(new AbstractAction(Bundle.collapseGroup(group)) {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    collapseGroup(group);
+                }
+            });
+        }
+        if (!vertical) {
+            boolean isPinned = tw.isPinned();
+            popup.add(new AbstractAction(isPinned ? Bundle.unpinTab() : Bundle.pinTab()) {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    setPinned(mapper.indexOf(tw), !isPinned);
                 }
             });
         }
@@ -1008,35 +2128,62 @@ public class TabScene extends Scene {
     }
     PopupAction popupAction = new PopupAction();
 
+    // Actions hold no per-widget state between events, so every tab
+    // shares the same instances rather than allocating its own
+    private WidgetAction selectAction;
+    private WidgetAction moveAction;
+
+    private final WidgetAction maximizeAction = new WidgetAction.Adapter() {
+        @Override
+        public WidgetAction.State mouseClicked(Widget widget, WidgetMouseEvent event) {
+            if (!event.isPopupTrigger() && event.getClickCount() == 2) {
+                TabDisplayerUI ui = ui();
+                if (ui != null) {
+                    TabActionEvent evt = new TabActionEvent(getView(), TabDisplayer.COMMAND_MAXIMIZE,
+                            mapper.indexOf(widget));
+                    ui.postTabAction(evt);
+                }
+                return WidgetAction.State.CONSUMED;
+            }
+            return WidgetAction.State.REJECTED;
+        }
+    };
+
+    private final WidgetAction closeButtonAction = new WidgetAction.Adapter() {
+        @Override
+        public WidgetAction.State mouseClicked(Widget widget, WidgetMouseEvent event) {
+            if (!event.isPopupTrigger() && event.getClickCount() == 1
+                    && widget.getParentWidget() instanceof TabWidget) {
+                requestClose(((TabWidget) widget.getParentWidget()).get(), event);
+                return WidgetAction.State.CONSUMED;
+            }
+            return WidgetAction.State.REJECTED;
+        }
+    };
+
     TabWidget createTabWidget(TabData data, Function<TabWidget, TabData> func) {
-        TabWidget w = new TabWidget(this, data, appearance, this::kind, this::requestClose, func);
+        TabWidget w = new TabWidget(this, data, appearance, this::kind, closeButtonAction, func);
 //        w.closeButton.getActions().addAction(ActionFactory.createHoverAction(cbhp));
         w.closeButton.getActions().addAction(createWidgetHoverAction());
         w.getActions().addAction(0, popupAction);
-        w.getActions().addAction(ActionFactory.createHoverAction(hp));
-        w.getActions().addAction(0, ActionFactory.createSelectAction(sp));
-        if (appearance.isInternalDragDropSupportEnabled()) {
-            w.getActions().addAction(0, ActionFactory.createMoveAction(dmp, dmp));
-        }
-        w.getActions().addAction(0, new WidgetAction.Adapter() {
-            @Override
-            public WidgetAction.State mouseClicked(Widget widget, WidgetMouseEvent event) {
-                if (!event.isPopupTrigger() && event.getClickCount() == 2) {
-                    TabDisplayerUI ui = ui();
-                    if (ui != null) {
-                        TabActionEvent evt = new TabActionEvent(getView(), TabDisplayer.COMMAND_MAXIMIZE,
-                                mapper.indexOf(widget));
-                        ui.postTabAction(evt);
-                    }
-                    return WidgetAction.State.CONSUMED;
-                }
-                return WidgetAction.State.REJECTED;
+        if (selectAction == null) {
+            selectAction = ActionFactory.createSelectAction(sp);
+        }
+        w.getActions().addAction(0, selectAction);
+        // Widgets in a vertical strip stand for positions, not tabs, so
+        // cannot be dragged to reorder
+        if (appearance.isInternalDragDropSupportEnabled() && !vertical) {
+            if (moveAction == null) {
+                moveAction = ActionFactory.createMoveAction(dmp, dmp);
             }
-
-        });
+            w.getActions().addAction(0, moveAction);
+        }
+        w.getActions().addAction(0, maximizeAction);
         tabs.addChild(w);
         w.sync();
-        validate();
+        if (bulkEdit == null && !trackingWindow) {
+            validate();
+        }
         return w;
     }
 
@@ -1098,7 +2245,11 @@ public class TabScene extends Scene {
             return TabKind.DRAG_PROXY;
         }
         int size = model.size();
-        int index = model.indexOf(data.get());
+        TabData td = data.get();
+        int index = mapper.indexOf(data);
+        if (index < 0 || index >= size || model.getTab(index) != td) {
+            index = model.indexOf(td);
+        }
         if (index < 0) {
             return TabKind.DEFUNCT;
         }
@@ -1135,16 +2286,8 @@ public class TabScene extends Scene {
                         model.removeTab(ix);
                         break;
                     case TabDisplayer.COMMAND_CLOSE_ALL_BUT_THIS:
-                        int[] indices = new int[model.size() - 1];
-                        int curr = 0;
-                        for (int i = 0; i < model.size(); i++) {
-                            if (i == ix) {
-                                continue;
-                            }
-                            indices[curr++] = i;
-                        }
-                        model.removeTabs(indices);
-                        break;
+                        beginBulkEdit().closeAllBut(data).commit();
+                        return;
                 }
             }
             mapper.sync();
@@ -1177,6 +2320,10 @@ public class TabScene extends Scene {
                 return;
             }
             TabWidget tab = (TabWidget) widget;
+            if (tab.isAggregate() && groups != null) {
+                expandGroup(groups.keyOf(tab.get()));
+                return;
+            }
 
             int oldIndex = selection.getSelectedIndex();
             int newIndex = model.indexOf(tab.get());
@@ -1196,6 +2343,10 @@ public class TabScene extends Scene {
             this::isThresholdDistance, this::ensureWidgetSelected);
 
     private boolean isThresholdDistance(Point a, Point b) {
+        if (groups != null && groups.hasCollapsed()) {
+            // Widget positions are not tab indices while tabs are hidden
+            return false;
+        }
         int dist = Math.abs(a.x - b.x);
         return dist > appearance.dragThresholdDistance();
     }
@@ -1255,6 +2406,10 @@ public class TabScene extends Scene {
             int distance = (originalLocation.x - suggestedLocation.x);
             xlated.x -= distance;
             xlated.y = origDragPoint.y;
+            if (edges.rowCount() > 1) {
+                // Tabs can be dragged between rows
+                xlated.y -= originalLocation.y - suggestedLocation.y;
+            }
 
             return xlated;
         }
@@ -1284,8 +2439,7 @@ public class TabScene extends Scene {
             origWidget = tw;
             TabData data = tw.get();
             moving = new TabWidget(TabScene.this,
-                    data, appearance, TabScene.this::kind, (ignored, ign2) -> {
-                    }, ignored -> data);
+                    data, appearance, TabScene.this::kind, null, ignored -> data);
 
             moving.addDependency(this);
 
@@ -1351,7 +2505,7 @@ public class TabScene extends Scene {
                 targetBounds = targ.convertLocalToScene(targetBounds);
                 Rectangle dragBounds = dragLayer.convertSceneToLocal(targetBounds);
                 dragBounds.width /= 2;
-                if (target > 0) {
+                if (target > 0 && !isFirstInRow(target)) {
                     TabWidget prev = mapper.widget(target - 1);
                     Rectangle prevBounds = prev.getBounds();
                     dragBounds.width += prevBounds.width / 2;
@@ -1382,9 +2536,6 @@ public class TabScene extends Scene {
                 r.width = pb.width;
                 TabScene.this.getSceneAnimator().animatePreferredBounds(widget, r);
             }
-            if (changed) {
-                mapper.sync();
-            }
             done();
             glowLayer.setVisible(true);
             glowLayer.revalidate();
@@ -1392,12 +2543,51 @@ public class TabScene extends Scene {
             glow.repaint();
         }
 
+        private boolean isFirstInRow(int index) {
+            for (int row = 1; row < edges.rowCount(); row++) {
+                if (edges.startOfRow(row) == index) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Find the drop index in multi-row mode: the row under the center
+         * of the dragged tab, then the tab in that row.
+         */
+        private int findTargetInRows(Rectangle movingBounds) {
+            Point center = new Point(movingBounds.x + movingBounds.width / 2,
+                    movingBounds.y + movingBounds.height / 2);
+            center = tabs.convertSceneToLocal(dragLayer.convertLocalToScene(center));
+            int row = edges.rowAt(Math.max(0, center.y));
+            if (row < 0) {
+                row = edges.rowCount() - 1;
+            }
+            int first = edges.startOfRow(row);
+            int end = edges.endOfRow(row);
+            if (first < 0 || end <= first) {
+                return -1;
+            }
+            if (center.x < edges.start(first)) {
+                return first;
+            }
+            int ix = edges.indexAt(center.x, row * edges.rowPitch());
+            if (ix < 0) {
+                return end;
+            }
+            return center.x > edges.start(ix) + edges.extent(ix) / 2 ? ix + 1 : ix;
+        }
+
         private int findTargetWidget() {
             Rectangle movingBounds = moving.getPreferredBounds();
             if (movingBounds == null || lastLoc == null) {
                 return -1;
             }
             movingBounds.setLocation(lastLoc);
+            if (edges.rowCount() > 1) {
+                return findTargetInRows(movingBounds);
+            }
 
             int maxScore = Integer.MIN_VALUE;
             TabWidget target = null;
@@ -1446,24 +2636,15 @@ public class TabScene extends Scene {
         final int THRESHOLD = 15; // XXX should be based on screen/font size
 
         int distance() {
-            return lastLoc == null ? 0 : Math.abs(origDragPoint.x - lastLoc.x);
+            return lastLoc == null ? 0 : Math.abs(origDragPoint.x - lastLoc.x)
+                    + Math.abs(origDragPoint.y - lastLoc.y);
         }
 
         private boolean moveTabToNewIndex(TabData toMove, int index) {
             boolean changed = false;
             int origIndex = model.indexOf(toMove);
             if (origIndex != index) {
-                List<TabData> all = new ArrayList<>(model.getTabs());
-                all.remove(origIndex);
-                if (index > origIndex) {
-                    index--;
-                }
-                if (index < all.size()) {
-                    all.add(index, toMove);
-                } else {
-                    all.add(toMove);
-                }
-                model.setTabs(all.toArray(new TabData[all.size()]));
+                beginBulkEdit().move(toMove, index).commit();
                 changed = true;
             }
             return changed;
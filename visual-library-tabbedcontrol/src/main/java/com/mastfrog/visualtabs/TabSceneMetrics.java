@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Implementation of TabSceneMetricsMBean; holds the scene weakly so a
+ * registration which is never removed cannot leak it.
+ *
+ * @author Tim Boudreau
+ */
+final class TabSceneMetrics implements TabSceneMetricsMBean {
+
+    private static final Logger LOG = Logger.getLogger(TabSceneMetrics.class.getName());
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private final WeakReference<TabScene> scene;
+
+    private TabSceneMetrics(TabScene scene) {
+        this.scene = new WeakReference<>(scene);
+    }
+
+    static ObjectName register(TabScene scene) {
+        try {
+            ObjectName name = new ObjectName("com.mastfrog.visualtabs:type=TabScene,id="
+                    + IDS.incrementAndGet());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(new TabSceneMetrics(scene),
+                    TabSceneMetricsMBean.class), name);
+            return name;
+        } catch (JMException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Could not register tab metrics", ex);
+            return null;
+        }
+    }
+
+    static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Could not unregister tab metrics " + name, ex);
+        }
+    }
+
+    private TabSceneStats stats() {
+        TabScene s = scene.get();
+        return s == null ? null : s.statsIfCollecting();
+    }
+
+    @Override
+    public int getTabCount() {
+        TabScene s = scene.get();
+        return s == null ? 0 : s.tabCount();
+    }
+
+    @Override
+    public int getWidgetCount() {
+        TabScene s = scene.get();
+        return s == null ? 0 : s.widgetCount();
+    }
+
+    @Override
+    public int getLiveAnimationCount() {
+        return AnimationTimer.liveCount();
+    }
+
+    @Override
+    public long getLayoutCount() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.layouts();
+    }
+
+    @Override
+    public double getAverageLayoutMillis() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.averageLayoutMillis();
+    }
+
+    @Override
+    public double getMaxLayoutMillis() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.maxLayoutMillis();
+    }
+
+    @Override
+    public long getPaintCount() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.paints();
+    }
+
+    @Override
+    public double getAveragePaintMillis() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.averagePaintMillis();
+    }
+
+    @Override
+    public double getMaxPaintMillis() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.maxPaintMillis();
+    }
+
+    @Override
+    public int getSyncPassesPerMinute() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.syncsPerMinute();
+    }
+
+    @Override
+    public long getLastRepaintArea() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.lastRepaintArea();
+    }
+
+    @Override
+    public double getAverageRepaintArea() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.averageRepaintArea();
+    }
+
+    @Override
+    public double getHoverCacheHitRate() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.hitRate(TabScene.HOVER_CACHE);
+    }
+
+    @Override
+    public String[] getCacheHitRates() {
+        TabSceneStats st = stats();
+        return st == null ? new String[0] : st.cacheHitRates();
+    }
+
+    @Override
+    public double getMapperEdtMillis() {
+        TabSceneStats st = stats();
+        return st == null ? 0 : st.syncMillis();
+    }
+
+    @Override
+    public void reset() {
+        TabSceneStats st = stats();
+        if (st != null) {
+            // Called on a JMX thread; the counters are only written on the
+            // event thread, so reset them there rather than racing with it
+            EventQueue.invokeLater(st::reset);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+/**
+ * JMX view of the health of one tab control, registered under
+ * <code>com.mastfrog.visualtabs:type=TabScene,id=<i>n</i></code> while its
+ * UI is installed.  Timings and counts are only collected once something
+ * has read them, so the first read returns zeros.
+ *
+ * @author Tim Boudreau
+ */
+public interface TabSceneMetricsMBean {
+
+    int getTabCount();
+
+    int getWidgetCount();
+
+    int getLiveAnimationCount();
+
+    long getLayoutCount();
+
+    double getAverageLayoutMillis();
+
+    double getMaxLayoutMillis();
+
+    long getPaintCount();
+
+    double getAveragePaintMillis();
+
+    double getMaxPaintMillis();
+
+    int getSyncPassesPerMinute();
+
+    long getLastRepaintArea();
+
+    double getAverageRepaintArea();
+
+    double getHoverCacheHitRate();
+
+    String[] getCacheHitRates();
+
+    double getMapperEdtMillis();
+
+    void reset();
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.EventQueue;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.netbeans.api.visual.widget.Scene;
+
+/**
+ * Running counters for how much work a TabScene is doing - layout, paint
+ * and sync times, repainted area, and cache effectiveness. Written, and
+ * reset, on the event thread; read from whatever thread a JMX client
+ * uses, so values read together may be very slightly out of step with
+ * each other.
+ *
+ * @author Tim Boudreau
+ */
+final class TabSceneStats implements Scene.SceneListener {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private volatile long layouts;
+    private volatile long layoutNanos;
+    private volatile long maxLayoutNanos;
+    private long layoutStart;
+    private volatile long paints;
+    private volatile long paintNanos;
+    private volatile long maxPaintNanos;
+    private volatile long lastRepaintArea;
+    private volatile long totalRepaintArea;
+    private volatile long syncs;
+    private volatile long syncNanos;
+    private volatile long fullValidations;
+    private volatile long minuteStart = System.nanoTime();
+    private volatile int syncsThisMinute;
+    private volatile int syncsLastMinute;
+    private final List<Cache> caches = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void sceneRepaint() {
+        // do nothing
+    }
+
+    @Override
+    public void sceneValidating() {
+        layoutStart = System.nanoTime();
+    }
+
+    @Override
+    public void sceneValidated() {
+        if (layoutStart != 0) {
+            long elapsed = System.nanoTime() - layoutStart;
+            layoutStart = 0;
+            layouts++;
+            layoutNanos += elapsed;
+            if (elapsed > maxLayoutNanos) {
+                maxLayoutNanos = elapsed;
+            }
+        }
+    }
+
+    void painted(long elapsed, Rectangle clip) {
+        paints++;
+        paintNanos += elapsed;
+        if (elapsed > maxPaintNanos) {
+            maxPaintNanos = elapsed;
+        }
+        long area = clip == null ? 0 : (long) clip.width * clip.height;
+        lastRepaintArea = area;
+        totalRepaintArea += area;
+    }
+
+    /**
+     * Record time the event thread spent in TabWidgetMapper.
+     *
+     * @param elapsed Nanoseconds
+     * @param fullPass If true, this was a complete sync pass rather
+     * than a sync of a range of widgets
+     */
+    void synced(long elapsed, boolean fullPass) {
+        syncs++;
+        syncNanos += elapsed;
+        if (fullPass) {
+            rollMinute(System.nanoTime());
+            syncsThisMinute++;
+        }
+    }
+
+    /**
+     * Record that the scene relaid out and repainted everything after a
+     * change to the tabs.
+     */
+    void fullyValidated() {
+        fullValidations++;
+    }
+
+    private void rollMinute(long now) {
+        long since = now - minuteStart;
+        if (since >= MINUTE) {
+            syncsLastMinute = since >= MINUTE * 2 ? 0 : syncsThisMinute;
+            syncsThisMinute = 0;
+            minuteStart = now;
+        }
+    }
+
+    /**
+     * Register a cache whose hit rate should be reported.
+     *
+     * @param name A name for it
+     * @param hits Supplies the number of lookups answered from the cache
+     * @param lookups Supplies the total number of lookups
+     */
+    void addCache(String name, LongSupplier hits, LongSupplier lookups) {
+        caches.add(new Cache(name, hits, lookups));
+    }
+
+    long layouts() {
+        return layouts;
+    }
+
+    double averageLayoutMillis() {
+        return average(layoutNanos, layouts);
+    }
+
+    double maxLayoutMillis() {
+        return millis(maxLayoutNanos);
+    }
+
+    long paints() {
+        return paints;
+    }
+
+    double averagePaintMillis() {
+        return average(paintNanos, paints);
+    }
+
+    double maxPaintMillis() {
+        return millis(maxPaintNanos);
+    }
+
+    long lastRepaintArea() {
+        return lastRepaintArea;
+    }
+
+    double averageRepaintArea() {
+        long p = paints;
+        return p == 0 ? 0 : (double) totalRepaintArea / p;
+    }
+
+    long syncs() {
+        return syncs;
+    }
+
+    long fullValidations() {
+        return fullValidations;
+    }
+
+    double syncMillis() {
+        return millis(syncNanos);
+    }
+
+    int syncsPerMinute() {
+        long since = System.nanoTime() - minuteStart;
+        if (since >= MINUTE * 2) {
+            return 0;
+        } else if (since >= MINUTE) {
+            return syncsThisMinute;
+        }
+        return syncsLastMinute;
+    }
+
+    double hitRate(String name) {
+        for (Cache c : caches) {
+            if (c.name.equals(name)) {
+                return c.hitRate();
+            }
+        }
+        return 0;
+    }
+
+    String[] cacheHitRates() {
+        List<String> result = new ArrayList<>(caches.size());
+        for (Cache c : caches) {
+            result.add(c.toString());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Zero all counters; must be called on the event thread, which is the
+     * only one that writes them.
+     */
+    void reset() {
+        assert EventQueue.isDispatchThread() : "Not on event thread";
+        layouts = 0;
+        layoutNanos = 0;
+        maxLayoutNanos = 0;
+        paints = 0;
+        paintNanos = 0;
+        maxPaintNanos = 0;
+        lastRepaintArea = 0;
+        totalRepaintArea = 0;
+        syncs = 0;
+        syncNanos = 0;
+        fullValidations = 0;
+        syncsThisMinute = 0;
+        syncsLastMinute = 0;
+        minuteStart = System.nanoTime();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000D;
+    }
+
+    private static double average(long nanos, long count) {
+        return count == 0 ? 0 : millis(nanos) / count;
+    }
+
+    private static final class Cache {
+
+        private final String name;
+        private final LongSupplier hits;
+        private final LongSupplier lookups;
+
+        Cache(String name, LongSupplier hits, LongSupplier lookups) {
+            this.name = name;
+            this.hits = hits;
+            this.lookups = lookups;
+        }
+
+        double hitRate() {
+            long l = lookups.getAsLong();
+            return l == 0 ? 0 : (double) hits.getAsLong() / l;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f%% of %d", name, hitRate() * 100, lookups.getAsLong());
+        }
+    }
+}
@@ -21,6 +21,8 @@ package com.mastfrog.visualtabs;
 import com.mastfrog.visualtabs.TabsAppearance.TabIcon;
 import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
@@ -30,14 +32,15 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.util.Map;
-import java.util.function.BiConsumer;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import javax.swing.Icon;
 import javax.swing.JComponent;
 import org.netbeans.api.visual.action.WidgetAction;
-import org.netbeans.api.visual.action.WidgetAction.WidgetMouseEvent;
 import org.netbeans.api.visual.border.Border;
 import org.netbeans.api.visual.model.ObjectState;
 import org.netbeans.api.visual.widget.Scene;
@@ -57,12 +60,13 @@ final class TabWidget extends Widget implements Supplier<TabData> {
     final CloseButton closeButton;
     private final Function<TabWidget, TabData> func;
     private final TabIconBorder labelBorder = new TabIconBorder();
-    private final AnimationTimer hoverDecorationTimer
-            = new AnimationTimer(16, false, 24, true, this::onHoverAnimTick);
-    private final AnimationTimer selectDecorationTimer
-            = new AnimationTimer(16, false, 24, true, this::onSelectAnimTick);
+    private static final int DECORATION_TICKS = 16;
+    // Most tabs are never hovered or selected during a session, so the
+    // decoration timers are only created when first needed
+    private AnimationTimer hoverDecorationTimer;
+    private AnimationTimer selectDecorationTimer;
 
-    public TabWidget(Scene scene, TabData data, TabsAppearance appearance, Function<TabWidget, TabKind> kindFinder, BiConsumer<TabData, WidgetMouseEvent> onClose, Function<TabWidget, TabData> func) {
+    public TabWidget(Scene scene, TabData data, TabsAppearance appearance, Function<TabWidget, TabKind> kindFinder, WidgetAction closeAction, Function<TabWidget, TabData> func) {
         super(scene);
         this.appearance = appearance;
         this.kindFinder = kindFinder;
@@ -75,12 +79,77 @@ final class TabWidget extends Widget implements Supplier<TabData> {
         addChild(label);
         label.setFont(appearance.tabFont());
         label.syncText();
-        closeButton = new CloseButton(scene, onClose);
+        closeButton = new CloseButton(scene, closeAction);
         addChild(closeButton);
         lastKind = kindFinder.apply(this);
         updateBorder();
     }
 
+    /**
+     * Show only the icon, or the first letter of the name if there is no
+     * icon, and no close button, for a tab in the pinned region.
+     *
+     * @param pinned Whether the tab is pinned
+     */
+    void setPinned(boolean pinned) {
+        if (pinned == this.pinned) {
+            return;
+        }
+        this.pinned = pinned;
+        presentationChanged();
+    }
+
+    boolean isPinned() {
+        return pinned;
+    }
+
+    /**
+     * Make this widget stand for a collapsed group of tabs, showing the
+     * passed label instead of the tab's name, and no close button.
+     *
+     * @param label The label, or null if the widget shows its tab
+     */
+    void setAggregate(String label) {
+        if (Objects.equals(label, aggregate)) {
+            return;
+        }
+        this.aggregate = label;
+        presentationChanged();
+    }
+
+    boolean isAggregate() {
+        return aggregate != null;
+    }
+
+    private void presentationChanged() {
+        label.syncText(labelText());
+        closeButton.setVisible(showCloseButton());
+        paintGeneration++;
+        setPreferredBounds(null);
+        label.setPreferredBounds(null);
+        revalidate();
+        label.revalidate();
+    }
+
+    private boolean showCloseButton() {
+        return lastCloseable && !pinned && aggregate == null;
+    }
+
+    private String labelText() {
+        String text = lastText == null ? get().getText() : lastText;
+        if (aggregate != null) {
+            return aggregate;
+        }
+        if (!pinned) {
+            return text;
+        }
+        if (get().getIcon().getIconWidth() > 0) {
+            return "";
+        }
+        String plain = TabScene.deHtml(text);
+        return plain.isEmpty() ? "" : plain.substring(0, 1);
+    }
+
     boolean isActive() {
         return ((TabScene) getScene()).isActive();
     }
@@ -140,37 +209,157 @@ final class TabWidget extends Widget implements Supplier<TabData> {
         return appearance;
     }
 
+    TabKind kind() {
+        return lastKind;
+    }
+
+    private int paintGeneration;
+
+    /**
+     * Incremented whenever something that affects how the tab paints -
+     * text, icon, kind or state - changes, so cached images of it can be
+     * recognized as stale.
+     *
+     * @return The generation
+     */
+    int paintGeneration() {
+        return paintGeneration;
+    }
+
+    private Icon lastIcon;
     int lastIconWidth = -1;
     int lastIconHeight = -1;
+    private boolean stale;
+    // Where the mapper last found this widget
+    int indexHint = -1;
+
+    /**
+     * Note that the tab's data may have changed while it is out of view,
+     * deferring the sync until it is needed.
+     *
+     * @return true if it was not already stale
+     */
+    boolean markStale() {
+        boolean result = !stale;
+        stale = true;
+        return result;
+    }
 
-    boolean sync() {
-        boolean changed = label.syncText();
-        if (changed) {
-            label.revalidate(false);
-        }
-        TabData data = get();
-        setToolTipText(data.getTooltip());
-        TabKind newKind = kindFinder.apply(this);
-        if (newKind != lastKind) {
-            changed = true;
-            lastKind = newKind;
-            updateBorder();
+    boolean isStale() {
+        return stale;
+    }
+
+    private String lastText;
+    private boolean pinned;
+    private String aggregate;
+    private String lastTooltip;
+    private boolean lastCloseable = true;
+    private int lastChanges;
+
+    /**
+     * Compare the tab's data against the fingerprint recorded by the
+     * last sync, updating the fingerprint.
+     *
+     * @param data The data
+     * @param newKind The current kind
+     * @return A mask of TabAspect bits
+     */
+    private int diff(TabData data, TabKind newKind) {
+        int result = 0;
+        String text = data.getText();
+        if (text != lastText && (text == null || !text.equals(lastText))) {
+            result |= TabAspect.TEXT.bit();
+            lastText = text;
+        }
+        String tooltip = data.getTooltip();
+        if (tooltip != lastTooltip && (tooltip == null || !tooltip.equals(lastTooltip))) {
+            result |= TabAspect.TOOLTIP.bit();
+            lastTooltip = tooltip;
         }
-        closeButton.setVisible(newKind != TabKind.DRAG_PROXY && newKind != TabKind.DEFUNCT);
         Icon icon = data.getIcon();
+        if (icon != lastIcon) {
+            result |= TabAspect.ICON.bit();
+            lastIcon = icon;
+        }
         int iconWidth = icon.getIconWidth();
         int iconHeight = icon.getIconHeight();
+        if (iconWidth != lastIconWidth || iconHeight != lastIconHeight) {
+            result |= TabAspect.ICON_SIZE.bit();
+            lastIconWidth = iconWidth;
+            lastIconHeight = iconHeight;
+        }
+        if (newKind != lastKind) {
+            result |= TabAspect.KIND.bit();
+            lastKind = newKind;
+        }
+        boolean closeable = isCloseable(data, newKind);
+        if (closeable != lastCloseable) {
+            result |= TabAspect.CLOSEABLE.bit();
+            lastCloseable = closeable;
+        }
+        return result;
+    }
 
-        changed |= iconWidth != lastIconWidth || iconHeight != lastIconHeight;
-        lastIconWidth = iconWidth;
-        lastIconHeight = iconHeight;
-        if (changed) {
+    // TopComponent.PROP_CLOSING_DISABLED, which this module cannot depend on
+    private static final String PROP_CLOSING_DISABLED = "netbeans.winsys.tc.closing_disabled";
+
+    private static boolean isCloseable(TabData data, TabKind kind) {
+        if (kind == TabKind.DRAG_PROXY || kind == TabKind.DEFUNCT) {
+            return false;
+        }
+        Component c = data.getComponent();
+        return !(c instanceof JComponent) || !Boolean.TRUE.equals(
+                ((JComponent) c).getClientProperty(PROP_CLOSING_DISABLED));
+    }
+
+    /**
+     * The aspects which changed in the most recent sync.
+     *
+     * @return A set of aspects
+     */
+    Set<TabAspect> lastChanges() {
+        return TabAspect.of(lastChanges);
+    }
+
+    /**
+     * Update the widget from its data, doing only the invalidation the
+     * changed aspects require.
+     *
+     * @return true if the tab's size may have changed
+     */
+    boolean sync() {
+        stale = false;
+        TabData data = get();
+        int changes = lastChanges = diff(data, kindFinder.apply(this));
+        if (changes == 0) {
+            return false;
+        }
+        if (TabAspect.TEXT.in(changes) && label.syncText(labelText())) {
+            label.revalidate(false);
+        }
+        if (TabAspect.TOOLTIP.in(changes)) {
+            setToolTipText(lastTooltip);
+        }
+        if (TabAspect.KIND.in(changes)) {
+            updateBorder();
+        }
+        if (TabAspect.CLOSEABLE.in(changes)) {
+            closeButton.setVisible(showCloseButton());
+        }
+        boolean layout = TabAspect.affectsLayout(changes);
+        if (layout || TabAspect.ICON.in(changes) || TabAspect.TEXT.in(changes)) {
+            // Same size but different pixels still makes images stale
+            paintGeneration++;
+        }
+        if (layout) {
             setPreferredBounds(null);
             label.setPreferredBounds(null);
             revalidate();
             label.revalidate();
+        } else if (TabAspect.ICON.in(changes)) {
+            label.repaint();
         }
-        return changed;
+        return layout;
     }
 
     @Override
@@ -181,17 +370,35 @@ final class TabWidget extends Widget implements Supplier<TabData> {
     @Override
     protected void notifyStateChanged(ObjectState previousState, ObjectState state) {
         label.setState(state);
+        paintGeneration++;
+        if (!appearance.renderingProfile().animates()) {
+            // Paint the end state of any animation, once
+            stopHoverAnimationTimer();
+            stopSelectAnimationTimer();
+            lastHoverTick = lastSelectTick = DECORATION_TICKS;
+            lastHoverOf = lastSelectOf = DECORATION_TICKS;
+            repaint();
+            return;
+        }
         if (state.isSelected()) {
             stopHoverAnimationTimer();
             if (!previousState.isSelected()) {
                 lastSelectTick = 0;
-                lastSelectOf = selectDecorationTimer.ticks();
+                lastSelectOf = DECORATION_TICKS;
+                if (selectDecorationTimer == null) {
+                    selectDecorationTimer = new AnimationTimer(DECORATION_TICKS, false, 24, true,
+                            this::onSelectAnimTick);
+                }
                 selectDecorationTimer.start();
             }
         } else if (state.isHovered()) {
             if (!previousState.isHovered() && !previousState.isSelected()) {
                 lastHoverTick = 0;
-                lastHoverOf = hoverDecorationTimer.ticks();
+                lastHoverOf = DECORATION_TICKS;
+                if (hoverDecorationTimer == null) {
+                    hoverDecorationTimer = new AnimationTimer(DECORATION_TICKS, false, 24, true,
+                            this::onHoverAnimTick);
+                }
                 hoverDecorationTimer.start();
             }
         } else {
@@ -202,13 +409,17 @@ final class TabWidget extends Widget implements Supplier<TabData> {
     }
 
     private void stopHoverAnimationTimer() {
-        hoverDecorationTimer.stop();
-        lastHoverTick = hoverDecorationTimer.ticks();
+        if (hoverDecorationTimer != null) {
+            hoverDecorationTimer.stop();
+        }
+        lastHoverTick = DECORATION_TICKS;
     }
 
     private void stopSelectAnimationTimer() {
-        selectDecorationTimer.stop();
-        lastSelectTick = selectDecorationTimer.ticks();
+        if (selectDecorationTimer != null) {
+            selectDecorationTimer.stop();
+        }
+        lastSelectTick = DECORATION_TICKS;
     }
 
     @Override
@@ -245,7 +456,14 @@ final class TabWidget extends Widget implements Supplier<TabData> {
     protected void paintWidget() {
         Graphics2D g = getGraphics();
         super.paintBorder();
-        paintBackground(g);
+        PaintHeatmap heatmap = PaintHeatmap.of(getScene());
+        if (heatmap == null) {
+            paintBackground(g);
+        } else {
+            long start = System.nanoTime();
+            paintBackground(g);
+            heatmap.painted(this, PaintHeatmap.Part.BACKGROUND, System.nanoTime() - start);
+        }
         super.paintWidget();
     }
 
@@ -261,7 +479,11 @@ final class TabWidget extends Widget implements Supplier<TabData> {
         int lastOf = state.isSelected() ? lastSelectOf : lastHoverOf;
         p.paint(g, state, lastKind, r, lastTick, lastOf);
 
-        if (getState().isSelected()) {
+        if (!appearance.renderingProfile().paintsDecorations()) {
+            if (!state.isSelected()) {
+                paintLeftRightEdges(g, r);
+            }
+        } else if (getState().isSelected()) {
             p = appearance.selectDecorationPainter();
             Shape oldClip = g.getClip();
             g.setClip(r);
@@ -277,9 +499,23 @@ final class TabWidget extends Widget implements Supplier<TabData> {
         } else {
             paintLeftRightEdges(g, r);
         }
+        if (((TabScene) getScene()).isRequestingAttention(this)) {
+            paintAttention(g, r);
+        }
     }
 
-    private final Rectangle edgeRect = new Rectangle();
+    private void paintAttention(Graphics2D g, Rectangle r) {
+        float pulse = appearance.renderingProfile().animates() ? AttentionTracker.pulse() : 1;
+        Color color = appearance.attentionColor();
+        g.setColor(TabsAppearance.alpha((int) (96 * pulse), color));
+        g.fillRect(r.x, r.y, r.width, r.height);
+        g.setColor(TabsAppearance.alpha(255, color));
+        g.fillRect(r.x, r.y + r.height - 2, r.width, 2);
+    }
+
+    // Painting only happens on the event thread, so one scratch rectangle
+    // serves every tab
+    private static final Rectangle edgeRect = new Rectangle();
 
     public void paintLeftRightEdges(Graphics2D g, Rectangle r) {
         Stroke old = g.getStroke();
@@ -324,7 +560,7 @@ final class TabWidget extends Widget implements Supplier<TabData> {
         repaintForTick();
     }
 
-    private void repaintForTick() {
+    void repaintForTick() {
         Rectangle r = getBounds();
         if (r == null) {
             getScene().validate();
@@ -398,6 +634,17 @@ final class TabWidget extends Widget implements Supplier<TabData> {
 
         @Override
         public void paint(Graphics2D gr, Rectangle bounds) {
+            PaintHeatmap heatmap = PaintHeatmap.of(getScene());
+            if (heatmap == null) {
+                paintIcon(gr, bounds);
+            } else {
+                long start = System.nanoTime();
+                paintIcon(gr, bounds);
+                heatmap.painted(TabWidget.this, PaintHeatmap.Part.ICON, System.nanoTime() - start);
+            }
+        }
+
+        private void paintIcon(Graphics2D gr, Rectangle bounds) {
             // XXX scale icon if smaller than some percentage of
             // width / height
             Icon icon = get().getIcon();
@@ -414,13 +661,17 @@ final class TabWidget extends Widget implements Supplier<TabData> {
                 y += (bounds.height - h) / 2;
             }
             gr.translate(x, y);
-            if (scale != 1) {
-                gr.scale(scale, scale);
-            }
-            icon.paintIcon(null, gr, 0, 0);
-            if (scale != 1) {
-                gr.scale(1d / scale, 1d / scale);
-            }
+            int w = (int) Math.ceil(width * scale);
+            int ih = (int) Math.ceil(h);
+            double device = Math.max(1, gr.getTransform().getScaleX());
+            double total = scale * device;
+            // Scaled once per icon and scale, and shared across tab controls
+            BufferedImage img = appearance.renderCache().scaledIcon(icon, total,
+                    (int) Math.ceil(width * total), (int) Math.ceil(icon.getIconHeight() * total), g -> {
+                        g.scale(total, total);
+                        icon.paintIcon(null, g, 0, 0);
+                    });
+            gr.drawImage(img, 0, 0, w, ih, null);
             gr.translate(-x, -y);
         }
 
@@ -432,18 +683,11 @@ final class TabWidget extends Widget implements Supplier<TabData> {
 
     final class CloseButton extends Widget {
 
-        CloseButton(Scene scene, BiConsumer<TabData, WidgetMouseEvent> onClick) {
+        CloseButton(Scene scene, WidgetAction closeAction) {
             super(scene);
-            getActions().addAction(new WidgetAction.Adapter() {
-                @Override
-                public WidgetAction.State mouseClicked(Widget widget, WidgetAction.WidgetMouseEvent event) {
-                    if (!event.isPopupTrigger() && event.getClickCount() == 1) {
-                        onClick.accept(get(), event);
-                        return WidgetAction.State.CONSUMED;
-                    }
-                    return WidgetAction.State.REJECTED;
-                }
-            });
+            if (closeAction != null) {
+                getActions().addAction(closeAction);
+            }
         }
 
         @Override
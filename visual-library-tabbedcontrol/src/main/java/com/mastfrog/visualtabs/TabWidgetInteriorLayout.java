@@ -41,6 +41,14 @@ class TabWidgetInteriorLayout implements Layout {
 
     @Override
     public void layout(Widget widget) {
+        int totalWidth = Integer.MAX_VALUE;
+        if (widget.isPreferredBoundsSet()) {
+            totalWidth = widget.getPreferredBounds().width;
+        }
+        layout(widget, totalWidth, false);
+    }
+
+    private void layout(Widget widget, int totalWidth, boolean shrinkLabel) {
         int maxY = 0;
         int maxH = 0;
         for (Widget w : widget.getChildren()) {
@@ -53,9 +61,16 @@ class TabWidgetInteriorLayout implements Layout {
         }
         int pos = widget.getBorder().getInsets().left;
         int top = widget.getBorder().getInsets().top;
-        int totalWidth = Integer.MAX_VALUE;
-        if (widget.isPreferredBoundsSet()) {
-            totalWidth = widget.getPreferredBounds().width;
+        int overflow = 0;
+        if (shrinkLabel) {
+            // The tab was compressed, so take the space out of the label
+            // rather than clipping off the close button
+            int needed = pos + pad;
+            for (Widget w : widget.getChildren()) {
+                Rectangle r = w.getPreferredBounds();
+                needed += r == null ? 0 : r.width;
+            }
+            overflow = Math.max(0, needed - totalWidth);
         }
         List<Widget> kids = new ArrayList<>(widget.getChildren());
         if (!((TabWidget) widget).closeButton.isEnabled()) {
@@ -76,6 +91,9 @@ class TabWidgetInteriorLayout implements Layout {
             if (!it.hasNext()) {
                 preferredBounds.width += pad;
             }
+            if (overflow > 0 && w instanceof DynamicLabelWidget) {
+                preferredBounds.width = Math.max(0, preferredBounds.width - overflow);
+            }
             if (pos + preferredBounds.width > totalWidth) {
                 int rem = totalWidth - pos;
                 preferredBounds.width = Math.max(0, rem);
@@ -92,6 +110,13 @@ class TabWidgetInteriorLayout implements Layout {
 
     @Override
     public void justify(Widget widget) {
-        layout(widget);
+        Rectangle bounds = widget.getBounds();
+        int totalWidth = widget.isPreferredBoundsSet()
+                ? widget.getPreferredBounds().width : Integer.MAX_VALUE;
+        boolean compressed = bounds != null && bounds.width < widget.getPreferredBounds().width;
+        if (compressed) {
+            totalWidth = Math.min(totalWidth, bounds.width);
+        }
+        layout(widget, totalWidth, compressed);
     }
 }
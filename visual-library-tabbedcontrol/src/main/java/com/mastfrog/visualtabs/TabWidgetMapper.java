@@ -21,12 +21,16 @@ package com.mastfrog.visualtabs;
 import java.awt.Component;
 import java.awt.EventQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.SingleSelectionModel;
@@ -56,11 +60,29 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
     private List<TabData> modelSnapshot = new ArrayList<>();
     private final Consumer<TabWidget> remover;
     private final Runnable onChange;
+    private TabSceneStats stats;
+    private final IntPredicate inView;
+    private int staleCount;
+    // In windowed mode, widgets.get(i) is the widget for the tab at
+    // windowStart + i, and tabs outside the window have no widget
+    private int windowStart;
+    private int windowCapacity = -1;
+    // When tabs in collapsed groups are hidden, widgets.get(i) is the
+    // widget for the tab at slotToModel[i], and hidden tabs have no widget;
+    // both arrays are null when every tab has a widget
+    private Function<TabData, Object> collapsedKey;
+    private int[] slotToModel;
+    private int[] modelToSlot;
+    private TabEventTrace trace;
+    // The last model event, for stall reports
+    private ListDataEvent lastEvent;
 
     @SuppressWarnings("LeakingThisInConstructor")
     public TabWidgetMapper(BiFunction<TabData, Function<TabWidget, TabData>, TabWidget> factory,
-            TabDataModel model, SingleSelectionModel sel, Consumer<TabWidget> remover, Runnable onChange) {
+            TabDataModel model, SingleSelectionModel sel, Consumer<TabWidget> remover, Runnable onChange,
+            IntPredicate inView) {
         this.factory = factory;
+        this.inView = inView;
         this.model = model;
         this.sel = sel;
         this.remover = remover;
@@ -69,33 +91,315 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
         this.onChange = onChange;
     }
 
+    /**
+     * Start reporting the time taken by each sync pass.
+     *
+     * @param stats The statistics
+     */
+    void setStats(TabSceneStats stats) {
+        this.stats = stats;
+    }
+
+    private void synced(long start, boolean fullPass) {
+        if (stats != null) {
+            stats.synced(System.nanoTime() - start, fullPass);
+        }
+    }
+
+    void detach() {
+        model.removeComplexListDataListener(this);
+    }
+
+    /**
+     * Record model events, including the ones caused by moving tabs,
+     * which this mapper otherwise ignores.
+     *
+     * @param trace A trace or null
+     */
+    void setTrace(TabEventTrace trace) {
+        this.trace = trace;
+    }
+
     public Iterator<TabWidget> iterator() {
         return new ArrayList<>(widgets).iterator();
     }
 
     public int indexOf(Widget widget) {
-        return widgets.indexOf(widget);
+        return widget instanceof TabWidget ? indexOfWidget((TabWidget) widget) : -1;
     }
 
-    public TabWidget get(TabData data) {
-        int ix = modelSnapshot.indexOf(data);
-        if (ix >= 0 && ix < widgets.size()) {
-            return widgets.get(ix);
+    /**
+     * Find a widget's index, checking the index it was last found at
+     * before searching, so a sync pass over the widgets, which looks up
+     * each one's data, does not become quadratic.
+     */
+    private int indexOfWidget(TabWidget widget) {
+        int hint = widget.indexHint;
+        if (hint >= 0 && hint < widgets.size() && widgets.get(hint) == widget) {
+            return modelIndex(windowStart + hint);
         }
-        return null;
+        int local = widget.indexHint = widgets.indexOf(widget);
+        return local < 0 ? -1 : modelIndex(windowStart + local);
+    }
+
+    private int modelIndex(int slot) {
+        if (slotToModel == null) {
+            return slot;
+        }
+        return slot < 0 || slot >= slotToModel.length ? -1 : slotToModel[slot];
+    }
+
+    private int slotOf(int index) {
+        if (modelToSlot == null) {
+            return index;
+        }
+        return index < 0 || index >= modelToSlot.length ? -1 : modelToSlot[index];
+    }
+
+    private int slotCount() {
+        return slotToModel == null ? modelSnapshot.size() : slotToModel.length;
+    }
+
+    /**
+     * Only make widgets for the first tab of each collapsed group, which
+     * stands for the group, and for tabs in no collapsed group; takes
+     * effect on the next sync.  Not supported in windowed mode.
+     *
+     * @param collapsedKey Returns the key of the collapsed group a tab is
+     * in, or null; or null to make a widget for every tab
+     */
+    void setCollapsedGroups(Function<TabData, Object> collapsedKey) {
+        this.collapsedKey = collapsedKey;
+    }
+
+    /**
+     * Compute which tabs get widgets, in one pass over the model.
+     */
+    private void rebuildSlots(List<TabData> snapshot) {
+        slotToModel = modelToSlot = null;
+        if (collapsedKey == null || windowCapacity >= 0) {
+            return;
+        }
+        int sz = snapshot.size();
+        int[] toModel = null;
+        int[] toSlot = null;
+        Set<Object> seen = null;
+        int slot = 0;
+        for (int i = 0; i < sz; i++) {
+            Object key = collapsedKey.apply(snapshot.get(i));
+            boolean hidden = false;
+            if (key != null) {
+                if (seen == null) {
+                    seen = new HashSet<>();
+                }
+                hidden = !seen.add(key);
+            }
+            if (hidden && toModel == null) {
+                toModel = new int[sz];
+                toSlot = new int[sz];
+                for (int j = 0; j < i; j++) {
+                    toModel[j] = toSlot[j] = j;
+                }
+            }
+            if (toModel != null) {
+                toSlot[i] = hidden ? -1 : slot;
+                if (!hidden) {
+                    toModel[slot] = i;
+                }
+            }
+            if (!hidden) {
+                slot++;
+            }
+        }
+        if (toModel != null) {
+            slotToModel = Arrays.copyOf(toModel, slot);
+            modelToSlot = toSlot;
+        }
+    }
+
+    public TabWidget get(TabData data) {
+        return widget(modelSnapshot.indexOf(data));
     }
 
     public TabWidget widget(int index) {
-        if (index < widgets.size() && index >= 0) {
-            return widgets.get(index);
+        int slot = slotOf(index);
+        if (slot < 0) {
+            return null;
+        }
+        int local = slot - windowStart;
+        if (local < widgets.size() && local >= 0) {
+            return widgets.get(local);
         }
         return null;
     }
 
+    /**
+     * Make widgets only for a window of at most the passed number of
+     * consecutive tabs, which are recycled for other tabs as the window
+     * moves, so that scrolling through thousands of tabs costs the same as
+     * scrolling through a screenful.
+     *
+     * @param capacity The maximum number of widgets, or -1 for one widget
+     * per tab
+     * @return true if widgets were created or removed
+     */
+    boolean setWindowCapacity(int capacity) {
+        if (capacity == windowCapacity) {
+            return false;
+        }
+        windowCapacity = capacity;
+        if (capacity < 0) {
+            windowStart = 0;
+        }
+        if (suspended > 0) {
+            syncWhileSuspended = true;
+            return false;
+        }
+        if (modelSnapshot.isEmpty() && widgets.isEmpty()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            doSync();
+        } finally {
+            synced(start, true);
+        }
+        return true;
+    }
+
+    boolean isWindowed() {
+        return windowCapacity >= 0;
+    }
+
+    /**
+     * The index of the first tab which has a widget.
+     *
+     * @return An index
+     */
+    int windowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Move the window of tabs which have widgets.  Widgets which remain in
+     * the window keep their state; those for tabs which left it are
+     * rotated to the other end and rebound to the tabs entering it.
+     *
+     * @param start The index of the first tab to materialize
+     * @return true if the window moved
+     */
+    boolean setWindowStart(int start) {
+        if (windowCapacity < 0) {
+            return false;
+        }
+        int count = widgets.size();
+        start = Math.max(0, Math.min(start, modelSnapshot.size() - count));
+        int delta = start - windowStart;
+        if (delta == 0) {
+            return false;
+        }
+        windowStart = start;
+        int first;
+        int last;
+        if (Math.abs(delta) >= count) {
+            first = 0;
+            last = count;
+        } else {
+            Collections.rotate(widgets, -delta);
+            first = delta > 0 ? count - delta : 0;
+            last = delta > 0 ? count : -delta;
+        }
+        for (int i = 0; i < count; i++) {
+            widgets.get(i).indexHint = i;
+        }
+        int selected = sel.getSelectedIndex();
+        for (int i = first; i < last; i++) {
+            TabWidget widget = widgets.get(i);
+            if (widget.isStale()) {
+                staleCount--;
+            }
+            widget.sync();
+            boolean isSelected = windowStart + i == selected;
+            if (widget.getState().isSelected() != isSelected || widget.getState().isWidgetHovered()) {
+                widget.setState(widget.getState().deriveSelected(isSelected).deriveWidgetHovered(false));
+            }
+        }
+        return true;
+    }
+
     public int size() {
         return modelSnapshot.size();
     }
 
+    /**
+     * Live, unmodifiable view of the widgets in model order.
+     *
+     * @return A list
+     */
+    List<TabWidget> widgets() {
+        return Collections.unmodifiableList(widgets);
+    }
+
+    private boolean moving;
+
+    /**
+     * Move one tab, relocating its widget rather than resyncing every
+     * widget. The model is reordered with a single setTabs(), so other
+     * listeners see one event describing the move, and no component is
+     * ever removed from the container; the event the mapper receives for
+     * it is ignored, since its own state has already been updated.  Only
+     * the widgets between the old and new indices are resynced.
+     * <p>
+     * TabDataModel has no move operation; replacing the tabs in the range
+     * one at a time with setTab() would fire an event per tab, and pass
+     * through states where one tab is missing and another appears twice,
+     * which the tabbed container treats as the selected component being
+     * replaced.
+     *
+     * @param from The current index
+     * @param to The index the tab should have afterwards
+     * @return true if anything was moved
+     */
+    boolean move(int from, int to) {
+        if (windowCapacity >= 0 || slotToModel != null) {
+            // Widgets are bound to positions, not tabs
+            return false;
+        }
+        int size = widgets.size();
+        if (from == to || from < 0 || to < 0 || from >= size || to >= size
+                || size != model.size() || modelSnapshot.size() != size) {
+            return false;
+        }
+        TabData[] all = model.getTabs().toArray(new TabData[size]);
+        TabData data = all[from];
+        if (from < to) {
+            System.arraycopy(all, from + 1, all, from, to - from);
+        } else {
+            System.arraycopy(all, to, all, to + 1, from - to);
+        }
+        all[to] = data;
+        int selected = sel.getSelectedIndex();
+        widgets.add(to, widgets.remove(from));
+        modelSnapshot.add(to, modelSnapshot.remove(from));
+        moving = true;
+        try {
+            model.setTabs(all);
+        } finally {
+            moving = false;
+        }
+        // The selection model only adjusts for additions and removals,
+        // so its index now points at whichever tab took the old position
+        if (selected == from) {
+            sel.setSelectedIndex(to);
+        } else if (from < to && selected > from && selected <= to) {
+            sel.setSelectedIndex(selected - 1);
+        } else if (to < from && selected >= to && selected < from) {
+            sel.setSelectedIndex(selected + 1);
+        }
+        syncRange(Math.min(from, to), Math.max(from, to));
+        return true;
+    }
+
     public void forEachWidget(Consumer<? super TabWidget> c) {
         widgets.forEach(c);
     }
@@ -105,7 +409,7 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
     }
 
     public TabData get(TabWidget widget) {
-        int ix = widgets.indexOf(widget);
+        int ix = indexOfWidget(widget);
         if (ix < 0 || ix >= model.size()) {
             return new TabData(this, null, "defunct", "defunct");
         }
@@ -113,20 +417,79 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
     }
 
     public boolean isLast(TabWidget widget) {
-        return widgets.size() > 0 && widgets.get(widgets.size() - 1) == widget;
+        return widget != null && widget(modelIndex(slotCount() - 1)) == widget;
     }
 
     public boolean isFirst(TabWidget widget) {
-        return widgets.size() > 0 && widgets.get(0) == widget;
+        return widget != null && widget(0) == widget;
     }
 
     public boolean isOnly(TabWidget widget) {
-        return widgets.size() == 1 && widgets.get(0) == widget;
+        return slotCount() == 1 && widget(0) == widget;
     }
 
     volatile boolean enqueued = false;
+    private int suspended;
+    private boolean syncWhileSuspended;
+
+    /**
+     * Suspend sync passes (used while a bulk edit is applied), so that
+     * model events received in the meantime only record that a sync is
+     * needed.
+     */
+    void suspend() {
+        suspended++;
+    }
+
+    /**
+     * Resume sync passes; if this balances the outermost call to
+     * suspend() and anything changed while suspended, performs exactly one
+     * synchronous sync pass.
+     *
+     * @return true if a sync pass was performed
+     */
+    boolean resume() {
+        if (suspended == 0 || --suspended > 0) {
+            return false;
+        }
+        boolean full = syncWhileSuspended;
+        if (!full && !rangeSync.hasPending()) {
+            return false;
+        }
+        syncWhileSuspended = false;
+        long start = System.nanoTime();
+        EdtWatchdog.Bracket stall = EdtWatchdog.enter("TabWidgetMapper.resume", model, lastEvent);
+        try {
+            boolean changed = full;
+            try {
+                if (full) {
+                    doSync();
+                }
+                // A full sync leaves updating the widgets' contents to a
+                // range pass; run it here, as part of the same pass,
+                // rather than as a second one on a later event
+                changed |= rangeSync.syncPending();
+            } finally {
+                synced(start, full);
+            }
+            if (changed && onChange != null) {
+                onChange.run();
+            }
+        } finally {
+            EdtWatchdog.exit(stall);
+        }
+        return true;
+    }
+
+    boolean isSuspended() {
+        return suspended > 0;
+    }
 
     void sync() {
+        if (suspended > 0) {
+            syncWhileSuspended = true;
+            return;
+        }
         // We have had some races that result in every tab getting the
         // same name, so try to untangle that and double-plus ensure we
         // only update on the event thread.  This should get us out of the
@@ -145,28 +508,59 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
 
     void _sync() {
         enqueued = false;
+        if (suspended > 0) {
+            syncWhileSuspended = true;
+            return;
+        }
+        long start = System.nanoTime();
+        EdtWatchdog.Bracket stall = EdtWatchdog.enter("TabWidgetMapper._sync", model, lastEvent);
+        try {
+            try {
+                doSync();
+            } finally {
+                synced(start, true);
+            }
+            if (onChange != null) { // Null if called in constructor
+                onChange.run();
+            }
+        } finally {
+            EdtWatchdog.exit(stall);
+        }
+    }
+
+    private void doSync() {
+        if (windowCapacity >= 0) {
+            doWindowedSync();
+            return;
+        }
         boolean wasEmpty = modelSnapshot.isEmpty();
         int oldSelection = sel.getSelectedIndex();
-        TabWidget oldSelectedWidget = oldSelection >= 0 && oldSelection < widgets.size()
-                ? widgets.get(oldSelection) : null;
-        TabData oldData = oldSelectedWidget == null ? null : modelSnapshot.get(oldSelection);
-        int sz = model.size();
-        boolean modelSizeChanged = sz < widgets.size();
+        TabData oldData = oldSelection >= 0 && oldSelection < modelSnapshot.size()
+                ? modelSnapshot.get(oldSelection) : null;
+        // May be null if the selected tab is hidden in a collapsed group
+        TabWidget oldSelectedWidget = oldData == null ? null : widget(oldSelection);
         List<TabData> newSnapshot = new ArrayList<>(model.getTabs());
+        rebuildSlots(newSnapshot);
+        int sz = slotToModel == null ? newSnapshot.size() : slotToModel.length;
+        boolean modelSizeChanged = sz < widgets.size();
         LOG.log(Level.FINE, "Sync model:tabs {0} size {1} old sel {2}",
                 new Object[]{modelSizeChanged ? "size-change" : "no-size-change",
                     sz, oldSelection});
 
         if (modelSizeChanged) {
             for (int i = sz; i < widgets.size(); i++) {
-                remover.accept(widgets.get(i));
+                TabWidget removed = widgets.get(i);
+                if (removed.isStale()) {
+                    staleCount--;
+                }
+                remover.accept(removed);
             }
             LOG.log(Level.FINER, "remove range {0} - {1}", new Object[]{sz, widgets.size()});
             widgets.removeRange(sz, widgets.size());
         } else if (sz > widgets.size()) {
             modelSizeChanged = true;
             for (int i = widgets.size(); i < sz; i++) {
-                TabWidget widge = factory.apply(model.getTab(i), this::get);
+                TabWidget widge = factory.apply(newSnapshot.get(modelIndex(i)), this::get);
                 widgets.add(widge);
                 List<TabData> oldSnapshot = modelSnapshot;
                 // Let the widget sync to new data
@@ -174,17 +568,17 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
                 widge.sync();
                 if (widge.get() == oldData) {
                     widge.setState(widge.getState().deriveSelected(true));
-                } else if (wasEmpty && i == oldSelection) {
+                } else if (wasEmpty && modelIndex(i) == oldSelection) {
                     widge.setState(widge.getState().deriveSelected(true));
                 }
                 modelSnapshot = oldSnapshot;
-                syncOne(widgets.size() - 1);
+                syncOne(modelIndex(widgets.size() - 1));
             }
         }
         if (wasEmpty && oldSelection == -1 && !newSnapshot.isEmpty()) {
             sel.setSelectedIndex(0);
             widgets.get(0).setState(widgets.get(0).getState().deriveSelected(true));
-        } else if (oldSelectedWidget != null) {
+        } else if (oldData != null) {
             int newSelIndex = model.indexOf(oldData);
             if (newSelIndex < 0) {
                 if (oldSelection >= 0 && oldSelection < model.size()) {
@@ -197,9 +591,13 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
             if (newSelIndex >= 0) {
                 if (newSelIndex != oldSelection) {
                     sel.setSelectedIndex(newSelIndex);
-                    oldSelectedWidget.setState(oldSelectedWidget.getState().deriveSelected(false));
-                    TabWidget newSelected = widgets.get(newSelIndex);
-                    newSelected.setState(newSelected.getState().deriveSelected(true));
+                    if (oldSelectedWidget != null) {
+                        oldSelectedWidget.setState(oldSelectedWidget.getState().deriveSelected(false));
+                    }
+                    TabWidget newSelected = widget(newSelIndex);
+                    if (newSelected != null) {
+                        newSelected.setState(newSelected.getState().deriveSelected(true));
+                    }
                     TabData td = model.getTab(newSelIndex);
                     if (td != null) {
                         Component c = td.getComponent();
@@ -229,29 +627,152 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
         }
 
         modelSnapshot = newSnapshot;
-        syncRange(0, widgets.size());
+        syncRange(0, newSnapshot.size());
 //        for (TabWidget w : this) {
 //            w.sync();
 //        }
-        if (oldSelectedWidget == null && newSnapshot.size() > 0) {
-            int last = model.size() - 1;
+        if (oldData == null && newSnapshot.size() > 0) {
+            int last = modelIndex(widgets.size() - 1);
             LOG.log(Level.FINER, "  move selection to {0}", last);
             if (last >= 0) { // this can race
-                TabWidget toSelect = widgets.get(last);
+                TabWidget toSelect = widget(last);
                 sel.setSelectedIndex(last);
                 toSelect.setState(toSelect.getState().deriveSelected(true));
             }
         }
-        if (onChange != null) { // Null if called in constructor
-            onChange.run();
-        }
 //        return modelSizeChanged;
     }
 
+    /**
+     * Sync pass for windowed mode:  bring the number of widgets into line
+     * with the window, keep the selection on the tab it was on, and sync
+     * the widgets in the window; tabs outside it cost nothing.
+     */
+    private void doWindowedSync() {
+        int oldSelection = sel.getSelectedIndex();
+        TabData oldData = oldSelection >= 0 && oldSelection < modelSnapshot.size()
+                ? modelSnapshot.get(oldSelection) : null;
+        List<TabData> newSnapshot = new ArrayList<>(model.getTabs());
+        int sz = newSnapshot.size();
+        int count = Math.min(windowCapacity, sz);
+        LOG.log(Level.FINE, "Windowed sync: tabs {0} window {1} of {2}",
+                new Object[]{sz, windowStart, count});
+        modelSnapshot = newSnapshot;
+        windowStart = Math.max(0, Math.min(windowStart, sz - count));
+        while (widgets.size() > count) {
+            TabWidget removed = widgets.remove(widgets.size() - 1);
+            if (removed.isStale()) {
+                staleCount--;
+            }
+            remover.accept(removed);
+        }
+        while (widgets.size() < count) {
+            TabWidget widge = factory.apply(newSnapshot.get(windowStart + widgets.size()), this::get);
+            widge.indexHint = widgets.size();
+            widgets.add(widge);
+        }
+        int newSelection = oldSelection;
+        if (oldData != null) {
+            // TabData.equals() compares contents, so use identity
+            for (int i = 0; i < sz; i++) {
+                if (newSnapshot.get(i) == oldData) {
+                    newSelection = i;
+                    break;
+                }
+            }
+        }
+        if (sz == 0) {
+            newSelection = -1;
+        } else if (newSelection < 0 || newSelection >= sz) {
+            newSelection = newSelection < 0 ? 0 : sz - 1;
+        }
+        if (newSelection != oldSelection && newSelection >= 0) {
+            sel.setSelectedIndex(newSelection);
+        }
+        for (int i = 0; i < widgets.size(); i++) {
+            TabWidget widget = widgets.get(i);
+            if (widget.isStale()) {
+                staleCount--;
+            }
+            widget.sync();
+            boolean isSelected = windowStart + i == newSelection;
+            if (widget.getState().isSelected() != isSelected) {
+                widget.setState(widget.getState().deriveSelected(isSelected));
+            }
+        }
+    }
+
     private void syncOne(int index) {
         rangeSync.add(index);
     }
 
+    /**
+     * Sync the widget at an index if it is in view; otherwise just mark
+     * it stale, so a flurry of changes to off-screen tabs (such as a
+     * version control refresh renaming or recoloring hundreds of them)
+     * costs next to nothing until they are scrolled to.
+     *
+     * @param index An index
+     * @return true if the widget was synced and changed
+     */
+    private boolean syncOrMarkStale(int index) {
+        TabWidget widget = widget(index);
+        if (widget == null) {
+            // Not materialized; it will be synced when it is
+            return false;
+        }
+        if (inView.test(index)) {
+            if (widget.isStale()) {
+                staleCount--;
+            }
+            return widget.sync();
+        }
+        if (widget.markStale()) {
+            staleCount++;
+        }
+        return false;
+    }
+
+    /**
+     * Sync any stale widgets whose indices match the passed test.
+     *
+     * @param test A test
+     * @return true if any widget changed as a result
+     */
+    boolean syncStale(IntPredicate test) {
+        if (staleCount <= 0) {
+            return false;
+        }
+        boolean result = false;
+        for (int i = 0; i < widgets.size() && staleCount > 0; i++) {
+            TabWidget widget = widgets.get(i);
+            if (widget.isStale() && test.test(modelIndex(windowStart + i))) {
+                staleCount--;
+                result |= widget.sync();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sync one widget if it is stale, e.g. because its bounds are about to
+     * be queried.
+     *
+     * @param widget A widget
+     * @return true if it changed
+     */
+    boolean syncIfStale(TabWidget widget) {
+        if (widget.isStale()) {
+            staleCount--;
+            return widget.sync();
+        }
+        return false;
+    }
+
+    int staleCount() {
+        return staleCount;
+    }
+
     private void syncRange(int first, int last) {
         rangeSync.add(first, last);
     }
@@ -265,8 +786,12 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
         private int first = Integer.MAX_VALUE;
         private int last = Integer.MIN_VALUE;
 
+        boolean hasPending() {
+            return first <= last;
+        }
+
         void enqueue() {
-            if (!enqueued) {
+            if (!enqueued && suspended == 0) {
                 enqueued = true;
                 EventQueue.invokeLater(this);
             }
@@ -287,29 +812,73 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
         void add(int first, int last) {
             int a = Math.max(0, Math.min(first, last));
             int b = Math.max(0, Math.max(first, last));
-            this.first = Math.min(a, first);
-            this.last = Math.max(b, first);
+            this.first = Math.min(a, this.first);
+            this.last = Math.max(b, this.last);
             enqueue();
         }
 
         @Override
         public void run() {
-            int from = this.first;
-            int thru = this.last;
-            reset();
-            boolean anyChanged = false;
-            for (int i = Math.max(0, from); i < Math.min(widgets.size(), thru + 1); i++) {
-                TabWidget widget = widgets.get(i);
-                anyChanged |= widget.sync();
+            if (suspended > 0) {
+                // Leave the range in place; resume() will run it
+                enqueued = false;
+                return;
+            }
+            if (!hasPending()) {
+                // Already run by resume()
+                enqueued = false;
+                return;
+            }
+            long start = System.nanoTime();
+            boolean anyChanged;
+            try {
+                anyChanged = syncPending();
+            } finally {
+                synced(start, false);
             }
             if (anyChanged) {
                 onChange.run();
             }
         }
+
+        /**
+         * Sync the pending range, if any, now.
+         *
+         * @return true if any widget changed
+         */
+        boolean syncPending() {
+            if (!hasPending()) {
+                return false;
+            }
+            int from = this.first;
+            int thru = this.last;
+            reset();
+            EdtWatchdog.Bracket stall = EdtWatchdog.enter("RangeSync.run", model,
+                    EdtWatchdog.ENABLED ? new int[]{from, thru} : null);
+            try {
+                boolean anyChanged = false;
+                int end = Math.min(modelToSlot == null ? windowStart + widgets.size() : modelToSlot.length, thru + 1);
+                for (int i = Math.max(windowStart, from); i < end; i++) {
+                    anyChanged |= syncOrMarkStale(i);
+                }
+                return anyChanged;
+            } finally {
+                EdtWatchdog.exit(stall);
+            }
+        }
     }
 
     @Override
     public void indicesAdded(ComplexListDataEvent e) {
+        if (trace != null) {
+            trace.added(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
         sync();
         int[] affected = e.getIndices();
         int first = widgets.size();
@@ -328,6 +897,15 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
 
     @Override
     public void indicesRemoved(ComplexListDataEvent e) {
+        if (trace != null) {
+            trace.removed(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
         sync();
         int[] affected = e.getIndices();
         int first = widgets.size();
@@ -352,6 +930,20 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
 
     @Override
     public void indicesChanged(ComplexListDataEvent e) {
+        if (trace != null) {
+            trace.changed(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
+        if (suspended > 0) {
+            // Resuming will sync everything in one pass
+            syncWhileSuspended = true;
+            return;
+        }
         if (e instanceof VeryComplexListDataEvent) {
             VeryComplexListDataEvent vclde = (VeryComplexListDataEvent) e;
             ArrayDiff diff = vclde.getDiff();
@@ -369,9 +961,7 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
             int last;
             if (affected != null && affected.length > 0) {
                 for (int i = 0; i < affected.length; i++) {
-                    if (affected[i] < widgets.size()) {
-                        widgets.get(affected[i]).sync();
-                    }
+                    syncOrMarkStale(affected[i]);
                 }
                 return;
             } else {
@@ -384,16 +974,43 @@ final class TabWidgetMapper implements ComplexListDataListener, Iterable<TabWidg
 
     @Override
     public void intervalAdded(ListDataEvent e) {
+        if (trace != null) {
+            trace.added(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
         sync();
     }
 
     @Override
     public void intervalRemoved(ListDataEvent e) {
+        if (trace != null) {
+            trace.removed(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
         sync();
     }
 
     @Override
     public void contentsChanged(ListDataEvent e) {
+        if (trace != null) {
+            trace.changed(e);
+        }
+        if (EdtWatchdog.ENABLED) {
+            lastEvent = e;
+        }
+        if (moving) {
+            return;
+        }
         sync();
         syncRange(e.getIndex0(), e.getIndex1());
     }
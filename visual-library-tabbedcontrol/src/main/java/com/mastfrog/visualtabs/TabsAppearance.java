@@ -34,6 +34,8 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Arc2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -235,12 +237,20 @@ public class TabsAppearance {
     private int tabsInnerSpacing = 4;
     private int panTrayLeftInset = 24;
     boolean dragDropEnabled = true;
+    boolean lazySync = true;
+    boolean compressTabs;
+    boolean multiRow;
+    boolean verticalStrip;
+    boolean quickSearchPopup = true;
+    boolean ctrlTabSwitching;
+    int minimumCompressedTabWidth = 64;
     private IntSupplier dragThreasholdDistance;
     private ButtonPainter buttonPainter = TabsAppearance::defaultPaintSideButton;
     private final EnumMap<TabKind, Border> borderForKind = new EnumMap(TabKind.class);
     private final Map<ButtonState, TabIcon> closeIcons = new EnumMap<>(ButtonState.class);
 
     private ColorSupplier selectionDirectionIndicatorColor = directionFallback;
+    private ColorSupplier attentionColor = Colors.fixed(new Color(255, 140, 0));
 
     private BiFunction<Graphics2D, Rectangle, GradientPainter> tabBorderColorBottom = (g, r) -> {
         return gradients().linear(g, r.x, r.y,
@@ -609,6 +619,118 @@ public class TabsAppearance {
         return dragDropEnabled;
     }
 
+    /**
+     * Turn off lazy syncing, so that tabs scrolled out of view are updated
+     * as soon as their data changes, rather than when they scroll back
+     * into view.
+     *
+     * @return this
+     */
+    public TabsAppearance disableLazySync() {
+        lazySync = false;
+        return this;
+    }
+
+    public boolean isLazySync() {
+        return lazySync;
+    }
+
+    /**
+     * In compress mode, when the tabs do not fit, the widest tabs are
+     * shrunk toward the minimum compressed width, with their labels
+     * truncated in the middle, before the strip resorts to panning.
+     *
+     * @param val Whether to compress
+     * @return this
+     */
+    public TabsAppearance setCompressTabs(boolean val) {
+        compressTabs = val;
+        return this;
+    }
+
+    public boolean isCompressTabs() {
+        return compressTabs;
+    }
+
+    /**
+     * In multi-row mode, tabs which do not fit wrap onto additional rows,
+     * and the tab strip grows taller instead of panning.
+     *
+     * @param val Whether to wrap
+     * @return this
+     */
+    public TabsAppearance setMultiRow(boolean val) {
+        multiRow = val;
+        return this;
+    }
+
+    public boolean isMultiRow() {
+        return multiRow;
+    }
+
+    /**
+     * In vertical strip mode, for modes docked at the side of the window,
+     * tabs are laid out as a vertically scrolling list of rows, and only
+     * the rows in or near view have widgets, so the cost of scrolling does
+     * not grow with the number of tabs.  Takes precedence over compress
+     * and multi-row mode, and must be set before the scene is created.
+     *
+     * @param val Whether to lay tabs out vertically
+     * @return this
+     */
+    public TabsAppearance setVerticalStrip(boolean val) {
+        verticalStrip = val;
+        return this;
+    }
+
+    public boolean isVerticalStrip() {
+        return verticalStrip;
+    }
+
+    /**
+     * Use the window system's list of tabs for the popup button, rather than
+     * the built-in popup which filters tabs by name as you type.
+     *
+     * @return this
+     */
+    public TabsAppearance disableQuickSearchPopup() {
+        quickSearchPopup = false;
+        return this;
+    }
+
+    public boolean isQuickSearchPopup() {
+        return quickSearchPopup;
+    }
+
+    /**
+     * Let Ctrl-Tab and Ctrl-Shift-Tab, pressed in the tab strip, cycle
+     * through recently used tabs.  Off by default, since it takes those
+     * keys out of the strip's focus traversal keys, so they no longer move
+     * focus out of it, and a window system which binds them globally
+     * would not see them while the strip has focus; plain Tab and
+     * Shift-Tab still do.
+     *
+     * @param val Whether Ctrl-Tab switches tabs
+     * @return this
+     */
+    public TabsAppearance setCtrlTabSwitching(boolean val) {
+        ctrlTabSwitching = val;
+        return this;
+    }
+
+    public boolean isCtrlTabSwitching() {
+        return ctrlTabSwitching;
+    }
+
+    public TabsAppearance setMinimumCompressedTabWidth(int val) {
+        minimumCompressedTabWidth = val;
+        return this;
+    }
+
+    public int minimumCompressedTabWidth() {
+        return minimumCompressedTabWidth;
+    }
+
     public TabsAppearance setInnerRightMargin(int val) {
         this.tabInnerRightMargin = val;
         return this;
@@ -637,6 +759,20 @@ public class TabsAppearance {
         return this;
     }
 
+    /**
+     * The color tabs requesting attention pulse with.
+     *
+     * @return A color
+     */
+    public Color attentionColor() {
+        return attentionColor.get();
+    }
+
+    public TabsAppearance setAttentionColor(ColorSupplier c) {
+        attentionColor = c;
+        return this;
+    }
+
     public Font tabFont() {
         Font result = this.font.get();
         if (fontSize > 0) {
@@ -655,7 +791,65 @@ public class TabsAppearance {
         return this;
     }
 
+    private RenderingProfile profile = RenderingProfile.fromSystemProperties();
+
+    public RenderingProfile renderingProfile() {
+        return profile;
+    }
+
+    public TabsAppearance setRenderingProfile(RenderingProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Null profile");
+        }
+        this.profile = profile;
+        return this;
+    }
+
+    private final BackgroundPainter flatPainter = this::paintFlat;
+    private final SharedRenderCache renderCache = SharedRenderCache.get();
+
+    SharedRenderCache renderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Paints a tab background as a single solid color halfway between the
+     * colors the gradient would use, reusing the last computed color while
+     * those stay the same.
+     */
+    private void paintFlat(Graphics2D g, ObjectState state, TabKind kind, Rectangle r, int animTick, int of) {
+        if (r.width <= 1 || r.height <= 1) {
+            return;
+        }
+        g.setColor(flatBackground(state, kind));
+        g.fill(r);
+    }
+
+    /**
+     * The solid color tab backgrounds are filled with when the rendering
+     * profile uses flat fills.
+     *
+     * @param state The tab state
+     * @param kind The kind of tab
+     * @return A color
+     */
+    Color flatBackground(ObjectState state, TabKind kind) {
+        if (kind == TabKind.DRAG_PROXY) {
+            state = state.deriveSelected(true);
+        }
+        Color b = base(state);
+        Color h = hl(state);
+        boolean opaque = profile.opaqueEffects();
+        return renderCache.palette(Arrays.asList("flat", b, h, opaque), () -> {
+            Color c = Colors.between(b, h, 0.5f);
+            return opaque ? alpha(255, c) : c;
+        });
+    }
+
     public BackgroundPainter tabBackgroundPainterForState(ObjectState state, TabKind kind) {
+        if (profile.flatFills()) {
+            return flatPainter;
+        }
         if (state.isSelected() || kind == TabKind.DRAG_PROXY) {
             return selectedTabPainter;
         } else {
@@ -810,6 +1004,24 @@ public class TabsAppearance {
 
         @Override
         public void paintIcon(ObjectState tabState, Graphics2D gr, int x, int y) {
+            // Rasterized once per state, size and device scale, and shared
+            // by every tab control
+            int w = getIconWidth();
+            int h = getIconHeight();
+            double scale = Math.max(1, gr.getTransform().getScaleX());
+            int tabCategory = tabState.isSelected() ? 2 : tabState.isHovered() ? 1 : 0;
+            int pw = (int) Math.ceil((w + 1) * scale);
+            int ph = (int) Math.ceil((h + 1) * scale);
+            BufferedImage sprite = renderCache.sprite(Arrays.asList("close", state, tabCategory, w, h, scale),
+                    pw, ph, g -> {
+                        g.setRenderingHints(gr.getRenderingHints());
+                        g.scale(scale, scale);
+                        paintVector(tabState, g, 0, 0);
+                    });
+            gr.drawImage(sprite, x, y, w + 1, h + 1, null);
+        }
+
+        private void paintVector(ObjectState tabState, Graphics2D gr, int x, int y) {
             int endX = x + getIconWidth();
             int endY = y + getIconHeight();
             Paint fillColor = null;
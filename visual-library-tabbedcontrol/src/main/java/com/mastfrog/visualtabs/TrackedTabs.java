@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * A set of tabs which carry some state the model knows nothing about,
+ * such as requesting attention or being pinned.  Tabs are keyed by
+ * identity, with a hint of their last known index, which is checked (and
+ * its neighbors, for the common case of a single tab added or removed
+ * before it) before falling back to searching the model, so bringing the
+ * indices up to date costs little more than one pass over the set.
+ *
+ * @author Tim Boudreau
+ */
+final class TrackedTabs {
+
+    private final TabDataModel model;
+    private final Map<TabData, Entry> byData = new IdentityHashMap<>();
+    private final List<Entry> entries = new ArrayList<>();
+
+    TrackedTabs(TabDataModel model) {
+        this.model = model;
+    }
+
+    static final class Entry {
+
+        final TabData data;
+        int hint;
+
+        Entry(TabData data, int hint) {
+            this.data = data;
+            this.hint = hint;
+        }
+    }
+
+    boolean contains(TabData data) {
+        return !byData.isEmpty() && byData.containsKey(data);
+    }
+
+    boolean isEmpty() {
+        return byData.isEmpty();
+    }
+
+    int size() {
+        return byData.size();
+    }
+
+    /**
+     * Add or remove a tab.
+     *
+     * @param data The tab
+     * @param index Its index in the model
+     * @param add Whether to add or remove it
+     * @return True if anything changed
+     */
+    boolean set(TabData data, int index, boolean add) {
+        if (add) {
+            if (byData.containsKey(data)) {
+                return false;
+            }
+            Entry e = new Entry(data, index);
+            byData.put(data, e);
+            entries.add(e);
+            return true;
+        }
+        Entry e = byData.remove(data);
+        if (e == null) {
+            return false;
+        }
+        entries.remove(e);
+        return true;
+    }
+
+    void clear() {
+        byData.clear();
+        entries.clear();
+    }
+
+    /**
+     * Release the tracked tabs, which the model may outlive.
+     */
+    void detach() {
+        clear();
+    }
+
+    /**
+     * Get the tabs, dropping any which are no longer in the model, with
+     * their indices brought up to date.
+     *
+     * @return The entries
+     */
+    List<Entry> entries() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry e = entries.get(i);
+            e.hint = indexOf(e.data, e.hint);
+            if (e.hint < 0) {
+                entries.remove(i);
+                byData.remove(e.data);
+            }
+        }
+        return entries;
+    }
+
+    private int indexOf(TabData data, int hint) {
+        int size = model.size();
+        for (int i = Math.max(0, hint - 1); i <= hint + 1 && i < size; i++) {
+            if (model.getTab(i) == data) {
+                return i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (model.getTab(i) == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -93,6 +93,9 @@ public class VisualTabDisplayerUI extends TabDisplayerUI {
 
     @Override
     public void uninstallUI(JComponent c) {
+        if (scene != null) {
+            scene.detach();
+        }
         super.uninstallUI(c);
         c.setLayout(null);
         c.removeAll();
@@ -110,6 +113,7 @@ public class VisualTabDisplayerUI extends TabDisplayerUI {
         disp.setBorder(BorderFactory.createEmptyBorder());
         disp.setBackground(Color.BLUE);
         scene.sync();
+        scene.registerMetrics();
 //        MouseListenerRemover mlr = new MouseListenerRemover();
 //        mlr.attach(disp);
     }
@@ -30,6 +30,22 @@ public enum ButtonAction {
     LEFT, RIGHT, POPUP, MAXIMIZE;
 
     Shape shape(Rectangle r) {
+        return shape(r, false);
+    }
+
+    /**
+     * Get the shape, with the scroll arrows pointing up and down rather
+     * than left and right if the tabs are laid out vertically.
+     */
+    Shape shape(Rectangle r, boolean vertical) {
+        if (vertical) {
+            switch (this) {
+                case LEFT:
+                    return up(r);
+                case RIGHT:
+                    return down(r);
+            }
+        }
         switch (this) {
             case LEFT:
                 return left(r);
@@ -56,6 +72,12 @@ public enum ButtonAction {
         return new LPolygon(x, y, 3);
     }
 
+    private Shape up(Rectangle r) {
+        int[] x = {r.x + 1, r.x + r.width - 2, r.x + (r.width / 2)};
+        int[] y = {r.y + r.height - 2, r.y + r.height - 2, r.y + 1};
+        return new LPolygon(x, y, 3);
+    }
+
     private Shape down(Rectangle r) {
         int[] x = {r.x + 1, r.x + r.width - 2, r.x + (r.width / 2)};
         int[] y = {r.y + 1, r.y + 1, r.y + r.height - 2};
@@ -20,6 +20,7 @@ package com.mastfrog.visualtabs.buttons;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import org.netbeans.api.visual.model.ObjectState;
 
 /**
@@ -30,6 +31,7 @@ final class ButtonIcon {
 
     private final ButtonAction types;
     private final ButtonPainter painter;
+    private boolean vertical;
 
     public ButtonIcon(ButtonAction types, ButtonPainter painter) {
         this.types = types;
@@ -40,6 +42,14 @@ final class ButtonIcon {
         return types;
     }
 
+    void setVertical(boolean vertical) {
+        this.vertical = vertical;
+    }
+
+    Shape shape(Rectangle r) {
+        return types.shape(r, vertical);
+    }
+
     @Override
     public String toString() {
         return types.toString();
@@ -62,6 +72,6 @@ final class ButtonIcon {
                 into.x -= 5;
                 break;
         }
-        painter.paint(g, into, types.shape(into), types, state, enabled);
+        painter.paint(g, into, shape(into), types, state, enabled);
     }
 }
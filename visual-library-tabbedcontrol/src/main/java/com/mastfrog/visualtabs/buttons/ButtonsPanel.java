@@ -22,6 +22,7 @@ import com.mastfrog.visualtabs.AWTEventTriggers;
 import com.mastfrog.visualtabs.TabFeatures;
 import com.mastfrog.visualtabs.TabsAppearance;
 import java.util.Set;
+import java.util.function.LongConsumer;
 import org.netbeans.api.visual.action.WidgetAction;
 import org.netbeans.api.visual.widget.Scene;
 import org.netbeans.api.visual.widget.Widget;
@@ -33,6 +34,7 @@ import org.netbeans.api.visual.widget.Widget;
 public final class ButtonsPanel extends Widget {
 
     private final RightButtonWidget left, right, down, maximize;
+    private LongConsumer paintTimes;
 
     public ButtonsPanel(Scene scene, TabsAppearance appearance, ButtonListener listener) {
         this(scene, appearance.buttonPainter(), appearance, listener);
@@ -73,6 +75,40 @@ public final class ButtonsPanel extends Widget {
         return right;
     }
 
+    /**
+     * Point the scroll buttons up and down, for tabs laid out vertically.
+     *
+     * @param vertical Whether vertical
+     * @return this
+     */
+    public ButtonsPanel setVertical(boolean vertical) {
+        left.setVertical(vertical);
+        right.setVertical(vertical);
+        return this;
+    }
+
+
+    /**
+     * Report how long each paint of the buttons takes, for debugging.
+     *
+     * @param paintTimes Receives elapsed nanoseconds, or null
+     * @return this
+     */
+    public ButtonsPanel setPaintTimes(LongConsumer paintTimes) {
+        this.paintTimes = paintTimes;
+        return this;
+    }
+
+    @Override
+    protected void paintChildren() {
+        if (paintTimes == null) {
+            super.paintChildren();
+        } else {
+            long start = System.nanoTime();
+            super.paintChildren();
+            paintTimes.accept(System.nanoTime() - start);
+        }
+    }
 
     public void updateFeatures(Set<TabFeatures> features) {
         if (!TabFeatures.isAvailable(ButtonAction.MAXIMIZE, features)) {
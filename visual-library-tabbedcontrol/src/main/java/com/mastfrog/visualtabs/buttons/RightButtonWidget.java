@@ -49,6 +49,11 @@ class RightButtonWidget extends Widget {
         return icon.actionType();
     }
 
+    void setVertical(boolean vertical) {
+        icon.setVertical(vertical);
+        repaint();
+    }
+
     @Override
     protected Rectangle calculateClientArea() {
         Graphics2D g = getGraphics();
@@ -69,7 +74,7 @@ class RightButtonWidget extends Widget {
             // is in a very thin rectangular edge
             return iconBounds().contains(localLocation);
         }
-        return icon.actionType().shape(iconBounds()).contains(localLocation);
+        return icon.shape(iconBounds()).contains(localLocation);
     }
     
     private Rectangle iconBounds() {
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.DefaultSingleSelectionModel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the shared attention clock runs exactly while some tab, in
+ * any tab control, is flagged, and that every way a tracker can lose its
+ * last flagged tab lets it go.
+ *
+ * @author Tim Boudreau
+ */
+public class AttentionTrackerTest {
+
+    @Test
+    public void testClockRunsWhileAnyTrackerHasFlags() throws Exception {
+        onEventThread(() -> {
+            DefaultTabDataModel m1 = model(10);
+            DefaultTabDataModel m2 = model(10);
+            AttentionTracker t1 = new AttentionTracker(m1, () -> {
+            });
+            AttentionTracker t2 = new AttentionTracker(m2, () -> {
+            });
+            assertFalse(AttentionTracker.isClockRunning());
+
+            assertTrue(t1.set(m1.getTab(3), 3, true));
+            assertTrue(AttentionTracker.isClockRunning());
+            assertTrue(t1.set(m1.getTab(5), 5, true));
+            assertTrue(t2.set(m2.getTab(1), 1, true));
+            assertFalse(t2.set(m2.getTab(1), 1, true), "Flagged twice");
+
+            assertTrue(t1.set(m1.getTab(3), 3, false));
+            assertTrue(t1.set(m1.getTab(5), 5, false));
+            assertTrue(t1.isEmpty());
+            assertTrue(AttentionTracker.isClockRunning(), "Another tracker is still flagged");
+            assertFalse(t1.set(m1.getTab(5), 5, false), "Unflagged twice");
+
+            assertTrue(t2.set(m2.getTab(1), 1, false));
+            assertFalse(AttentionTracker.isClockRunning());
+            return null;
+        });
+    }
+
+    @Test
+    public void testClearAndDetachStopTheClock() throws Exception {
+        onEventThread(() -> {
+            DefaultTabDataModel m1 = model(10);
+            DefaultTabDataModel m2 = model(10);
+            AttentionTracker t1 = new AttentionTracker(m1, () -> {
+            });
+            AttentionTracker t2 = new AttentionTracker(m2, () -> {
+            });
+            t1.set(m1.getTab(0), 0, true);
+            t2.set(m2.getTab(0), 0, true);
+            t1.clear();
+            assertTrue(AttentionTracker.isClockRunning());
+            t2.detach();
+            assertFalse(AttentionTracker.isClockRunning());
+            // Detaching or clearing a tracker which was not running is harmless
+            t1.detach();
+            t2.clear();
+            assertFalse(AttentionTracker.isClockRunning());
+            return null;
+        });
+    }
+
+    @Test
+    public void testClosingTheLastFlaggedTabStopsTheClock() throws Exception {
+        onEventThread(() -> {
+            DefaultTabDataModel model = model(10);
+            AttentionTracker t = new AttentionTracker(model, () -> {
+            });
+            t.set(model.getTab(4), 4, true);
+            t.set(model.getTab(6), 6, true);
+            model.removeTab(4);
+            assertEquals(1, t.entries().size());
+            assertEquals(5, t.entries().get(0).hint);
+            assertTrue(AttentionTracker.isClockRunning());
+            model.removeTab(5);
+            assertTrue(t.entries().isEmpty());
+            assertFalse(AttentionTracker.isClockRunning());
+            return null;
+        });
+    }
+
+    @Test
+    public void testClockTicksEveryFlaggedScene() throws Exception {
+        CountDownLatch ticks = new CountDownLatch(4);
+        AttentionTracker[] trackers = onEventThread(() -> {
+            DefaultTabDataModel m1 = model(10);
+            DefaultTabDataModel m2 = model(10);
+            AttentionTracker t1 = new AttentionTracker(m1, ticks::countDown);
+            AttentionTracker t2 = new AttentionTracker(m2, ticks::countDown);
+            t1.set(m1.getTab(2), 2, true);
+            t2.set(m2.getTab(7), 7, true);
+            return new AttentionTracker[]{t1, t2};
+        });
+        assertTrue(ticks.await(10, TimeUnit.SECONDS), "Clock did not tick");
+        onEventThread(() -> {
+            trackers[0].detach();
+            trackers[1].detach();
+            assertFalse(AttentionTracker.isClockRunning());
+            return null;
+        });
+    }
+
+    @Test
+    public void testDetachedSceneReleasesTheClock() throws Exception {
+        onEventThread(() -> {
+            TabScene a = scene(model(10), new DefaultSingleSelectionModel());
+            TabScene b = scene(model(10), new DefaultSingleSelectionModel());
+            a.setAttentionHighlight(1, true);
+            b.setAttentionHighlight(2, true);
+            a.detach();
+            assertTrue(AttentionTracker.isClockRunning());
+            b.cancelAllAttention();
+            assertFalse(AttentionTracker.isClockRunning());
+            b.setAttentionHighlight(3, true);
+            assertTrue(AttentionTracker.isClockRunning());
+            b.setAttentionHighlight(3, false);
+            assertFalse(AttentionTracker.isClockRunning());
+            b.detach();
+            return null;
+        });
+        flush();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.SingleSelectionModel;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataListener;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.tab;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bulk edits: closing 999 of 1000 tabs in one model change, compared with
+ * closing them one at a time, and recovery from a commit that fails.
+ *
+ * @author Tim Boudreau
+ */
+public class BulkEditTest {
+
+    private static final int TABS = 1000;
+
+    @Test
+    public void testCloseAllButOne() throws Exception {
+        DefaultTabDataModel model = model(TABS);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        TabScene scene = onEventThread(() -> scene(model, sel));
+        flush();
+        EventCounter events = new EventCounter();
+        long[] before = new long[2];
+        long bulk = onEventThread(() -> {
+            assertEquals(TABS, scene.widgetCount());
+            model.addComplexListDataListener(events);
+            before[0] = scene.stats().syncs();
+            before[1] = scene.stats().fullValidations();
+            // The commit resyncs the widgets synchronously
+            long start = System.nanoTime();
+            BulkEdit edit = scene.beginBulkEdit();
+            for (int i = 1; i < model.size(); i++) {
+                edit.close(model.getTab(i));
+            }
+            edit.commit();
+            return System.nanoTime() - start;
+        });
+        TabData kept = model.getTab(0);
+        onEventThread(() -> {
+            assertEquals(1, model.size());
+            assertSame(kept, model.getTab(0));
+            assertEquals(1, scene.widgetCount());
+            assertEquals(0, sel.getSelectedIndex());
+            assertEquals(1, events.count, "Bulk close should be a single model change");
+            assertEquals(1, scene.stats().syncs() - before[0],
+                    "Bulk close should sync the widgets once");
+            assertEquals(1, scene.stats().fullValidations() - before[1],
+                    "Bulk close should lay out and repaint once");
+            scene.detach();
+            return null;
+        });
+
+        // The same closes as the user would make them one at a time, each
+        // followed by the sync pass it triggers
+        DefaultTabDataModel model2 = model(TABS);
+        SingleSelectionModel sel2 = new DefaultSingleSelectionModel();
+        TabScene scene2 = onEventThread(() -> scene(model2, sel2));
+        flush();
+        long syncsBefore = onEventThread(() -> scene2.stats().syncs());
+        long start = System.nanoTime();
+        for (int i = 1; i < TABS; i++) {
+            onEventThread(() -> {
+                model2.removeTab(model2.size() - 1);
+                return null;
+            });
+            flush();
+        }
+        long single = System.nanoTime() - start;
+        onEventThread(() -> {
+            assertEquals(1, scene2.widgetCount());
+            assertTrue(scene2.stats().syncs() - syncsBefore >= TABS - 1,
+                    "Each close should have been synced on its own");
+            scene2.detach();
+            return null;
+        });
+        flush();
+        System.out.println("Close " + (TABS - 1) + " of " + TABS + " tabs: bulk "
+                + millis(bulk) + "ms in 1 model event, one at a time "
+                + millis(single) + "ms in " + (TABS - 1) + " model events");
+    }
+
+    @Test
+    public void testFailedCommitResumesSync() throws Exception {
+        FailingModel model = new FailingModel();
+        TabScene scene = onEventThread(() -> {
+            for (int i = 0; i < 10; i++) {
+                model.addTab(i, tab(i));
+            }
+            return scene(model, new DefaultSingleSelectionModel());
+        });
+        flush();
+        onEventThread(() -> {
+            BulkEdit edit = scene.beginBulkEdit().close(model.getTab(3));
+            model.fail = true;
+            assertThrows(IllegalStateException.class, edit::commit);
+            model.fail = false;
+            // Widgets must track the model again
+            model.addTab(10, tab(10));
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            assertEquals(11, scene.widgetCount());
+            // And a new edit must be allowed
+            scene.beginBulkEdit().close(model.getTab(10)).commit();
+            assertEquals(10, model.size());
+            assertEquals(10, scene.widgetCount());
+            scene.detach();
+            return null;
+        });
+        flush();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    static final class FailingModel extends DefaultTabDataModel {
+
+        boolean fail;
+
+        @Override
+        public void setTabs(TabData[] data) {
+            if (fail) {
+                throw new IllegalStateException("Refusing to set tabs");
+            }
+            super.setTabs(data);
+        }
+    }
+
+    static final class EventCounter implements ComplexListDataListener {
+
+        int count;
+
+        @Override
+        public void indicesAdded(ComplexListDataEvent e) {
+            count++;
+        }
+
+        @Override
+        public void indicesRemoved(ComplexListDataEvent e) {
+            count++;
+        }
+
+        @Override
+        public void indicesChanged(ComplexListDataEvent e) {
+            count++;
+        }
+
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+            count++;
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+            count++;
+        }
+
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+            count++;
+        }
+    }
+}
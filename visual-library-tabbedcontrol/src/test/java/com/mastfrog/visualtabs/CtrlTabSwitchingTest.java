@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.AWTKeyStroke;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.KeyStroke;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the tab strip only takes Ctrl-Tab out of its focus
+ * traversal keys when asked to, and only records recently selected tabs
+ * from creation when it is.
+ *
+ * @author Tim Boudreau
+ */
+public class CtrlTabSwitchingTest {
+
+    private static final AWTKeyStroke CTRL_TAB
+            = KeyStroke.getKeyStroke(KeyEvent.VK_TAB, InputEvent.CTRL_DOWN_MASK);
+    private static final AWTKeyStroke TAB = KeyStroke.getKeyStroke(KeyEvent.VK_TAB, 0);
+
+    @Test
+    public void testCtrlTabMovesFocusByDefault() throws Exception {
+        Set<AWTKeyStroke> keys = forwardKeys(new TabsAppearance());
+        assertTrue(keys.contains(CTRL_TAB), "Ctrl-Tab taken by default: " + keys);
+        assertTrue(keys.contains(TAB));
+    }
+
+    @Test
+    public void testCtrlTabSwitchesTabsWhenEnabled() throws Exception {
+        Set<AWTKeyStroke> keys = forwardKeys(new TabsAppearance().setCtrlTabSwitching(true));
+        assertFalse(keys.contains(CTRL_TAB), "Ctrl-Tab still moves focus: " + keys);
+        assertTrue(keys.contains(TAB));
+    }
+
+    @Test
+    public void testRecentTabsRecordedFromCreationWhenEnabled() throws Exception {
+        DefaultTabDataModel model = model(4);
+        List<TabData> recent = recentAfterSelecting(new TabsAppearance().setCtrlTabSwitching(true), model);
+        assertEquals(Arrays.asList(model.getTab(3), model.getTab(1), model.getTab(2)), recent);
+    }
+
+    @Test
+    public void testRecentTabsRecordedFromFirstUseByDefault() throws Exception {
+        DefaultTabDataModel model = model(4);
+        List<TabData> recent = recentAfterSelecting(new TabsAppearance(), model);
+        // Only the selection current at the first call, and those after it
+        assertEquals(Arrays.asList(model.getTab(3), model.getTab(1)), recent);
+    }
+
+    private static List<TabData> recentAfterSelecting(TabsAppearance appearance,
+            DefaultTabDataModel model) throws Exception {
+        DefaultSingleSelectionModel sel = new DefaultSingleSelectionModel();
+        TabScene scene = onEventThread(() -> {
+            sel.setSelectedIndex(2);
+            TabScene result = new TabScene(appearance, model, sel);
+            result.init();
+            return result;
+        });
+        select(sel, 1);
+        onEventThread(() -> scene.recentTabs(1));
+        select(sel, 3);
+        List<TabData> result = onEventThread(() -> {
+            List<TabData> recent = scene.recentTabs(4);
+            scene.detach();
+            return recent;
+        });
+        flush();
+        return result;
+    }
+
+    private static void select(DefaultSingleSelectionModel sel, int index) throws Exception {
+        onEventThread(() -> {
+            sel.setSelectedIndex(index);
+            return null;
+        });
+        // Changes less than a frame apart are applied on the next frame
+        Thread.sleep(CoalescingScheduler.FRAME_MILLIS * 3);
+        flush();
+    }
+
+    private static Set<AWTKeyStroke> forwardKeys(TabsAppearance appearance) throws Exception {
+        Set<AWTKeyStroke> result = onEventThread(() -> {
+            TabScene scene = new TabScene(appearance, model(3), new DefaultSingleSelectionModel());
+            // The view itself cannot be created headless
+            JComponent view = new JPanel();
+            scene.configureFocusTraversal(view);
+            Set<AWTKeyStroke> keys = view.getFocusTraversalKeys(KeyboardFocusManager.FORWARD_TRAVERSAL_KEYS);
+            scene.detach();
+            return keys;
+        });
+        flush();
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import javax.swing.DefaultSingleSelectionModel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks where a tab dropped on the strip is inserted, in a horizontal and
+ * a vertical strip.
+ *
+ * @author Tim Boudreau
+ */
+public class DropIndexOfPointTest {
+
+    private static final int TABS = 12;
+
+    @Test
+    public void testHorizontal() throws Exception {
+        check(new TabsAppearance());
+    }
+
+    @Test
+    public void testVertical() throws Exception {
+        check(new TabsAppearance().setVerticalStrip(true));
+    }
+
+    private void check(TabsAppearance appearance) throws Exception {
+        DefaultTabDataModel model = model(TABS);
+        BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        TabScene scene = onEventThread(() -> {
+            TabScene result = new TabScene(appearance, model, new DefaultSingleSelectionModel());
+            result.init();
+            return result;
+        });
+        flush();
+        onEventThread(() -> {
+            scene.validate(g);
+            boolean vertical = appearance.isVerticalStrip();
+            Rectangle r = new Rectangle();
+            for (int i = 0; i < TABS; i++) {
+                scene.getTabRect(i, r);
+                Point lead = vertical ? new Point(r.x + 2, r.y + r.height / 4)
+                        : new Point(r.x + r.width / 4, r.y + r.height / 2);
+                Point trail = vertical ? new Point(r.x + 2, r.y + (r.height * 3) / 4)
+                        : new Point(r.x + (r.width * 3) / 4, r.y + r.height / 2);
+                assertEquals(i, scene.dropIndexOfPoint(lead), "Leading half of " + i + " at " + lead);
+                assertEquals(i + 1, scene.dropIndexOfPoint(trail), "Trailing half of " + i + " at " + trail);
+            }
+            scene.getTabRect(0, r);
+            Point before = vertical ? new Point(r.x + 2, r.y - 1) : new Point(r.x - 1, r.y + r.height / 2);
+            assertEquals(vertical ? -1 : 0, scene.dropIndexOfPoint(before), "Before the first tab");
+            if (!vertical) {
+                scene.getTabRect(TABS - 1, r);
+                assertEquals(TABS, scene.dropIndexOfPoint(new Point(r.x + r.width + 50, r.y + r.height / 2)),
+                        "Past the last tab");
+            }
+            scene.detach();
+            return null;
+        });
+        flush();
+        g.dispose();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a fling asks for its limits once, not once per frame.
+ *
+ * @author Tim Boudreau
+ */
+public class KineticScrollerTest {
+
+    @Test
+    public void testLimitsFetchedOncePerFling() throws Exception {
+        FakeTarget target = new FakeTarget(0);
+        KineticScroller scroller = new KineticScroller(target);
+        SwingUtilities.invokeAndWait(() -> scroller.impulse(-400, System.currentTimeMillis()));
+        assertTrue(target.settled.await(10, TimeUnit.SECONDS), "Never settled");
+        assertTrue(target.frames > 5, "Only " + target.frames + " frames");
+        assertEquals(1, target.limitsCalls, "Limits fetched " + target.limitsCalls
+                + " times in " + target.frames + " frames");
+        assertEquals(-300, target.position, "Should stop at the limit");
+    }
+
+    @Test
+    public void testLimitsRefetchedWhenChanged() throws Exception {
+        FakeTarget target = new FakeTarget(2);
+        KineticScroller scroller = new KineticScroller(target);
+        target.scroller = scroller;
+        SwingUtilities.invokeAndWait(() -> scroller.impulse(-400, System.currentTimeMillis()));
+        assertTrue(target.settled.await(10, TimeUnit.SECONDS), "Never settled");
+        assertEquals(2, target.limitsCalls);
+        assertEquals(-100, target.position, "Should stop at the new limit");
+    }
+
+    static final class FakeTarget implements KineticScroller.Target {
+
+        final CountDownLatch settled = new CountDownLatch(1);
+        final int shrinkAtFrame;
+        KineticScroller scroller;
+        int[] limits = {-300, 0};
+        int position;
+        int frames;
+        int limitsCalls;
+
+        FakeTarget(int shrinkAtFrame) {
+            this.shrinkAtFrame = shrinkAtFrame;
+        }
+
+        @Override
+        public int position() {
+            return position;
+        }
+
+        @Override
+        public int[] limits() {
+            limitsCalls++;
+            return limits.clone();
+        }
+
+        @Override
+        public void setPosition(int position) {
+            this.position = position;
+            if (++frames == shrinkAtFrame && scroller != null) {
+                // As if tabs closed mid-fling
+                limits = new int[]{-100, 0};
+                scroller.limitsChanged();
+            }
+        }
+
+        @Override
+        public void settled() {
+            settled.countDown();
+        }
+    }
+}
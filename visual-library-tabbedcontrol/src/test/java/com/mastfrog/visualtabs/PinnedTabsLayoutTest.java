@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.swing.DefaultSingleSelectionModel;
+import org.netbeans.api.visual.widget.Scene;
+import org.netbeans.api.visual.widget.Widget;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that pinned tabs are laid out in model order in their own
+ * region, and that the tabs which pan close up around them.
+ *
+ * @author Tim Boudreau
+ */
+public class PinnedTabsLayoutTest {
+
+    private static final int GAP = 3;
+
+    @Test
+    public void testLaysOutInModelOrder() throws Exception {
+        onEventThread(() -> {
+            Scene scene = new Scene();
+            Widget region = new Widget(scene);
+            Map<Widget, Integer> indices = new IdentityHashMap<>();
+            int[] modelIndices = {12, 4, 30, 7};
+            int[] widths = {40, 25, 60, 33};
+            int[] heights = {20, 22, 18, 20};
+            Widget[] children = new Widget[modelIndices.length];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = new Widget(scene);
+                children[i].setPreferredSize(new Dimension(widths[i], heights[i]));
+                indices.put(children[i], modelIndices[i]);
+                region.addChild(children[i]);
+            }
+            PinnedTabsLayout layout = new PinnedTabsLayout(indices::get, GAP);
+            assertEquals(0, layout.extent());
+            layout.layout(region);
+
+            // Model order is 4, 7, 12, 30
+            int[] expectedOrder = {1, 3, 0, 2};
+            int x = 0;
+            for (int i : expectedOrder) {
+                Widget w = children[i];
+                assertEquals(new Point(x, 0), w.getLocation(), "Tab " + modelIndices[i]);
+                assertEquals(new Rectangle(0, 0, widths[i], 22), w.getBounds(),
+                        "Tab " + modelIndices[i] + " not as tall as the tallest");
+                assertSame(w, layout.widgetAt(x));
+                assertSame(w, layout.widgetAt(x + widths[i] - 1));
+                x += widths[i] + GAP;
+            }
+            assertEquals(x, layout.extent());
+            assertEquals(22, layout.height());
+            assertNull(layout.widgetAt(x + 100));
+
+            region.removeChildren();
+            layout.layout(region);
+            assertEquals(0, layout.extent());
+            assertNull(layout.widgetAt(0));
+            return null;
+        });
+    }
+
+    @Test
+    public void testPannedTabsCloseUpAroundPinnedOnes() throws Exception {
+        DefaultTabDataModel model = model(10);
+        DefaultSingleSelectionModel sel = new DefaultSingleSelectionModel();
+        BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        TabScene scene = onEventThread(() -> scene(model, sel));
+        flush();
+        onEventThread(() -> {
+            scene.validate(g);
+            Widget tray = scene.mapper().widget(0).getParentWidget();
+            int gap = gap(scene, 0, 1);
+            assertTrue(scene.pinTab(3));
+            assertTrue(scene.pinTab(7));
+            assertFalse(scene.pinTab(7), "Pinned twice");
+            scene.validate(g);
+            assertEquals(2, scene.pinnedTabCount());
+            assertTrue(scene.isTabPinned(3));
+            assertFalse(scene.isTabPinned(4));
+
+            Widget region = scene.mapper().widget(3).getParentWidget();
+            assertNotSame(tray, region);
+            assertSame(region, scene.mapper().widget(7).getParentWidget());
+            for (int i = 0; i < model.size(); i++) {
+                if (i != 3 && i != 7) {
+                    assertSame(tray, scene.mapper().widget(i).getParentWidget(), "Tab " + i);
+                }
+            }
+            // The pinned tabs take no room in the tray
+            assertEquals(gap, gap(scene, 2, 4));
+            assertEquals(gap, gap(scene, 6, 8));
+            // Without a view the scene does not size the pinned region, so
+            // only hit testing in the tray can be checked here
+            assertEquals(4, scene.tabForCoordinate(center(scene, 4)));
+            assertEquals(8, scene.tabForCoordinate(center(scene, 8)));
+            return null;
+        });
+        onEventThread(() -> {
+            model.removeTab(0);
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            scene.validate(g);
+            Widget tray = scene.mapper().widget(0).getParentWidget();
+            // The same tabs are pinned at their new indices
+            assertTrue(scene.isTabPinned(2));
+            assertTrue(scene.isTabPinned(6));
+            assertFalse(scene.isTabPinned(3));
+            assertNotSame(tray, scene.mapper().widget(2).getParentWidget());
+            assertNotSame(tray, scene.mapper().widget(6).getParentWidget());
+            assertSame(tray, scene.mapper().widget(3).getParentWidget());
+
+            assertTrue(scene.unpinTab(2));
+            assertFalse(scene.unpinTab(2), "Unpinned twice");
+            scene.validate(g);
+            assertEquals(1, scene.pinnedTabCount());
+            assertSame(tray, scene.mapper().widget(2).getParentWidget());
+            int gap = gap(scene, 0, 1);
+            assertEquals(gap, gap(scene, 1, 2));
+            assertEquals(gap, gap(scene, 2, 3));
+            scene.detach();
+            return null;
+        });
+        flush();
+        g.dispose();
+    }
+
+    private static int gap(TabScene scene, int left, int right) {
+        Widget a = scene.mapper().widget(left);
+        Widget b = scene.mapper().widget(right);
+        return b.getLocation().x - (a.getLocation().x + a.getBounds().width);
+    }
+
+    private static Point center(TabScene scene, int index) {
+        Widget w = scene.mapper().widget(index);
+        Rectangle bds = w.getBounds();
+        return w.convertLocalToScene(new Point(bds.x + bds.width / 2, bds.y + bds.height / 2));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import static com.mastfrog.visualtabs.RenderingProfile.isRemoteDisplay;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks which displays are detected as remote.
+ *
+ * @author Tim Boudreau
+ */
+public class RenderingProfileTest {
+
+    @Test
+    public void testLocalDisplaysAreNotRemote() {
+        assertFalse(isRemoteDisplay(null, null, null));
+        assertFalse(isRemoteDisplay(null, "", null));
+        assertFalse(isRemoteDisplay(null, ":0", null));
+        assertFalse(isRemoteDisplay(null, ":1.0", null));
+        assertFalse(isRemoteDisplay(null, "unix:0", null));
+        // A high display number alone proves nothing
+        assertFalse(isRemoteDisplay(null, ":10", null));
+        assertFalse(isRemoteDisplay(null, ":12.0", null));
+        assertFalse(isRemoteDisplay(null, "unix:99", null));
+    }
+
+    @Test
+    public void testRemoteDisplays() {
+        assertTrue(isRemoteDisplay(null, "localhost:10.0", null), "ssh -X");
+        assertTrue(isRemoteDisplay(null, "build-host.example.com:0", null));
+        assertTrue(isRemoteDisplay(null, "[::1]:0", null));
+        assertTrue(isRemoteDisplay(null, ":1", "vnc-session"), "vncserver");
+    }
+
+    @Test
+    public void testJdkPropertyDecides() {
+        assertTrue(isRemoteDisplay("true", ":0", null));
+        assertFalse(isRemoteDisplay("false", "localhost:10.0", null));
+        assertFalse(isRemoteDisplay("false", ":1", "vnc-session"));
+    }
+}
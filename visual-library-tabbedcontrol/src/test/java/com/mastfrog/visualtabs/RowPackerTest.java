@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that incremental repacking always agrees with packing from
+ * scratch, and that it really is incremental.
+ *
+ * @author Tim Boudreau
+ */
+public class RowPackerTest {
+
+    private static final int GAP = 3;
+
+    @Test
+    public void testIncrementalMatchesFreshPack() {
+        Random rnd = new Random(41);
+        RowPacker packer = new RowPacker();
+        int[] widths = widths(rnd, 300);
+        int width = 800;
+        pack(packer, widths, width);
+        for (int i = 0; i < 2000; i++) {
+            switch (rnd.nextInt(5)) {
+                case 0:
+                    // Rename a tab
+                    widths[rnd.nextInt(widths.length)] = 20 + rnd.nextInt(200);
+                    break;
+                case 1:
+                    // Resize
+                    width = 100 + rnd.nextInt(1500);
+                    break;
+                case 2:
+                    // Close a tab
+                    if (widths.length > 1) {
+                        int ix = rnd.nextInt(widths.length);
+                        int[] nue = new int[widths.length - 1];
+                        System.arraycopy(widths, 0, nue, 0, ix);
+                        System.arraycopy(widths, ix + 1, nue, ix, nue.length - ix);
+                        widths = nue;
+                    }
+                    break;
+                case 3:
+                    // Open a tab
+                    widths = Arrays.copyOf(widths, widths.length + 1);
+                    widths[widths.length - 1] = 20 + rnd.nextInt(200);
+                    break;
+                default:
+                    // Nothing changed
+                    break;
+            }
+            assertSamePacking(packer, widths, width, "Step " + i);
+        }
+    }
+
+    @Test
+    public void testRenameRepacksFewRows() {
+        Random rnd = new Random(7);
+        RowPacker packer = new RowPacker();
+        int[] widths = widths(rnd, 1000);
+        int rows = pack(packer, widths, 1000);
+        assertTrue(rows > 50, "Expected many rows, got " + rows);
+        long before = packer.rowsPacked();
+        pack(packer, widths, 1000);
+        assertEquals(before, packer.rowsPacked(), "Nothing changed, nothing should be packed");
+        widths[500] = Math.max(20, widths[500] - 5);
+        assertSamePacking(packer, widths, 1000, "Shrunk tab");
+        long repacked = packer.rowsPacked() - before;
+        assertTrue(repacked < rows, "Renaming one tab repacked " + repacked + " of " + rows + " rows");
+    }
+
+    @Test
+    public void testShrinkingTabMovesToPreviousRow() {
+        RowPacker packer = new RowPacker();
+        // 100 + 3 + 100 + 3 fills the first row of 210; the third tab
+        // wraps until it shrinks to fit the remaining room
+        int[] widths = {100, 100, 10, 50};
+        assertEquals(2, pack(packer, widths, 210));
+        widths[2] = 1;
+        assertSamePacking(packer, widths, 210, "Shrunk tab");
+    }
+
+    private static void assertSamePacking(RowPacker packer, int[] widths, int width, String msg) {
+        int rows = pack(packer, widths, width);
+        RowPacker fresh = new RowPacker();
+        int expectedRows = pack(fresh, widths, width);
+        assertEquals(expectedRows, rows, msg);
+        for (int r = 0; r < rows; r++) {
+            assertEquals(fresh.rowStart(r), packer.rowStart(r), msg + " row " + r);
+        }
+    }
+
+    private static int pack(RowPacker packer, int[] widths, int width) {
+        packer.update(widths.length);
+        for (int i = 0; i < widths.length; i++) {
+            packer.width(i, widths[i]);
+        }
+        return packer.pack(GAP, width);
+    }
+
+    private static int[] widths(Random rnd, int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = 20 + rnd.nextInt(200);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that moving a tab in the edge cache gives the same positions as
+ * recording the reordered tabs from scratch, touching only the entries
+ * between the old and new indices.
+ *
+ * @author Tim Boudreau
+ */
+public class TabEdgesTest {
+
+    private static final int GAP = 2;
+    private static final int EDGE = 5;
+
+    @Test
+    public void testMoveMatchesFreshLayout() {
+        Random rnd = new Random(13);
+        int[] extents = new int[200];
+        for (int i = 0; i < extents.length; i++) {
+            // Some hidden, taking no room
+            extents[i] = rnd.nextInt(10) == 0 ? 0 : 20 + rnd.nextInt(150);
+        }
+        TabEdges edges = edges(extents);
+        for (int i = 0; i < 500; i++) {
+            int from = rnd.nextInt(extents.length);
+            int to = rnd.nextInt(extents.length);
+            int[] startsBefore = starts(edges);
+            int generation = edges.generation();
+            assertTrue(edges.move(from, to));
+            assertTrue(edges.generation() > generation);
+            move(extents, from, to);
+            TabEdges fresh = edges(extents);
+            int min = Math.min(from, to);
+            int max = Math.max(from, to);
+            for (int j = 0; j < extents.length; j++) {
+                String msg = "Move " + from + " to " + to + " at " + j;
+                assertEquals(fresh.start(j), edges.start(j), msg);
+                assertEquals(fresh.extent(j), edges.extent(j), msg);
+                if (j < min || j > max) {
+                    assertEquals(startsBefore[j], edges.start(j), msg + " outside the range");
+                }
+            }
+            assertEquals(fresh.indexAt(fresh.start(to)), edges.indexAt(edges.start(to)));
+        }
+    }
+
+    @Test
+    public void testMoveAcrossRowsIsLeftToLayout() {
+        TabEdges edges = new TabEdges();
+        edges.setGap(GAP);
+        edges.newRow(20);
+        edges.add(EDGE, 50);
+        edges.add(EDGE + 50 + GAP, 60);
+        edges.newRow(20);
+        edges.add(EDGE, 70);
+        int generation = edges.generation();
+        assertFalse(edges.move(0, 2));
+        assertTrue(edges.generation() > generation, "Cache not marked changed");
+        assertFalse(edges.move(0, 3), "Out of range");
+    }
+
+    @Test
+    public void testInsertionIndexIsFoundInTheRowOfThePoint() {
+        TabEdges edges = new TabEdges();
+        edges.setGap(GAP);
+        edges.newRow(20);
+        edges.add(EDGE, 50);
+        edges.add(EDGE + 50 + GAP, 60);
+        edges.newRow(20);
+        edges.add(EDGE, 70);
+        edges.add(EDGE + 70 + GAP, 40);
+        edges.add(EDGE + 70 + GAP + 40 + GAP, 30);
+        // First row
+        assertEquals(0, edges.insertionIndex(0, 5));
+        assertEquals(0, edges.insertionIndex(EDGE + 24, 5));
+        assertEquals(1, edges.insertionIndex(EDGE + 25, 5));
+        assertEquals(1, edges.insertionIndex(EDGE + 50 + GAP + 29, 5));
+        assertEquals(2, edges.insertionIndex(EDGE + 50 + GAP + 30, 5));
+        assertEquals(2, edges.insertionIndex(1000, 19), "Past the end of the first row");
+        // Second row: the same x finds different tabs
+        assertEquals(2, edges.insertionIndex(EDGE + 24, 25));
+        assertEquals(2, edges.insertionIndex(EDGE + 34, 25));
+        assertEquals(3, edges.insertionIndex(EDGE + 35, 25));
+        assertEquals(4, edges.insertionIndex(EDGE + 70 + GAP + 20, 25));
+        assertEquals(5, edges.insertionIndex(1000, 39));
+        assertEquals(-1, edges.insertionIndex(EDGE, 40), "Below the last row");
+        assertEquals(-1, edges.insertionIndex(EDGE, -1), "Above the first row");
+    }
+
+    @Test
+    public void testInsertionIndexInOneRow() {
+        int[] extents = {40, 0, 60, 30};
+        TabEdges edges = edges(extents);
+        int[] mids = {EDGE + 20, EDGE + 40 + GAP, EDGE + 40 + GAP + 30, EDGE + 100 + 2 * GAP + 15};
+        for (int i = 0; i < mids.length; i++) {
+            assertEquals(i, edges.insertionIndex(mids[i] - 1, 0), "Before the middle of " + i);
+            assertEquals(i + 1, edges.insertionIndex(mids[i], 0), "At the middle of " + i);
+        }
+        assertEquals(0, new TabEdges().insertionIndex(10, 0), "Empty");
+    }
+
+    private static TabEdges edges(int[] extents) {
+        TabEdges result = new TabEdges();
+        result.setGap(GAP);
+        int pos = EDGE;
+        for (int extent : extents) {
+            result.add(pos, extent);
+            if (extent > 0) {
+                pos += extent + GAP;
+            }
+        }
+        return result;
+    }
+
+    private static int[] starts(TabEdges edges) {
+        int[] result = new int[edges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = edges.start(i);
+        }
+        return result;
+    }
+
+    private static void move(int[] extents, int from, int to) {
+        int moved = extents[from];
+        if (from < to) {
+            System.arraycopy(extents, from + 1, extents, from, to - from);
+        } else {
+            System.arraycopy(extents, to, extents, to + 1, from - to);
+        }
+        extents[to] = moved;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import static com.mastfrog.visualtabs.TabEventTrace.SUFFIX;
+
+/**
+ * Replays traces written by TabEventTrace from the command line, printing
+ * frame timings for each run. Run on the test classpath with
+ * <code>java -Djava.awt.headless=true
+ * com.mastfrog.visualtabs.TabEventReplayBenchmark [-paced] [-repeat N]
+ * trace...</code> - with <code>-paced</code> frames are spaced as they
+ * were recorded, otherwise they are replayed back to back.
+ *
+ * @author Tim Boudreau
+ */
+public final class TabEventReplayBenchmark {
+
+    private TabEventReplayBenchmark() {
+        throw new AssertionError();
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean paced = false;
+        int repeat = 1;
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-paced":
+                    paced = true;
+                    break;
+                case "-repeat":
+                    repeat = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: TabEventReplayBenchmark [-paced] [-repeat N] trace"
+                    + SUFFIX + "...");
+            System.exit(1);
+        }
+        for (File f : files) {
+            for (int i = 0; i < repeat; i++) {
+                // Each run gets a fresh model and scene
+                TabEventReplay.Result result = TabEventReplay.read(f).replay(paced);
+                System.out.println(f.getName() + " #" + (i + 1) + ": " + result);
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.SingleSelectionModel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+import static com.mastfrog.visualtabs.TabEventTrace.SUFFIX;
+import static com.mastfrog.visualtabs.TabEventTrace.SYSTEM_PROPERTY;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.tab;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Records a session exercising every kind of model and selection event,
+ * replays it, and checks that the replayed model ends up with the same
+ * tabs, in the same order, with the same selection.
+ *
+ * @author Tim Boudreau
+ */
+public class TabEventReplayTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReplayReproducesTheRecordedSession() throws Exception {
+        DefaultTabDataModel model = model(20);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        String old = System.setProperty(SYSTEM_PROPERTY, dir.toString());
+        TabScene scene;
+        try {
+            sel.setSelectedIndex(4);
+            scene = onEventThread(() -> scene(model, sel));
+        } finally {
+            if (old == null) {
+                System.clearProperty(SYSTEM_PROPERTY);
+            } else {
+                System.setProperty(SYSTEM_PROPERTY, old);
+            }
+        }
+        List<Runnable> session = new ArrayList<>();
+        int[] next = {100};
+        session.add(() -> model.addTab(3, tab(next[0]++)));
+        session.add(() -> model.addTabs(0, new TabData[]{tab(next[0]++), tab(next[0]++)}));
+        session.add(() -> model.addTabs(new int[]{1, 5, 9},
+                new TabData[]{tab(next[0]++), tab(next[0]++), tab(next[0]++)}));
+        session.add(() -> sel.setSelectedIndex(7));
+        // Before the removals, so replaying the whole model cannot hide
+        // a removal replayed wrongly
+        session.add(() -> {
+            List<TabData> tabs = new ArrayList<>(model.getTabs());
+            Collections.reverse(tabs);
+            tabs.remove(4);
+            tabs.add(2, tab(next[0]++));
+            model.setTabs(tabs.toArray(new TabData[tabs.size()]));
+        });
+        session.add(() -> model.removeTab(2));
+        session.add(() -> model.removeTabs(4, 8));
+        session.add(() -> model.removeTabs(new int[]{0, 3, 10}));
+        session.add(() -> model.removeTabs(new int[]{5, 6, 7}));
+        session.add(() -> model.setText(1, "Renamed.java"));
+        session.add(() -> model.setTab(3, tab(next[0]++)));
+        session.add(() -> sel.setSelectedIndex(model.size() - 1));
+        session.add(() -> model.removeTab(model.size() - 1));
+        session.add(() -> sel.setSelectedIndex(2));
+        for (Runnable step : session) {
+            onEventThread(() -> {
+                step.run();
+                return null;
+            });
+            flush();
+        }
+        onEventThread(() -> {
+            scene.detach();
+            return null;
+        });
+        File[] traces = dir.toFile().listFiles((d, name) -> name.endsWith(SUFFIX));
+        assertNotNull(traces);
+        assertEquals(1, traces.length, "Expected one trace");
+
+        TabEventReplay replay = TabEventReplay.read(traces[0]);
+        replay.replay(false);
+        onEventThread(() -> {
+            assertEquals(describe(model), describe(replay.model()));
+            assertEquals(sel.getSelectedIndex(), replay.selection().getSelectedIndex());
+            return null;
+        });
+        flush();
+    }
+
+    private static List<String> describe(TabDataModel model) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            TabData data = model.getTab(i);
+            result.add(data.getText() + " / " + data.getTooltip());
+        }
+        return result;
+    }
+}
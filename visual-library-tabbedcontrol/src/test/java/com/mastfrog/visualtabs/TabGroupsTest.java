@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.swing.JLabel;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.event.ComplexListDataEvent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that group counts follow the model's events, computing keys only
+ * for the tabs an event names, and that an event which does not name
+ * the tabs it removed rebuilds the groups, keeping collapsed ones
+ * collapsed.
+ *
+ * @author Tim Boudreau
+ */
+public class TabGroupsTest {
+
+    private static final int TABS = 1000;
+    private static final String[] GROUPS = {"a", "b", "c", "d", "e"};
+
+    @Test
+    public void testCountsAreUpdatedIncrementally() {
+        DefaultTabDataModel model = model();
+        KeyFunction keys = new KeyFunction();
+        TabGroups groups = new TabGroups(model, keys);
+        assertEquals(TABS, keys.calls);
+        assertCounts(model, groups);
+
+        keys.calls = 0;
+        model.addTab(10, tab("b-added"));
+        assertEquals(1, keys.calls, "Adding one tab");
+        assertCounts(model, groups);
+
+        keys.calls = 0;
+        model.addTabs(new int[]{0, 5, 7}, new TabData[]{tab("a-x"), tab("f-x"), tab("f-y")});
+        assertEquals(3, keys.calls, "Adding three tabs");
+        assertEquals(2, groups.size("f"));
+        assertCounts(model, groups);
+
+        keys.calls = 0;
+        model.removeTab(20);
+        model.removeTabs(30, 39);
+        model.removeTabs(new int[]{1, 2, 3});
+        assertEquals(0, keys.calls, "Removals need no keys");
+        assertCounts(model, groups);
+
+        keys.calls = 0;
+        int ix = indexIn(model, "a");
+        model.setText(ix, "b-renamed");
+        assertEquals(1, keys.calls, "Renaming one tab");
+        assertCounts(model, groups);
+
+        // Reorder, drop one and add one in a single event
+        keys.calls = 0;
+        List<TabData> all = new ArrayList<>(model.getTabs());
+        Collections.reverse(all);
+        all.remove(0);
+        all.add(50, tab("g-new"));
+        model.setTabs(all.toArray(new TabData[all.size()]));
+        assertTrue(keys.calls < 10, "Reordering computed " + keys.calls + " keys");
+        assertEquals(1, groups.size("g"));
+        assertCounts(model, groups);
+    }
+
+    @Test
+    public void testClosingACollapsedGroupForgetsIt() {
+        DefaultTabDataModel model = model();
+        TabGroups groups = new TabGroups(model, new KeyFunction());
+        assertTrue(groups.setCollapsed("c", true));
+        assertTrue(groups.hasCollapsed());
+        assertEquals("c", groups.collapsedKey(model.getTab(indexIn(model, "c"))));
+        assertNull(groups.collapsedKey(model.getTab(indexIn(model, "d"))));
+        List<Integer> members = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            if (model.getTab(i).getText().startsWith("c-")) {
+                members.add(i);
+            }
+        }
+        int[] indices = new int[members.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = members.get(i);
+        }
+        model.removeTabs(indices);
+        assertEquals(0, groups.size("c"));
+        assertFalse(groups.hasCollapsed());
+        assertFalse(groups.isCollapsed("c"));
+        assertCounts(model, groups);
+    }
+
+    @Test
+    public void testRebuildWhenRemovalsAreNotNamed() {
+        DefaultTabDataModel model = model();
+        KeyFunction keys = new KeyFunction();
+        TabGroups groups = new TabGroups(model, keys);
+        groups.setCollapsed("b", true);
+        // Make changes the groups do not hear about, then deliver events
+        // which give only the range
+        groups.detach();
+        model.removeTab(0);
+        keys.calls = 0;
+        groups.intervalRemoved(new ListDataEvent(model, ListDataEvent.INTERVAL_REMOVED, 0, 0));
+        assertEquals(model.size(), keys.calls, "Expected a rebuild");
+        assertCounts(model, groups);
+        assertTrue(groups.isCollapsed("b"), "Collapsed group expanded by rebuild");
+
+        model.removeTabs(0, 9);
+        keys.calls = 0;
+        groups.indicesRemoved(new ComplexListDataEvent(model,
+                ComplexListDataEvent.ITEMS_REMOVED, 0, 9));
+        assertEquals(model.size(), keys.calls, "Expected a rebuild");
+        assertCounts(model, groups);
+        assertTrue(groups.isCollapsed("b"), "Collapsed group expanded by rebuild");
+    }
+
+    private static void assertCounts(DefaultTabDataModel model, TabGroups groups) {
+        Map<Object, Integer> expected = new HashMap<>();
+        for (TabData data : model.getTabs()) {
+            expected.merge(group(data), 1, Integer::sum);
+        }
+        assertEquals(expected.keySet(), new HashSet<>(groups.keys()));
+        for (Map.Entry<Object, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getValue(), groups.size(e.getKey()), "Size of " + e.getKey());
+        }
+        for (TabData data : model.getTabs()) {
+            assertEquals(group(data), groups.keyOf(data), data.getText());
+        }
+    }
+
+    private static int indexIn(DefaultTabDataModel model, String group) {
+        for (int i = 0; i < model.size(); i++) {
+            if (group.equals(group(model.getTab(i)))) {
+                return i;
+            }
+        }
+        throw new AssertionError("No tab in " + group);
+    }
+
+    private static String group(TabData data) {
+        String text = data.getText();
+        return text.substring(0, text.indexOf('-'));
+    }
+
+    private static DefaultTabDataModel model() {
+        TabData[] tabs = new TabData[TABS];
+        for (int i = 0; i < TABS; i++) {
+            tabs[i] = tab(GROUPS[i % GROUPS.length] + "-" + i);
+        }
+        return new DefaultTabDataModel(tabs);
+    }
+
+    private static TabData tab(String text) {
+        return new TabData(new JLabel(), null, text, null);
+    }
+
+    static final class KeyFunction implements Function<TabData, Object> {
+
+        int calls;
+
+        @Override
+        public Object apply(TabData data) {
+            calls++;
+            return group(data);
+        }
+    }
+}
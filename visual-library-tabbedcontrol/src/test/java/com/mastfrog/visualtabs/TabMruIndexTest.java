@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.JLabel;
+import javax.swing.event.ListDataEvent;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that closed tabs leave the most-recently-selected order, and
+ * that only a removal which does not say what it removed costs a pass
+ * over the model.
+ *
+ * @author Tim Boudreau
+ */
+public class TabMruIndexTest {
+
+    private static final int TABS = 1000;
+
+    @Test
+    public void testNamedRemovalsUnlinkWithoutAPass() {
+        CountingModel model = model();
+        TabMruIndex mru = new TabMruIndex(model);
+        List<TabData> touched = touchEveryTenth(model, mru);
+        assertEquals(reversed(touched).subList(0, 5), mru.topK(5));
+
+        model.reads = 0;
+        // removeTab() and removeTabs(int, int) fire intervalRemoved,
+        // removeTabs(int[]) indicesRemoved, all naming the tabs; the end of
+        // removeTabs(int, int) is exclusive
+        model.removeTab(model.indexOf(touched.get(99)));
+        model.removeTabs(model.indexOf(touched.get(97)), model.indexOf(touched.get(98)) + 1);
+        model.removeTabs(new int[]{model.indexOf(touched.get(96)), model.indexOf(touched.get(0))});
+        assertEquals(touched.size() - 5, mru.size());
+        List<TabData> top = mru.topK(3);
+        assertEquals(reversed(touched).subList(4, 7), top);
+        assertTrue(model.reads < 20, "Removals read " + model.reads + " tabs");
+        assertFalse(mru.topK(TABS).contains(touched.get(0)));
+    }
+
+    @Test
+    public void testUnnamedRemovalPrunesOnce() {
+        CountingModel model = model();
+        TabMruIndex mru = new TabMruIndex(model);
+        List<TabData> touched = touchEveryTenth(model, mru);
+        // Remove tabs without the index hearing, then tell it only the range
+        mru.detach();
+        model.removeTabs(0, 99);
+        model.reads = 0;
+        mru.intervalRemoved(new ListDataEvent(model, ListDataEvent.INTERVAL_REMOVED, 0, 99));
+        assertEquals(0, model.reads, "Pruning should wait until the order is read");
+        assertEquals(touched.size() - 10, mru.size());
+        assertEquals(model.size(), model.reads, "Expected one pass");
+        model.reads = 0;
+        assertEquals(reversed(touched).subList(0, 4), mru.topK(4));
+        assertTrue(model.reads < 20, "Read " + model.reads + " tabs after pruning");
+    }
+
+    @Test
+    public void testTabReplacedInPlaceIsDroppedWhenRead() {
+        CountingModel model = model();
+        TabMruIndex mru = new TabMruIndex(model);
+        List<TabData> touched = touchEveryTenth(model, mru);
+        TabData replaced = touched.get(touched.size() - 1);
+        int ix = model.indexOf(replaced);
+        model.reads = 0;
+        model.setTab(ix, new TabData(new JLabel(), null, "Replacement", null));
+        assertTrue(model.reads < 5, "Replacing a tab read " + model.reads + " tabs");
+        assertEquals(reversed(touched).subList(1, 4), mru.topK(3));
+        assertFalse(mru.topK(TABS).contains(replaced));
+    }
+
+    @Test
+    public void testReorderKeepsOrderAndDropsDeleted() {
+        CountingModel model = model();
+        TabMruIndex mru = new TabMruIndex(model);
+        List<TabData> touched = touchEveryTenth(model, mru);
+        List<TabData> all = new ArrayList<>(model.getTabs());
+        all.remove(touched.get(touched.size() - 1));
+        all.add(0, all.remove(all.size() - 1));
+        model.setTabs(all.toArray(new TabData[all.size()]));
+        assertEquals(reversed(touched).subList(1, 6), mru.topK(5));
+        assertEquals(touched.size() - 1, mru.size());
+    }
+
+    private static List<TabData> touchEveryTenth(DefaultTabDataModel model, TabMruIndex mru) {
+        List<TabData> result = new ArrayList<>();
+        for (int i = 0; i < TABS; i += 10) {
+            TabData data = model.getTab(i);
+            mru.touch(data, i);
+            result.add(data);
+        }
+        return result;
+    }
+
+    private static List<TabData> reversed(List<TabData> list) {
+        TabData[] result = list.toArray(new TabData[list.size()]);
+        for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+            TabData t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return Arrays.asList(result);
+    }
+
+    private static CountingModel model() {
+        TabData[] tabs = new TabData[TABS];
+        for (int i = 0; i < TABS; i++) {
+            tabs[i] = new TabData(new JLabel(), null, "Tab" + i + ".java", null);
+        }
+        return new CountingModel(tabs);
+    }
+
+    static final class CountingModel extends DefaultTabDataModel {
+
+        int reads;
+
+        CountingModel(TabData[] tabs) {
+            super(tabs);
+        }
+
+        @Override
+        public TabData getTab(int index) {
+            reads++;
+            return super.getTab(index);
+        }
+    }
+}
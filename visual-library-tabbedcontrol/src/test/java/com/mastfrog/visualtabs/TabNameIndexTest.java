@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.JLabel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the quick-search index over 5000 tabs against a brute force
+ * search, and that it follows additions, removals and renames without
+ * re-reading tabs which did not change.
+ *
+ * @author Tim Boudreau
+ */
+public class TabNameIndexTest {
+
+    private static final int TABS = 5000;
+    private static final String[] WORDS = {"Widget", "Scene", "Mapper", "Layout",
+        "Popup", "Index", "Tracker", "Layer", "Edit", "Group"};
+
+    @Test
+    public void testPrefixAndSubstringLookups() {
+        CountingModel model = model();
+        TabNameIndex index = new TabNameIndex(model);
+        assertEquals(TABS, index.size());
+        for (String q : new String[]{"w", "wi", "widget", "widgetsc", "widgetscene",
+            "e12", "4999", "ayer", "html", "bold", "group 7", "wgtscn", "zzz"}) {
+            assertMatches(model, index, q);
+        }
+        List<TabNameIndex.Entry> prefix = index.search("Widget");
+        assertTrue(prefix.size() >= TABS / WORDS.length);
+        assertTrue(prefix.get(0).name.startsWith("Widget"), prefix.get(0).name);
+        // Markup is not searchable
+        assertEquals("Bold Group 7.java", index.search("bold group 7").get(0).name);
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        CountingModel model = model();
+        TabNameIndex index = new TabNameIndex(model);
+        TabNameIndex.Entry untouched = only(index.search(name(4321)));
+        assertEquals(4321, untouched.index);
+
+        // Add
+        model.addTab(0, new TabData(new JLabel(), null, "Freshly Added.java", null));
+        TabNameIndex.Entry added = only(index.search("freshly"));
+        assertEquals(0, added.index);
+        assertSame(untouched, only(index.search(name(4321))), "Entry not reused");
+        assertEquals(4322, untouched.index);
+        assertMatches(model, index, "scene43");
+
+        // Remove
+        int removing = model.indexOf(untouched.data);
+        model.removeTab(removing);
+        assertEquals(0, index.search(name(4321)).size());
+        assertEquals(TABS, index.size());
+        assertMatches(model, index, "scene43");
+
+        // Rename, with the last search still cached for a shorter query
+        assertMatches(model, index, "renamed");
+        model.reads = 0;
+        String oldName = model.getTab(100).getText();
+        model.setText(100, "Renamed Twice.java");
+        TabNameIndex.Entry renamed = only(index.search("renamed tw"));
+        assertSame(model.getTab(100), renamed.data);
+        assertTrue(model.reads < 10, "Rename read " + model.reads + " tabs");
+        for (TabNameIndex.Entry e : index.search(oldName)) {
+            assertTrue(!e.name.equals(oldName) && e != renamed, "Still found as " + e);
+        }
+        assertMatches(model, index, "renamed");
+        assertMatches(model, index, "tracker");
+    }
+
+    private static TabNameIndex.Entry only(List<TabNameIndex.Entry> matches) {
+        assertEquals(1, matches.size(), matches.toString());
+        return matches.get(0);
+    }
+
+    private static void assertMatches(DefaultTabDataModel model, TabNameIndex index, String query) {
+        List<TabNameIndex.Entry> got = index.search(query);
+        List<String> expected = bruteForce(model, query);
+        List<String> names = new ArrayList<>(got.size());
+        for (TabNameIndex.Entry e : got) {
+            names.add(e.name + "@" + e.index);
+        }
+        assertEquals(expected, names, "Search for '" + query + "'");
+    }
+
+    private static List<String> bruteForce(DefaultTabDataModel model, String query) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        List<List<String>> byScore = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            byScore.add(new ArrayList<>());
+        }
+        for (int i = 0; i < model.size(); i++) {
+            String name = TabScene.deHtml(model.getTab(i).getText());
+            int score = TabNameIndex.score(name.toLowerCase(Locale.ROOT), q);
+            if (score >= 0) {
+                byScore.get(score).add(name + "@" + i);
+            }
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            result.addAll(byScore.get(i));
+        }
+        // Names only containing the characters in order are offered when
+        // there are few better matches
+        if (q.length() < 3 || result.size() < 32) {
+            result.addAll(byScore.get(3));
+        }
+        return result;
+    }
+
+    private static CountingModel model() {
+        TabData[] tabs = new TabData[TABS];
+        for (int i = 0; i < TABS; i++) {
+            tabs[i] = new TabData(new JLabel(), null, name(i), null);
+        }
+        return new CountingModel(tabs);
+    }
+
+    private static String name(int i) {
+        return i % 500 == 7
+                ? "<html><b>Bold</b> Group " + (i / 500) + ".java"
+                : WORDS[i % WORDS.length] + WORDS[(i / WORDS.length) % WORDS.length] + i + ".java";
+    }
+
+    static final class CountingModel extends DefaultTabDataModel {
+
+        int reads;
+
+        CountingModel(TabData[] tabs) {
+            super(tabs);
+        }
+
+        @Override
+        public TabData getTab(int index) {
+            reads++;
+            return super.getTab(index);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import javax.swing.JLabel;
+import javax.swing.SingleSelectionModel;
+import javax.swing.SwingUtilities;
+import org.netbeans.api.visual.widget.Widget;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.netbeans.swing.tabcontrol.TabDataModel;
+
+/**
+ * Helpers for tests which build a TabScene headless and drive it on the
+ * event thread.
+ *
+ * @author Tim Boudreau
+ */
+final class TabSceneTestSupport {
+
+    private TabSceneTestSupport() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Run something on the event thread and wait for it, rethrowing
+     * whatever it throws.
+     *
+     * @param <T> The result type
+     * @param call The work
+     * @return Its result
+     * @throws Exception If it throws one
+     */
+    static <T> T onEventThread(Callable<T> call) throws Exception {
+        List<T> result = new ArrayList<>(1);
+        Throwable[] thrown = new Throwable[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.add(call.call());
+            } catch (Throwable t) {
+                thrown[0] = t;
+            }
+        });
+        if (thrown[0] instanceof Exception) {
+            throw (Exception) thrown[0];
+        } else if (thrown[0] instanceof Error) {
+            throw (Error) thrown[0];
+        }
+        return result.get(0);
+    }
+
+    /**
+     * Let the sync pass the mapper enqueues for model changes, and
+     * anything else already on the event queue, run.
+     *
+     * @throws Exception If interrupted
+     */
+    static void flush() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+        });
+    }
+
+    /**
+     * Create and initialize a scene; call on the event thread.
+     *
+     * @param model The model
+     * @param sel The selection
+     * @return A scene
+     */
+    static TabScene scene(TabDataModel model, SingleSelectionModel sel) {
+        TabScene scene = new TabScene(new TabsAppearance(), model, sel);
+        scene.init();
+        return scene;
+    }
+
+    static DefaultTabDataModel model(int count) {
+        TabData[] tabs = new TabData[count];
+        for (int i = 0; i < count; i++) {
+            tabs[i] = tab(i);
+        }
+        return new DefaultTabDataModel(tabs);
+    }
+
+    static TabData tab(int i) {
+        return new TabData(new JLabel("c" + i), null, "Tab" + i + ".java", "Tab " + i);
+    }
+
+    /**
+     * Collect the tab widgets under a widget, in tree order.
+     *
+     * @param widget A widget, such as the scene
+     * @return The tab widgets
+     */
+    static List<TabWidget> tabWidgets(Widget widget) {
+        List<TabWidget> result = new ArrayList<>();
+        collect(widget, result);
+        return result;
+    }
+
+    private static void collect(Widget widget, List<TabWidget> into) {
+        for (Widget child : widget.getChildren()) {
+            if (child instanceof TabWidget) {
+                into.add((TabWidget) child);
+            } else {
+                collect(child, into);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.util.List;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.JLabel;
+import org.netbeans.api.visual.widget.Widget;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import org.openide.windows.TopComponent;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.tabWidgets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TabWidget reads TopComponent's closing-disabled client property by name,
+ * since the module may not use the window system at runtime; checks that
+ * the name still matches the window system's, and that the property is
+ * honored, including when it changes after the tab is created.
+ *
+ * @author Tim Boudreau
+ */
+public class TabWidgetClosingDisabledTest {
+
+    @Test
+    public void testClosingDisabledHidesCloseButton() throws Exception {
+        JLabel closeable = new JLabel("a");
+        JLabel uncloseable = new JLabel("b");
+        uncloseable.putClientProperty(TopComponent.PROP_CLOSING_DISABLED, Boolean.TRUE);
+        DefaultTabDataModel model = new DefaultTabDataModel(new TabData[]{
+            new TabData(closeable, null, "A.java", "A"),
+            new TabData(uncloseable, null, "B.java", "B")
+        });
+        TabScene scene = onEventThread(() -> scene(model, new DefaultSingleSelectionModel()));
+        flush();
+        onEventThread(() -> {
+            List<TabWidget> widgets = widgets(scene);
+            assertEquals(2, widgets.size());
+            assertTrue(widgets.get(0).closeButton.isVisible(), "Closeable tab has no close button");
+            assertFalse(widgets.get(1).closeButton.isVisible(), "Uncloseable tab has a close button");
+            closeable.putClientProperty(TopComponent.PROP_CLOSING_DISABLED, Boolean.TRUE);
+            // Client properties fire no model event, so resync as a text
+            // change would
+            model.setText(0, "A2.java");
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            assertFalse(widgets(scene).get(0).closeButton.isVisible(),
+                    "Close button not hidden when closing was disabled");
+            scene.detach();
+            return null;
+        });
+    }
+
+    private static List<TabWidget> widgets(Widget widget) {
+        List<TabWidget> result = tabWidgets(widget);
+        result.sort((a, b) -> a.get().getText().compareTo(b.get().getText()));
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.SingleSelectionModel;
+import org.netbeans.api.visual.action.WidgetAction;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.tabWidgets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a thousand tabs which are never hovered or selected share
+ * their actions and create no animation timers, and reports what each
+ * one retains.
+ *
+ * @author Tim Boudreau
+ */
+public class TabWidgetFootprintTest {
+
+    private static final int TABS = 1000;
+    // About 1.5K on JDK 17: the widget, its label and close button, and
+    // their Visual Library bookkeeping; allow for other VMs and noise
+    private static final long MAX_BYTES_PER_TAB = 4 * 1024;
+
+    @Test
+    public void testIdleTabsShareActionsAndHaveNoTimers() throws Exception {
+        DefaultTabDataModel model = model(TABS);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        // The scene may move the selection while it syncs, and a tab which
+        // was selected once may keep its timer
+        Set<TabData> everSelected = Collections.newSetFromMap(new IdentityHashMap<>());
+        sel.addChangeListener(e -> {
+            if (sel.getSelectedIndex() >= 0) {
+                everSelected.add(model.getTab(sel.getSelectedIndex()));
+            }
+        });
+        TabScene scene = onEventThread(() -> {
+            sel.setSelectedIndex(0);
+            return scene(model, sel);
+        });
+        flush();
+        onEventThread(() -> {
+            List<TabWidget> widgets = tabWidgets(scene);
+            assertEquals(TABS, widgets.size());
+            TabWidget first = widgets.get(0);
+            List<WidgetAction> actions = first.getActions().getActions();
+            List<WidgetAction> closeActions = first.closeButton.getActions().getActions();
+            Field hover = TabWidget.class.getDeclaredField("hoverDecorationTimer");
+            Field select = TabWidget.class.getDeclaredField("selectDecorationTimer");
+            hover.setAccessible(true);
+            select.setAccessible(true);
+            int selected = 0;
+            for (TabWidget w : widgets) {
+                assertSameActions(actions, w.getActions().getActions());
+                assertSameActions(closeActions, w.closeButton.getActions().getActions());
+                assertNull(hover.get(w), "Hover timer created for an idle tab");
+                if (w.getState().isSelected()) {
+                    selected++;
+                } else {
+                    assertTrue(everSelected.contains(w.get()) || select.get(w) == null,
+                            "Selection timer created for an idle tab");
+                }
+            }
+            assertEquals(1, selected);
+            assertTrue(everSelected.size() <= 2, "Selected " + everSelected.size() + " tabs");
+            scene.detach();
+            return null;
+        });
+    }
+
+    @Test
+    public void testRetainedBytesPerTab() throws Exception {
+        DefaultTabDataModel model = model(TABS);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        long before = usedHeap();
+        TabScene scene = onEventThread(() -> scene(model, sel));
+        flush();
+        assertEquals(TABS, (int) onEventThread(scene::widgetCount));
+        long after = usedHeap();
+        long perTab = (after - before) / TABS;
+        System.out.println("Scene with " + TABS + " idle tabs retains about "
+                + perTab + " bytes per tab");
+        assertTrue(perTab < MAX_BYTES_PER_TAB, "Each idle tab retains " + perTab + " bytes");
+        // Keep the scene reachable until measured
+        assertNotNull(onEventThread(() -> {
+            scene.detach();
+            return scene;
+        }));
+    }
+
+    private static void assertSameActions(List<WidgetAction> expected, List<WidgetAction> got) {
+        assertEquals(expected.size(), got.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), got.get(i), "Action " + i + " is not shared");
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return mem.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.mastfrog.visualtabs;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.DefaultSingleSelectionModel;
+import javax.swing.SingleSelectionModel;
+import org.netbeans.swing.tabcontrol.DefaultTabDataModel;
+import org.netbeans.swing.tabcontrol.TabData;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.flush;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.model;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.onEventThread;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.scene;
+import static com.mastfrog.visualtabs.TabSceneTestSupport.tab;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks how the mapper keeps widgets bound to tabs: that moving a tab
+ * only touches the tabs between its old and new positions, and that
+ * with groups collapsed, slots map to the right tabs and back as tabs
+ * come and go.
+ *
+ * @author Tim Boudreau
+ */
+public class TabWidgetMapperTest {
+
+    private static final int TABS = 100;
+
+    @Test
+    public void testMoveTouchesOnlyTheAffectedRange() throws Exception {
+        DefaultTabDataModel model = model(TABS);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        BitSet synced = new BitSet();
+        boolean[] recording = new boolean[1];
+        BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        TabScene scene = onEventThread(() -> {
+            TabScene result = new TabScene(new TabsAppearance(), model, sel) {
+                @Override
+                boolean isTabInView(int index) {
+                    if (recording[0]) {
+                        synced.set(index);
+                    }
+                    return super.isTabInView(index);
+                }
+            };
+            result.init();
+            return result;
+        });
+        flush();
+        int from = 20;
+        int to = 30;
+        onEventThread(() -> {
+            // Lay the strip out off-screen, so the widgets have positions
+            scene.validate(g);
+            sel.setSelectedIndex(from);
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            scene.validate(g);
+            List<TabWidget> before = scene.mapper().widgets();
+            Point[] locations = locations(before);
+            TabData moving = model.getTab(from);
+            long validations = scene.stats().fullValidations();
+            recording[0] = true;
+            // As a drop would: the index is in terms of the tabs before the
+            // moved one is removed
+            scene.beginBulkEdit().move(moving, to + 1).commit();
+            recording[0] = false;
+            assertSame(moving, model.getTab(to));
+            assertEquals(to, sel.getSelectedIndex(), "Selection did not follow the moved tab");
+            assertTrue(synced.nextSetBit(0) >= from && synced.length() <= to + 1,
+                    "Synced " + synced + " moving " + from + " to " + to);
+            assertEquals(0, scene.stats().fullValidations() - validations,
+                    "Moving one tab relaid out the whole strip");
+            List<TabWidget> after = scene.mapper().widgets();
+            for (int i = 0; i < TABS; i++) {
+                assertSame(model.getTab(i), after.get(i).get(), "Widget " + i);
+                if (i < from || i > to) {
+                    assertSame(before.get(i), after.get(i), "Widget " + i + " replaced");
+                    assertEquals(locations[i], after.get(i).getLocation(), "Widget " + i + " moved");
+                }
+            }
+            // The positions given to the moved tabs are the ones a full
+            // layout gives them
+            Point[] moved = locations(after);
+            after.get(0).revalidate();
+            scene.validate(g);
+            Point[] relaid = locations(scene.mapper().widgets());
+            for (int i = 0; i < TABS; i++) {
+                assertEquals(relaid[i], moved[i], "Widget " + i + " misplaced");
+            }
+            scene.detach();
+            return null;
+        });
+        flush();
+        g.dispose();
+    }
+
+    @Test
+    public void testSlotsOfCollapsedGroups() throws Exception {
+        DefaultTabDataModel model = model(60);
+        SingleSelectionModel sel = new DefaultSingleSelectionModel();
+        TabScene scene = onEventThread(() -> scene(model, sel));
+        flush();
+        onEventThread(() -> {
+            scene.setTabGrouping(TabWidgetMapperTest::group);
+            assertSlots(scene, model);
+            assertTrue(scene.collapseGroup("b"));
+            assertSlots(scene, model);
+            assertEquals(60 - 19, scene.widgetCount());
+            assertTrue(scene.collapseGroup("c"));
+            assertSlots(scene, model);
+            // Tabs in a collapsed group added before its first tab, after
+            // it, and outside any collapsed group
+            model.addTab(0, tab(1000));
+            model.addTab(30, tab(1003));
+            model.addTab(model.size(), tab(1002));
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            assertSlots(scene, model);
+            // Remove the tab standing for a group, and some hidden ones
+            model.removeTab(0);
+            model.removeTabs(new int[]{4, 5, 6, 7});
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            assertSlots(scene, model);
+            // Rename a tab into another group
+            model.setText(2, "Tab1000.java");
+            return null;
+        });
+        flush();
+        onEventThread(() -> {
+            scene.setTabGrouping(TabWidgetMapperTest::group);
+            scene.collapseGroup("b");
+            assertSlots(scene, model);
+            assertTrue(scene.expandGroup("b"));
+            assertSlots(scene, model);
+            assertEquals(model.size(), scene.widgetCount());
+            scene.detach();
+            return null;
+        });
+        flush();
+    }
+
+    /**
+     * Check every tab against the rule: a tab has a widget unless an
+     * earlier tab is in the same collapsed group; each widget is bound to
+     * its tab, and maps back to its index.
+     */
+    private static void assertSlots(TabScene scene, DefaultTabDataModel model) {
+        TabWidgetMapper mapper = scene.mapper();
+        Set<Object> seen = new HashSet<>();
+        int slots = 0;
+        for (int i = 0; i < model.size(); i++) {
+            TabData data = model.getTab(i);
+            Object key = scene.groupOf(i);
+            boolean hidden = scene.isGroupCollapsed(key) && !seen.add(key);
+            TabWidget w = mapper.widget(i);
+            if (hidden) {
+                assertNull(w, "Tab " + i + " in collapsed group " + key + " has a widget");
+                continue;
+            }
+            assertNotNull(w, "Tab " + i + " has no widget");
+            assertSame(w, mapper.widgets().get(slots), "Slot " + slots);
+            assertSame(data, w.get(), "Widget for " + i);
+            assertEquals(i, mapper.indexOf(w), "Index of the widget for " + i);
+            slots++;
+        }
+        assertEquals(slots, mapper.widgetCount());
+    }
+
+    private static Object group(TabData data) {
+        // Tab 0 is in a, 1 in b, and so on
+        int n = Integer.parseInt(data.getText().replaceAll("\\D", ""));
+        return String.valueOf((char) ('a' + (n % 3)));
+    }
+
+    private static Point[] locations(List<TabWidget> widgets) {
+        Point[] result = new Point[widgets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = widgets.get(i).getLocation();
+            assertNotNull(result[i], "Widget " + i + " not laid out");
+        }
+        return result;
+    }
+}